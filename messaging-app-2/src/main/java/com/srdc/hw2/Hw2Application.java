@@ -2,11 +2,13 @@ package com.srdc.hw2;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * The main entry point of the HW2 Spring Boot application.
  */
 @SpringBootApplication
+@EnableScheduling
 public class Hw2Application {
 
 	/**
@@ -0,0 +1,95 @@
+package com.srdc.hw2.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import com.srdc.hw2.dto.MessageView;
+
+/**
+ * Encodes the messages of an archive segment as compact binary records compressed with Deflate.
+ * A segment starts with a format version and the number of messages, followed by one record per message.
+ */
+final class ArchiveCodec {
+
+    private static final int FORMAT = 1;
+
+    private ArchiveCodec() {}
+
+    /**
+     * Encodes messages in the order given.
+     *
+     * @param messages the messages
+     * @return the compressed segment
+     */
+    static byte[] encode(List<MessageView> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * messages.size());
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            out.writeInt(FORMAT);
+            out.writeInt(messages.size());
+            for (MessageView message : messages) {
+                out.writeLong(message.id());
+                writeString(out, message.sender());
+                writeString(out, message.receiver());
+                writeString(out, message.content());
+                out.writeLong(message.timestamp().getTime());
+                out.writeInt(message.timestamp().getNanos());
+                out.writeBoolean(message.read());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a segment.
+     *
+     * @param data the compressed segment
+     * @return the messages in the order they were encoded
+     */
+    static List<MessageView> decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            int format = in.readInt();
+            if (format != FORMAT) {
+                throw new IllegalStateException("Unknown archive segment format " + format);
+            }
+            int count = in.readInt();
+            List<MessageView> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                String sender = readString(in);
+                String receiver = readString(in);
+                String content = readString(in);
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                messages.add(new MessageView(id, sender, receiver, content, timestamp, in.readBoolean()));
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,385 @@
+package com.srdc.hw2.archive;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.srdc.hw2.dto.ArchiveMonth;
+import com.srdc.hw2.dto.MessageCursor;
+import com.srdc.hw2.dto.MessageView;
+import com.srdc.hw2.mailbox.MailboxCounterService;
+import com.srdc.hw2.model.ArchiveParticipant;
+import com.srdc.hw2.model.ArchiveSegment;
+import com.srdc.hw2.model.ArchiveSegmentId;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.repository.ArchiveParticipantRepository;
+import com.srdc.hw2.repository.ArchiveSegmentRepository;
+import com.srdc.hw2.repository.ConversationRepository;
+import com.srdc.hw2.repository.MessageRepository;
+import com.srdc.hw2.repository.MessageTermRepository;
+
+/**
+ * MessageArchiveService keeps the messages table limited to recent months.
+ * In the background, messages sent before the hot window are moved chunk by chunk into compressed monthly
+ * segments of their sender's and receiver's archives, and removed from the full-text index and the mailbox
+ * counters, which describe the hot messages only. Each segment lists the users taking part in its messages, so
+ * conversations continue into the archive and a removed user's name is found in other users' archives.
+ * Archived months are read on demand, one month of one user at a time, and are deleted, together with the
+ * conversations whose last message they hold, once they fall out of the retention period.
+ * Archiving is off unless a hot window is configured. Months are calendar months in UTC.
+ */
+@Service
+public class MessageArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageArchiveService.class);
+
+    private static final Comparator<MessageView> NEWEST_FIRST =
+            Comparator.comparing(MessageView::timestamp).thenComparingLong(MessageView::id).reversed();
+
+    /**
+     * The placeholder the messages of removed users show instead of their username.
+     */
+    private static final String REMOVED_USER = "~ removed user ~";
+
+    @Autowired
+    MessageRepository messageRepository;
+
+    @Autowired
+    MessageTermRepository messageTermRepository;
+
+    @Autowired
+    ConversationRepository conversationRepository;
+
+    @Autowired
+    ArchiveSegmentRepository archiveSegmentRepository;
+
+    @Autowired
+    ArchiveParticipantRepository archiveParticipantRepository;
+
+    @Autowired
+    MailboxCounterService mailboxCounterService;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${messaging.archive.hot-months:0}")
+    int hotMonths;
+
+    @Value("${messaging.archive.retention-months:0}")
+    int retentionMonths;
+
+    @Value("${messaging.archive.chunk-size:5000}")
+    int chunkSize;
+
+    @Value("${messaging.archive.chunk-pause-ms:10}")
+    long chunkPause;
+
+    private TransactionTemplate transactionTemplate;
+    private Counter archived;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        archived = Counter.builder("messaging.archive.messages")
+                .description("Messages moved from the messages table to the archive")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Archives the messages older than the hot window and deletes the archived months older than the retention period.
+     */
+    @Scheduled(fixedDelayString = "${messaging.archive.interval-ms:3600000}", initialDelayString = "${messaging.archive.interval-ms:3600000}")
+    public void archiveOld() {
+        try {
+            if (hotMonths > 0) {
+                archiveBefore(monthStart(hotMonths));
+            }
+            if (retentionMonths > 0) {
+                LocalDate retained = monthStart(retentionMonths);
+                int deleted = transactionTemplate.execute(status -> {
+                    conversationRepository.deleteOlderThan(Timestamp.from(retained.atStartOfDay(ZoneOffset.UTC).toInstant()));
+                    return archiveSegmentRepository.deleteOlderThan(Date.valueOf(retained));
+                });
+                if (deleted > 0) {
+                    logger.info("Deleted {} archive segments older than {} months", deleted, retentionMonths);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.warn("Archiving old messages failed, retrying later", e);
+        }
+    }
+
+    /**
+     * Moves the messages sent before the start of a month to the archive, each chunk in its own transaction.
+     *
+     * @param month the first day of the oldest month to keep in the messages table
+     * @return the number of archived messages
+     * @throws InterruptedException if interrupted while pausing between chunks
+     */
+    public long archiveBefore(LocalDate month) throws InterruptedException {
+        Timestamp cutoff = Timestamp.from(month.atStartOfDay(ZoneOffset.UTC).toInstant());
+        long total = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> archiveChunk(cutoff));
+            total += moved;
+            archived.increment(moved);
+            if (moved == chunkSize && chunkPause > 0) {
+                Thread.sleep(chunkPause);
+            }
+        } while (moved == chunkSize);
+        if (total > 0) {
+            logger.info("Archived {} messages sent before {}", total, month);
+        }
+        return total;
+    }
+
+    /**
+     * Moves the oldest chunk of messages before a time into one new segment per user and month.
+     */
+    private int archiveChunk(Timestamp cutoff) {
+        List<Message> messages = messageRepository.findOldestBefore(cutoff, PageRequest.of(0, chunkSize));
+        if (messages.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Map<LocalDate, List<MessageView>>> segments = new TreeMap<>();
+        List<Long> ids = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            MessageView view = MessageView.of(message);
+            LocalDate month = monthOf(message.getTimestamp());
+            segment(segments, message.getReceiver(), month).add(view);
+            if (!message.getSender().equals(message.getReceiver())) {
+                segment(segments, message.getSender(), month).add(view);
+            }
+            ids.add(message.getId());
+        }
+
+        segments.forEach((username, months) -> months.forEach((month, views) -> {
+            views.sort(NEWEST_FIRST);
+            long firstId = views.stream().mapToLong(MessageView::id).min().orElseThrow();
+            ArchiveSegment segment = archiveSegmentRepository.save(new ArchiveSegment(username, Date.valueOf(month), firstId, views.size(), ArchiveCodec.encode(views)));
+            Set<String> participants = new TreeSet<>();
+            for (MessageView view : views) {
+                participants.add(view.sender());
+                participants.add(view.receiver());
+            }
+            participants.forEach(participant -> archiveParticipantRepository.save(new ArchiveParticipant(participant, segment)));
+        }));
+        messageTermRepository.deleteByMessageIds(ids);
+        mailboxCounterService.recordArchived(messages);
+        messageRepository.deleteByIds(ids);
+        return messages.size();
+    }
+
+    private static List<MessageView> segment(Map<String, Map<LocalDate, List<MessageView>>> segments, String username, LocalDate month) {
+        return segments.computeIfAbsent(username, u -> new TreeMap<>()).computeIfAbsent(month, m -> new ArrayList<>());
+    }
+
+    /**
+     * Lists the archived months of a user, most recent first.
+     *
+     * @param username the owner of the archive
+     * @return the months with the number of archived messages in each
+     */
+    public List<ArchiveMonth> findMonths(String username) {
+        return archiveSegmentRepository.findMonths(username);
+    }
+
+    /**
+     * Reads a page of a user's archived inbox or outbox for one month, newest first, optionally keeping only the
+     * messages whose sender, receiver or content contains a value, ignoring case.
+     *
+     * @param username the owner of the archive
+     * @param month    the month to read
+     * @param inbox    true for received messages, false for sent ones
+     * @param field    the field to filter by ("sender", "receiver" or "content"), or null
+     * @param value    the value to look for, or null
+     * @param pageable the page to return
+     * @return a page of archived messages
+     */
+    public Page<MessageView> find(String username, YearMonth month, boolean inbox, String field, String value, Pageable pageable) {
+        Predicate<MessageView> owned = inbox ? message -> username.equals(message.receiver()) : message -> username.equals(message.sender());
+        Predicate<MessageView> matches = owned.and(filter(field, value));
+        List<MessageView> messages = new ArrayList<>();
+        for (ArchiveSegment segment : archiveSegmentRepository.findMonth(username, Date.valueOf(month.atDay(1)))) {
+            ArchiveCodec.decode(segment.getData()).stream().filter(matches).forEach(messages::add);
+        }
+        messages.sort(NEWEST_FIRST);
+        int from = (int) Math.min(pageable.getOffset(), messages.size());
+        int to = Math.min(from + pageable.getPageSize(), messages.size());
+        return new PageImpl<>(messages.subList(from, to), pageable, messages.size());
+    }
+
+    /**
+     * Finds the archived messages exchanged by two users that are older than a position, newest first.
+     * Archiving moves the oldest messages first, so these are older than every message still in the messages table.
+     *
+     * @param username the user reading the conversation
+     * @param partner  the other participant
+     * @param position the position of the oldest message seen
+     * @param limit    the maximum number of messages
+     * @return the messages
+     */
+    public List<MessageView> findConversationBefore(String username, String partner, MessageCursor position, int limit) {
+        Predicate<MessageView> matches = message -> ((username.equals(message.sender()) && partner.equals(message.receiver()))
+                || (partner.equals(message.sender()) && username.equals(message.receiver())))
+                && (message.timestamp().before(position.timestamp())
+                || (message.timestamp().equals(position.timestamp()) && message.id() < position.id()));
+        List<MessageView> messages = new ArrayList<>();
+        Date month = null;
+        for (ArchiveSegmentId id : archiveParticipantRepository.findConversationSegments(username, partner, Date.valueOf(monthOf(position.timestamp())))) {
+            // Segments come latest month first, so the messages of earlier months are only needed to fill the page
+            if (!id.getMonthStart().equals(month)) {
+                if (messages.size() >= limit) {
+                    break;
+                }
+                month = id.getMonthStart();
+            }
+            archiveSegmentRepository.findById(id)
+                    .ifPresent(segment -> ArchiveCodec.decode(segment.getData()).stream().filter(matches).forEach(messages::add));
+        }
+        messages.sort(NEWEST_FIRST);
+        return messages.subList(0, Math.min(limit, messages.size()));
+    }
+
+    /**
+     * Finds an archived message in a user's archive.
+     *
+     * @param username  the owner of the archive
+     * @param id        the id of the message
+     * @param timestamp the timestamp of the message, which selects the month to read
+     * @return the message, or empty if it is not in the archive
+     */
+    public Optional<MessageView> findMessage(String username, long id, Timestamp timestamp) {
+        for (ArchiveSegment segment : archiveSegmentRepository.findMonth(username, Date.valueOf(monthOf(timestamp)))) {
+            if (segment.getFirstId() <= id) {
+                Optional<MessageView> message = ArchiveCodec.decode(segment.getData()).stream().filter(view -> view.id() == id).findFirst();
+                if (message.isPresent()) {
+                    return message;
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Streams a user's archived inbox or outbox, newest first, decoding one month at a time.
+     * Must be consumed in a transaction.
+     *
+     * @param username the owner of the archive
+     * @param inbox    true for received messages, false for sent ones
+     * @return a stream of archived messages
+     */
+    public Stream<MessageView> stream(String username, boolean inbox) {
+        Predicate<MessageView> owned = inbox ? message -> username.equals(message.receiver()) : message -> username.equals(message.sender());
+        return findMonths(username).stream().flatMap(month -> {
+            List<MessageView> messages = new ArrayList<>();
+            for (ArchiveSegment segment : archiveSegmentRepository.findMonth(username, month.month())) {
+                ArchiveCodec.decode(segment.getData()).stream().filter(owned).forEach(messages::add);
+            }
+            messages.sort(NEWEST_FIRST);
+            return messages.stream();
+        });
+    }
+
+    private static Predicate<MessageView> filter(String field, String value) {
+        if (field == null || value == null) {
+            return message -> true;
+        }
+        String lower = value.toLowerCase(Locale.ROOT);
+        return switch (field) {
+            case "sender" -> message -> contains(message.sender(), lower);
+            case "receiver" -> message -> contains(message.receiver(), lower);
+            case "content" -> message -> contains(message.content(), lower);
+            default -> throw new IllegalArgumentException("Unknown field: " + field);
+        };
+    }
+
+    private static boolean contains(String value, String lower) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(lower);
+    }
+
+    /**
+     * Deletes the archive of a removed user.
+     *
+     * @param username the removed user's username
+     */
+    public void remove(String username) {
+        archiveSegmentRepository.deleteByUsername(username);
+    }
+
+    /**
+     * Replaces a removed user's username with the removed-user placeholder in a number of segments of other users'
+     * archives, and advances the mailbox versions of their owners, whose archived listings now show the placeholder.
+     * Must be called in a transaction, after {@link #remove(String)}.
+     *
+     * @param username the removed user's username
+     * @param limit    the maximum number of segments to rewrite
+     * @return the number of rewritten segments
+     */
+    public int anonymize(String username, int limit) {
+        List<ArchiveSegmentId> ids = archiveParticipantRepository.findSegments(username, PageRequest.of(0, limit));
+        Set<String> owners = new HashSet<>();
+        for (ArchiveSegment segment : archiveSegmentRepository.findAllById(ids)) {
+            List<MessageView> views = ArchiveCodec.decode(segment.getData()).stream()
+                    .map(view -> new MessageView(view.id(), anonymize(view.sender(), username), anonymize(view.receiver(), username),
+                            view.content(), view.timestamp(), view.read()))
+                    .toList();
+            archiveSegmentRepository.save(new ArchiveSegment(segment.getUsername(), segment.getMonthStart(), segment.getFirstId(),
+                    views.size(), ArchiveCodec.encode(views)));
+            archiveParticipantRepository.deleteFromSegment(username, segment.getUsername(), segment.getMonthStart(), segment.getFirstId());
+            owners.add(segment.getUsername());
+        }
+        mailboxCounterService.touch(owners);
+        return ids.size();
+    }
+
+    private static String anonymize(String participant, String username) {
+        return username.equals(participant) ? REMOVED_USER : participant;
+    }
+
+    /**
+     * Returns the first day of the month a number of months before the current one.
+     */
+    private static LocalDate monthStart(int monthsBack) {
+        return YearMonth.now(ZoneOffset.UTC).minusMonths(monthsBack).atDay(1);
+    }
+
+    private static LocalDate monthOf(Timestamp timestamp) {
+        return timestamp.toInstant().atZone(ZoneOffset.UTC).toLocalDate().withDayOfMonth(1);
+    }
+}
@@ -0,0 +1,84 @@
+package com.srdc.hw2.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import com.srdc.hw2.security.AuthService;
+import com.srdc.hw2.security.SessionRegistry;
+import com.srdc.hw2.user.UserCache;
+
+/**
+ * MetricsConfig registers the meters of components that do not register their own:
+ * the number of active sessions and the statistics of the claims cache and the user cache.
+ * Request latencies, repository invocations and connection pool waits are measured by Spring Boot.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Publishes the number of registered sessions.
+     *
+     * @param sessionRegistry the session registry
+     * @return the binder registering the gauge
+     */
+    @Bean
+    public MeterBinder sessionRegistryMetrics(SessionRegistry sessionRegistry) {
+        return registry -> Gauge.builder("messaging.sessions.active", sessionRegistry, SessionRegistry::size)
+                .description("Number of registered sessions, including expired ones not yet swept")
+                .register(registry);
+    }
+
+    /**
+     * Publishes the hits, misses and size of the claims cache of verified tokens.
+     *
+     * @return the binder registering the meters
+     */
+    @Bean
+    public MeterBinder claimsCacheMetrics() {
+        return registry -> {
+            FunctionCounter.builder("messaging.auth.cache", AuthService.class, type -> AuthService.cacheHits())
+                    .description("Token authentications served from the claims cache")
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("messaging.auth.cache", AuthService.class, type -> AuthService.cacheMisses())
+                    .description("Token authentications that verified the JWT signature")
+                    .tag("result", "miss")
+                    .register(registry);
+            Gauge.builder("messaging.auth.cache.size", AuthService::cacheSize)
+                    .description("Number of tokens in the claims cache")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Publishes the hits, misses, hit ratio and size of the user cache, and the lookups ruled out by its Bloom filter.
+     *
+     * @param userCache the user cache
+     * @return the binder registering the meters
+     */
+    @Bean
+    public MeterBinder userCacheMetrics(UserCache userCache) {
+        return registry -> {
+            FunctionCounter.builder("messaging.user.cache", userCache, UserCache::hits)
+                    .description("User lookups served from the user cache")
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("messaging.user.cache", userCache, UserCache::misses)
+                    .description("User lookups that queried the database")
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("messaging.user.cache", userCache, UserCache::filtered)
+                    .description("Lookups of unknown usernames ruled out by the Bloom filter")
+                    .tag("result", "filtered")
+                    .register(registry);
+            Gauge.builder("messaging.user.cache.hit.ratio", userCache, UserCache::hitRatio)
+                    .description("Share of user lookups answered without a query since startup")
+                    .register(registry);
+            Gauge.builder("messaging.user.cache.size", userCache, UserCache::size)
+                    .description("Number of users in the user cache")
+                    .register(registry);
+        };
+    }
+}
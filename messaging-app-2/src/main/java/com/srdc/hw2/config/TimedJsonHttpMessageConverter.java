@@ -0,0 +1,44 @@
+package com.srdc.hw2.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * A JSON message converter that records how long writing each response body takes, tagged by the type of the body.
+ * The body is streamed to the client while it is serialized, so large responses to slow clients include network time.
+ */
+public class TimedJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Creates a converter using the given ObjectMapper.
+     *
+     * @param objectMapper  the ObjectMapper of the converter it replaces
+     * @param meterRegistry the registry to record the write times in
+     */
+    public TimedJsonHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            sample.stop(Timer.builder("messaging.json.write")
+                    .description("Time spent serializing and writing JSON response bodies")
+                    .tag("type", object.getClass().getSimpleName())
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -1,15 +1,33 @@
 package com.srdc.hw2.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import com.srdc.hw2.replica.ReadYourWritesInterceptor;
+import com.srdc.hw2.security.AuthInterceptor;
 
 /**
- * WebConfig class that implements the WebMvcConfigurer interface to configure CORS settings.
+ * WebConfig class that implements the WebMvcConfigurer interface to configure CORS settings,
+ * request authentication and the timing of JSON responses.
  */
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    @Autowired
+    AuthInterceptor authInterceptor;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    ReadYourWritesInterceptor readYourWritesInterceptor;
+
     /**
      * Configures CORS mappings.
      *
@@ -26,4 +44,34 @@ public class WebConfig implements WebMvcConfigurer {
                 // Allow all headers
                 .allowedHeaders("*");
     }
+
+    /**
+     * Registers the authentication interceptor for all API endpoints except login and logout and, when reads are
+     * served by replicas, the interceptor sending the reads of recent writers to the primary after it.
+     *
+     * @param registry the interceptor registry to add the interceptor to
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(authInterceptor)
+                .addPathPatterns("/api/**")
+                .excludePathPatterns("/api/user/login", "/api/user/logout");
+        if (readYourWritesInterceptor != null) {
+            registry.addInterceptor(readYourWritesInterceptor)
+                    .addPathPatterns("/api/**")
+                    .excludePathPatterns("/api/user/login", "/api/user/logout");
+        }
+    }
+
+    /**
+     * Replaces the JSON message converter with one that records its write times.
+     *
+     * @param converters the configured message converters
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.replaceAll(converter -> converter instanceof MappingJackson2HttpMessageConverter json
+                ? new TimedJsonHttpMessageConverter(json.getObjectMapper(), meterRegistry)
+                : converter);
+    }
 }
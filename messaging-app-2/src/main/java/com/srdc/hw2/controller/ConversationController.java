@@ -0,0 +1,132 @@
+package com.srdc.hw2.controller;
+
+import java.util.List;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import com.srdc.hw2.conversation.ConversationService;
+import com.srdc.hw2.dto.ConversationSummary;
+import com.srdc.hw2.dto.CursorPage;
+import com.srdc.hw2.dto.MessageCursor;
+import com.srdc.hw2.dto.MessageView;
+import com.srdc.hw2.mailbox.MailboxCounterService;
+import com.srdc.hw2.security.AuthInterceptor;
+import com.srdc.hw2.security.AuthPrincipal;
+
+@CrossOrigin(origins = "http://localhost:8081")
+@RestController
+@RequestMapping("/api")
+public class ConversationController {
+
+    @Autowired
+    ConversationService conversationService;
+
+    @Autowired
+    MailboxCounterService mailboxCounterService;
+
+    /**
+     * Get the conversations of the logged-in user with the last message of each, most recent first.
+     * The response carries the mailbox version as its ETag.
+     *
+     * @param principal the authenticated user
+     * @param request   the request, checked for a matching If-None-Match header
+     * @param cursor    the cursor returned with the previous page, omitted for the first page
+     * @param size      the size of the page (default is 20)
+     * @return ResponseEntity containing the conversations and the cursor of the next page or appropriate HTTP status
+     */
+    @GetMapping("/conversation")
+    public ResponseEntity<CursorPage<ConversationSummary>> getConversations(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal,
+                                                                            WebRequest request,
+                                                                            @RequestParam(required = false) String cursor,
+                                                                            @RequestParam(defaultValue = "20") int size) {
+        MessageCursor position;
+        try {
+            position = MessageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (size <= 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        try {
+            String username = principal.username();
+            return mailboxCounterService.read(username, counter -> {
+                if (request.checkNotModified(counter.etag())) {
+                    return null; // Return 304 if the mailbox has not changed
+                }
+                // Fetch one extra conversation to find out whether there is a next page
+                List<ConversationSummary> conversations = conversationService.findConversations(username, position, size + 1);
+                if (conversations.size() <= size) {
+                    return new ResponseEntity<>(new CursorPage<>(conversations, null), HttpStatus.OK);
+                }
+                List<ConversationSummary> page = conversations.subList(0, size);
+                return new ResponseEntity<>(new CursorPage<>(page, MessageCursor.of(page.get(size - 1).lastMessage()).encode()), HttpStatus.OK);
+            });
+        } catch (Exception e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get the messages exchanged by the logged-in user and another user in either direction.
+     * Without since the history is paged backwards, newest first, from the before cursor.
+     * With since only the messages newer than the given message are returned, oldest first, so a client fetches
+     * the delta by passing the id of the newest message it has; if more than a page is new, it polls again.
+     * The response carries the mailbox version as its ETag.
+     *
+     * @param principal the authenticated user
+     * @param request   the request, checked for a matching If-None-Match header
+     * @param username  the other participant of the conversation
+     * @param before    the cursor returned with the previous page of the history, omitted for the newest page
+     * @param since     the id of the newest message of the conversation the client has
+     * @param size      the size of the page (default is 20)
+     * @return ResponseEntity containing the messages and the cursor of the next page or appropriate HTTP status
+     */
+    @GetMapping("/conversation/{username}")
+    public ResponseEntity<CursorPage<MessageView>> getConversation(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal,
+                                                               WebRequest request,
+                                                               @PathVariable("username") String username,
+                                                               @RequestParam(required = false) String before,
+                                                               @RequestParam(required = false) Long since,
+                                                               @RequestParam(defaultValue = "20") int size) {
+        if ((before != null && since != null) || size <= 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        MessageCursor position;
+        try {
+            position = MessageCursor.decode(before);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        try {
+            String me = principal.username();
+            return mailboxCounterService.read(me, counter -> {
+                if (request.checkNotModified(counter.etag())) {
+                    return null; // Return 304 if the mailbox has not changed
+                }
+                if (since != null) {
+                    Optional<MessageCursor> newest = conversationService.findPosition(me, username, since);
+                    if (newest.isEmpty()) {
+                        return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Return 404 if the message is not in the conversation
+                    }
+                    return new ResponseEntity<>(new CursorPage<>(conversationService.findSince(me, username, newest.get(), size), null), HttpStatus.OK);
+                }
+
+                // Fetch one extra message to find out whether there is a next page
+                List<MessageView> messages = conversationService.findBefore(me, username, position, size + 1);
+                if (messages.size() <= size) {
+                    return new ResponseEntity<>(new CursorPage<>(messages, null), HttpStatus.OK);
+                }
+                List<MessageView> page = messages.subList(0, size);
+                return new ResponseEntity<>(new CursorPage<>(page, MessageCursor.of(page.get(size - 1)).encode()), HttpStatus.OK);
+            });
+        } catch (Exception e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
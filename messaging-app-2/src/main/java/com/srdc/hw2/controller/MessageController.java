@@ -1,103 +1,479 @@
 package com.srdc.hw2.controller;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.srdc.hw2.dto.BatchMessageRequest;
+import com.srdc.hw2.dto.BatchMessageResponse;
+import com.srdc.hw2.dto.CursorPage;
+import com.srdc.hw2.dto.MailboxSync;
+import com.srdc.hw2.dto.MessageView;
+import com.srdc.hw2.dto.PageResponse;
+import com.srdc.hw2.dto.MessageCursor;
+import com.srdc.hw2.archive.MessageArchiveService;
+import com.srdc.hw2.dto.ArchiveMonth;
+import com.srdc.hw2.export.MailboxExportService;
+import com.srdc.hw2.ingest.MessageIngestionService;
+import com.srdc.hw2.mailbox.MailboxCounterService;
+import com.srdc.hw2.model.MailboxCounter;
 import com.srdc.hw2.model.Message;
+import com.srdc.hw2.push.MessagePushService;
+import com.srdc.hw2.ratelimit.SendThrottle;
 import com.srdc.hw2.repository.MessageRepository;
 import com.srdc.hw2.repository.UserRepository;
-import com.srdc.hw2.security.AuthService;
+import com.srdc.hw2.search.MessageSearchService;
+import com.srdc.hw2.security.AuthInterceptor;
+import com.srdc.hw2.security.AuthPrincipal;
+import com.srdc.hw2.user.UserCache;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import static com.srdc.hw2.controller.UserController.activeTokens;
 
 @CrossOrigin(origins = "http://localhost:8081")
 @RestController
 @RequestMapping("/api")
 public class MessageController {
 
+    private static final Set<String> ARCHIVE_FIELDS = Set.of("sender", "receiver", "content");
+
     @Autowired
     MessageRepository messageRepository;
 
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    MessageSearchService messageSearchService;
+
+    @Autowired
+    MessagePushService messagePushService;
+
+    @Autowired
+    MessageIngestionService messageIngestionService;
+
+    @Autowired
+    MailboxCounterService mailboxCounterService;
+
+    @Autowired
+    MailboxExportService mailboxExportService;
+
+    @Autowired
+    MessageArchiveService messageArchiveService;
+
+    @Autowired
+    UserCache userCache;
+
+    @Autowired
+    SendThrottle sendThrottle;
+
+    @Value("${messaging.batch.max-receivers:500}")
+    int maxBatchReceivers;
+
     /**
      * Get messages for the logged-in user.
+     * Totals of unfiltered listings come from the maintained mailbox counters instead of a count query.
+     * The response carries the mailbox version as its ETag; a request whose If-None-Match matches the current
+     * version is answered with 304 Not Modified from the counter alone.
      *
-     * @param token    the authorization token
+     * @param principal the authenticated user
+     * @param request   the request, checked for a matching If-None-Match header
      * @param inout    specifies whether to fetch inbox or outbox messages ("in" or "out")
      * @param page     the page number to fetch (default is 0)
      * @param size     the size of the page (default is 10)
-     * @param field    optional field to filter messages
-     * @param value    optional value to filter messages by the specified field
+     * @param field    optional field to filter messages ("sender", "receiver" or "content")
+     * @param value    optional value to filter messages by the specified field; content searches
+     *                 match all terms and quoted phrases and are ordered by relevance
+     * @param month    optional archived month (yyyy-MM) to read instead of the recent messages; its messages are
+     *                 filtered by substring and ordered newest first
      * @return ResponseEntity containing a page of messages or appropriate HTTP status
      */
     @GetMapping("/message")
-    public ResponseEntity<Page<Message>> getMessages(@RequestHeader("Authorization") String token,
+    public ResponseEntity<PageResponse<MessageView>> getMessages(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal,
+                                                     WebRequest request,
                                                      @RequestParam String inout,
                                                      @RequestParam(defaultValue = "0") int page,
                                                      @RequestParam(defaultValue = "10") int size,
                                                      @RequestParam(required = false) String field,
-                                                     @RequestParam(required = false) String value) {
-        if (!activeTokens.contains(token)) {
-            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+                                                     @RequestParam(required = false) String value,
+                                                     @RequestParam(required = false) String month) {
+        YearMonth archived = null;
+        if (month != null) {
+            try {
+                archived = YearMonth.parse(month);
+            } catch (DateTimeParseException e) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            if (field != null && !ARCHIVE_FIELDS.contains(field)) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
         }
 
         try {
-            String username = AuthService.getUsername(token);
-            Pageable paging = PageRequest.of(page, size);
-            Page<Message> messages;
+            String username = principal.username();
+            YearMonth archivedMonth = archived;
+            // The ETag and the page are read together, so a page is never served under a newer mailbox version
+            return mailboxCounterService.read(username, counter -> {
+                if (request.checkNotModified(counter.etag())) {
+                    return null; // Return 304 if the mailbox has not changed
+                }
+                Pageable paging = PageRequest.of(page, size);
+                Page<MessageView> messages;
 
-            if ("in".equalsIgnoreCase(inout)) {
-                if (field != null && value != null) {
-                    messages = messageRepository.findInboxMessagesByFieldAndValue(username, field, value, paging);
+                if (archivedMonth != null && ("in".equalsIgnoreCase(inout) || "out".equalsIgnoreCase(inout))) {
+                    messages = messageArchiveService.find(username, archivedMonth, "in".equalsIgnoreCase(inout), field, value, paging);
+                } else if ("in".equalsIgnoreCase(inout)) {
+                    if ("content".equals(field) && value != null) {
+                        messages = messageSearchService.searchInbox(username, value, paging).map(MessageView::of);
+                    } else if (field != null && value != null) {
+                        messages = messageRepository.findInboxMessagesByFieldAndValue(username, field, value, paging).map(MessageView::of);
+                    } else {
+                        messages = new PageImpl<>(messageRepository.findInboxPage(username, paging), paging, counter.getInbox());
+                    }
+                } else if ("out".equalsIgnoreCase(inout)) {
+                    if ("content".equals(field) && value != null) {
+                        messages = messageSearchService.searchOutbox(username, value, paging).map(MessageView::of);
+                    } else if (field != null && value != null) {
+                        messages = messageRepository.findOutboxMessagesByFieldAndValue(username, field, value, paging).map(MessageView::of);
+                    } else {
+                        messages = new PageImpl<>(messageRepository.findOutboxPage(username, paging), paging, counter.getOutbox());
+                    }
                 } else {
-                    messages = messageRepository.findByReceiver(username, paging);
+                    return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
                 }
-            } else if ("out".equalsIgnoreCase(inout)) {
-                if (field != null && value != null) {
-                    messages = messageRepository.findOutboxMessagesByFieldAndValue(username, field, value, paging);
+
+                if (messages.isEmpty()) {
+                    return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+                }
+
+                return new ResponseEntity<>(PageResponse.of(messages), HttpStatus.OK);
+            });
+        } catch (Exception e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get messages for the logged-in user with keyset pagination, newest first.
+     * Each page is located by the opaque cursor of the previous one, so deep pages cost as much as the first.
+     * Like the paged listing, the response carries the mailbox version as its ETag.
+     *
+     * @param principal the authenticated user
+     * @param request   the request, checked for a matching If-None-Match header
+     * @param inout    specifies whether to fetch inbox or outbox messages ("in" or "out")
+     * @param cursor   the cursor returned with the previous page, omitted for the first page
+     * @param size     the size of the page (default is 10)
+     * @param field    optional field to filter messages ("sender", "receiver" or "content")
+     * @param value    optional value to filter messages by the specified field
+     * @return ResponseEntity containing the messages and the cursor of the next page or appropriate HTTP status
+     */
+    @GetMapping("/message/cursor")
+    public ResponseEntity<CursorPage<MessageView>> getMessagesByCursor(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal,
+                                                                   WebRequest request,
+                                                                   @RequestParam String inout,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "10") int size,
+                                                                   @RequestParam(required = false) String field,
+                                                                   @RequestParam(required = false) String value) {
+        MessageCursor position;
+        try {
+            position = MessageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (size <= 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        try {
+            String username = principal.username();
+            return mailboxCounterService.read(username, counter -> {
+                if (request.checkNotModified(counter.etag())) {
+                    return null; // Return 304 if the mailbox has not changed
+                }
+                // Fetch one extra message to find out whether there is a next page
+                Pageable limit = PageRequest.of(0, size + 1);
+                List<MessageView> messages;
+
+                if ("in".equalsIgnoreCase(inout)) {
+                    if ("content".equals(field) && value != null) {
+                        messages = messageSearchService.searchInboxBefore(username, value, position, size + 1).stream().map(MessageView::of).toList();
+                    } else if ("sender".equals(field) && value != null) {
+                        messages = messageRepository.findInboxBySenderBefore(username, value, position.timestamp(), position.id(), limit);
+                    } else if (field == null || value == null) {
+                        messages = messageRepository.findInboxBefore(username, position.timestamp(), position.id(), limit);
+                    } else {
+                        return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+                    }
+                } else if ("out".equalsIgnoreCase(inout)) {
+                    if ("content".equals(field) && value != null) {
+                        messages = messageSearchService.searchOutboxBefore(username, value, position, size + 1).stream().map(MessageView::of).toList();
+                    } else if ("receiver".equals(field) && value != null) {
+                        messages = messageRepository.findOutboxByReceiverBefore(username, value, position.timestamp(), position.id(), limit);
+                    } else if (field == null || value == null) {
+                        messages = messageRepository.findOutboxBefore(username, position.timestamp(), position.id(), limit);
+                    } else {
+                        return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+                    }
                 } else {
-                    messages = messageRepository.findBySender(username, paging);
+                    return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
                 }
-            } else {
-                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-            }
 
-            if (messages.isEmpty()) {
-                return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+                if (messages.size() <= size) {
+                    return new ResponseEntity<>(new CursorPage<>(messages, null), HttpStatus.OK);
+                }
+                List<MessageView> page = messages.subList(0, size);
+                return new ResponseEntity<>(new CursorPage<>(page, MessageCursor.of(page.get(size - 1)).encode()), HttpStatus.OK);
+            });
+        } catch (Exception e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get the months of the logged-in user's archive, most recent first. Messages older than the hot window are
+     * moved there in the background and are read a month at a time through the month parameter of /message.
+     *
+     * @param principal the authenticated user
+     * @return ResponseEntity containing the archived months with their message counts or appropriate HTTP status
+     */
+    @GetMapping("/message/archive")
+    public ResponseEntity<List<ArchiveMonth>> getArchivedMonths(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal) {
+        try {
+            return new ResponseEntity<>(messageArchiveService.findMonths(principal.username()), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get the inbox, outbox and unread totals and the version of the logged-in user's mailbox.
+     *
+     * @param principal the authenticated user
+     * @param request   the request, checked for a matching If-None-Match header
+     * @return ResponseEntity containing the mailbox counter or appropriate HTTP status
+     */
+    @GetMapping("/message/summary")
+    public ResponseEntity<MailboxCounter> getSummary(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal, WebRequest request) {
+        try {
+            MailboxCounter counter = mailboxCounterService.get(principal.username());
+            if (request.checkNotModified(counter.etag())) {
+                return null; // Return 304 if the mailbox has not changed
             }
+            return new ResponseEntity<>(counter, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get the messages added to the logged-in user's mailbox since a version the client holds, received and sent,
+     * in the order they were added. Without a version only the current version is returned, to start syncing from
+     * after loading the mailbox; when nothing changed only the mailbox counter is read.
+     *
+     * @param principal the authenticated user
+     * @param since     the mailbox version the client holds, omitted to get the current version
+     * @param size      the maximum number of messages (default is 100)
+     * @return ResponseEntity containing the messages and the version to sync from next or appropriate HTTP status
+     */
+    @GetMapping("/message/sync")
+    public ResponseEntity<MailboxSync> syncMessages(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal,
+                                                   @RequestParam(required = false) Long since,
+                                                   @RequestParam(defaultValue = "100") int size) {
+        if (size <= 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
 
-            return new ResponseEntity<>(messages, HttpStatus.OK);
+        try {
+            String username = principal.username();
+            if (since == null) {
+                return new ResponseEntity<>(new MailboxSync(List.of(), mailboxCounterService.get(username).getVersion(), false), HttpStatus.OK);
+            }
+            return new ResponseEntity<>(mailboxCounterService.sync(username, since, size), HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * Export the whole inbox and/or outbox of the logged-in user as NDJSON or CSV, newest first.
+     * The response is streamed from a database cursor while it is written, so its size is not limited by memory.
+     *
+     * @param principal the authenticated user
+     * @param inout    the mailbox to export ("in", "out" or "both", default is "both")
+     * @param format   the format of the export ("ndjson" or "csv", default is "ndjson")
+     * @return ResponseEntity streaming the messages or appropriate HTTP status
+     */
+    @GetMapping("/message/export")
+    public ResponseEntity<StreamingResponseBody> exportMessages(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal,
+                                                                @RequestParam(defaultValue = "both") String inout,
+                                                                @RequestParam(defaultValue = "ndjson") String format) {
+        if (!MailboxExportService.isMailbox(inout) || !MailboxExportService.isFormat(format)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        String username = principal.username();
+        MediaType type = "csv".equals(format) ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.APPLICATION_NDJSON;
+        return ResponseEntity.ok()
+                .contentType(type)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("messages-" + inout + "." + format).build().toString())
+                .body(out -> mailboxExportService.export(username, inout, format, out));
+    }
+
+    /**
+     * Mark a received message as read.
+     *
+     * @param principal the authenticated user
+     * @param id        the id of the message
+     * @return ResponseEntity with appropriate HTTP status
+     */
+    @Transactional
+    @PutMapping("/message/{id}/read")
+    public ResponseEntity<HttpStatus> markRead(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal, @PathVariable("id") long id) {
+        try {
+            String username = principal.username();
+            if (messageRepository.markRead(id, username) == 1) {
+                mailboxCounterService.recordRead(username);
+            } else if (!messageRepository.existsInInbox(id, username)) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Return 404 if the message is not in the user's inbox
+            }
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Stream the messages received by the logged-in user as server-sent events.
+     * Each event carries a message as JSON and the version of the user's mailbox that added it as the event id;
+     * a client reconnecting with the Last-Event-ID header first receives the messages it missed.
+     *
+     * @param principal   the authenticated user
+     * @param lastEventId optional id of the last event the client received
+     * @return the event stream
+     */
+    @GetMapping(value = "/message/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamMessages(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal,
+                                                     @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return new ResponseEntity<>(messagePushService.subscribe(principal.username(), lastEventId), HttpStatus.OK);
+    }
+
     /**
      * Send a message from the logged-in user.
+     * With write-behind ingestion enabled the message is stored in a group commit; the caller either waits for
+     * the commit ("durable", the default) or is answered as soon as the message is queued ("accepted").
+     * Sends are refused with 429 once the user exceeds the send rate limit and with 503 while the database
+     * connection pool or the ingestion queue is saturated, both with a Retry-After header.
      *
-     * @param token   the authorization token
+     * @param principal the authenticated user
      * @param message the message object to be sent
-     * @return ResponseEntity containing the created message or appropriate HTTP status
+     * @param ack     optional acknowledgement mode ("durable" or "accepted"); ignored when ingestion is disabled
+     * @return ResponseEntity containing the created message, 202 if the message was only queued, or appropriate HTTP status
      */
     @PostMapping("/message")
-    public ResponseEntity<Message> sendMessage(@RequestHeader("Authorization") String token, @RequestBody Message message) {
-        if (!activeTokens.contains(token)) {
-            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+    public CompletableFuture<ResponseEntity<Message>> sendMessage(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal,
+                                                                  @RequestBody Message message,
+                                                                  @RequestParam(defaultValue = "durable") String ack) {
+        if (!"durable".equals(ack) && !"accepted".equals(ack)) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+
+        try {
+            String sender = principal.username();
+            ResponseEntity<Message> refused = sendThrottle.check(sender);
+            if (refused != null) {
+                return CompletableFuture.completedFuture(refused); // Return 429 or 503 if the user or the instance is over its limit
+            }
+            if (!userCache.exists(message.getReceiver())) {
+                return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.NOT_FOUND)); // Return 404 if receiver does not exist
+            }
+            Message _message = new Message(sender, message.getReceiver(), message.getContent(), new Timestamp(System.currentTimeMillis()));
+
+            if (!messageIngestionService.isEnabled()) {
+                return CompletableFuture.completedFuture(new ResponseEntity<>(messageIngestionService.write(List.of(_message)).get(0), HttpStatus.CREATED));
+            }
+
+            CompletableFuture<Message> committed = messageIngestionService.submit(_message);
+            if (committed == null) {
+                return CompletableFuture.completedFuture(sendThrottle.unavailable()); // Return 503 if the queue is full
+            }
+            if ("accepted".equals(ack)) {
+                return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.ACCEPTED));
+            }
+            return committed
+                    .thenApply(saved -> new ResponseEntity<>(saved, HttpStatus.CREATED))
+                    .exceptionally(e -> new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR));
+        }
+    }
+
+    /**
+     * Send the same message from the logged-in user to several receivers.
+     * Receivers unknown to the user cache's Bloom filter are rejected without a query, the others are checked
+     * with a single query, and the messages are inserted in JDBC batches. A request naming more distinct receivers
+     * than the configured maximum is refused with 400, so one request cannot hold a transaction open indefinitely.
+     * Each receiver named counts as one send against the rate limit, and batches are refused with 429 or 503 like
+     * single sends.
+     *
+     * @param principal the authenticated user
+     * @param request   the receivers and the content of the message
+     * @return ResponseEntity containing the created messages and the unknown receivers or appropriate HTTP status
+     */
+    @PostMapping("/message/batch")
+    public ResponseEntity<BatchMessageResponse> sendBatchMessage(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal,
+                                                                 @RequestBody BatchMessageRequest request) {
+        if (request.receivers() == null || request.receivers().isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
         try {
-            String sender = AuthService.getUsername(token);
-            if (!userRepository.existsByUsername(message.getReceiver())) {
-                return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Return 404 if receiver does not exist
+            String sender = principal.username();
+            Set<String> receivers = new LinkedHashSet<>(request.receivers());
+            if (receivers.size() > maxBatchReceivers) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST); // Return 400 if there are too many receivers
             }
-            Message _message = messageRepository.save(new Message(sender, message.getReceiver(), message.getContent(), new Timestamp(System.currentTimeMillis())));
-            return new ResponseEntity<>(_message, HttpStatus.CREATED);
+            ResponseEntity<BatchMessageResponse> refused = sendThrottle.check(sender, receivers.size());
+            if (refused != null) {
+                return refused; // Return 429 or 503 if the user or the instance is over its limit
+            }
+            List<String> candidates = receivers.stream().filter(userCache::mightExist).toList();
+            Set<String> existing = candidates.isEmpty() ? Set.of() : userRepository.findExistingUsernames(candidates);
+            if (existing.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Return 404 if no receiver exists
+            }
+
+            Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+            List<Message> messages = new ArrayList<>();
+            List<String> unknownReceivers = new ArrayList<>();
+            for (String receiver : receivers) {
+                if (existing.contains(receiver)) {
+                    messages.add(new Message(sender, receiver, request.content(), timestamp));
+                } else {
+                    unknownReceivers.add(receiver);
+                }
+            }
+
+            List<Message> sent = messageIngestionService.write(messages);
+            return new ResponseEntity<>(new BatchMessageResponse(sent, unknownReceivers), HttpStatus.CREATED);
         } catch (Exception e) {
             return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -1,10 +1,9 @@
 package com.srdc.hw2.controller;
 
+import java.io.InputStream;
 import java.sql.Date;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -15,15 +14,26 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import com.srdc.hw2.dto.PageResponse;
+import com.srdc.hw2.dto.UserImportReport;
+import com.srdc.hw2.dto.UserView;
+import com.srdc.hw2.mailbox.MailboxCounterService;
 import com.srdc.hw2.model.User;
 import com.srdc.hw2.repository.UserRepository;
-import com.srdc.hw2.repository.MessageRepository;
+import com.srdc.hw2.search.UsernameIndex;
+import com.srdc.hw2.security.AuthInterceptor;
+import com.srdc.hw2.security.AuthPrincipal;
 import com.srdc.hw2.security.AuthService;
+import com.srdc.hw2.security.SessionRegistry;
+import com.srdc.hw2.user.UserCache;
+import com.srdc.hw2.user.UserDeletionService;
+import com.srdc.hw2.user.UserImportService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -37,25 +47,40 @@ public class UserController {
     UserRepository userRepository;
 
     @Autowired
-    MessageRepository messageRepository;
+    SessionRegistry sessionRegistry;
 
-    // List to maintain active tokens
-    static List<String> activeTokens = new ArrayList<>();
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    @Autowired
+    MailboxCounterService mailboxCounterService;
+
+    @Autowired
+    UserDeletionService userDeletionService;
+
+    @Autowired
+    UserImportService userImportService;
+
+    @Autowired
+    UserCache userCache;
+
+    // Upper bound for the number of username suggestions returned by a search
+    static final int MAX_SEARCH_RESULTS = 100;
 
     /**
-     * Log in a user and return a token.
+     * Log in a user and return a token. The user is looked up in the user cache.
      *
      * @param user the user object containing username and password
      * @return ResponseEntity containing the token or appropriate HTTP status
      */
     @PostMapping("/user/login")
     public ResponseEntity<String> login(@RequestBody User user) {
-        Optional<User> userData = Optional.ofNullable(userRepository.findByUsername(user.getUsername()));
+        Optional<User> userData = Optional.ofNullable(userCache.find(user.getUsername()));
 
         if (userData.isPresent() && userData.get().getPassword().equals(user.getPassword())) {
             boolean isAdmin = userData.get().isAdmin();
             String token = AuthService.login(user.getUsername(), isAdmin);
-            activeTokens.add(token); // Add token to the active tokens list
+            sessionRegistry.register(token, user.getUsername(), AuthService.authenticate(token).expiresAt());
             return new ResponseEntity<>(token, HttpStatus.OK);
         } else {
             return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
@@ -70,47 +95,45 @@ public class UserController {
      */
     @PostMapping("/user/logout")
     public ResponseEntity<Void> logout(@RequestHeader("Authorization") String token) {
-        if (activeTokens.contains(token)) {
-            activeTokens.remove(token); // Remove token from the active tokens list
-        }
+        sessionRegistry.remove(token);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     /**
      * List all users with pagination and optional filtering.
      *
-     * @param token  the authorization token
+     * @param principal the authenticated user
      * @param page   the page number to fetch (default is 0)
      * @param size   the size of the page (default is 10)
      * @param field  optional field to filter users
      * @param value  optional value to filter users by the specified field
-     * @return ResponseEntity containing a page of users or appropriate HTTP status
+     * @return ResponseEntity containing a page of users without their passwords or appropriate HTTP status
      */
     @GetMapping("/user")
-    public ResponseEntity<Page<User>> listUsers(@RequestHeader("Authorization") String token,
+    public ResponseEntity<PageResponse<UserView>> listUsers(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal,
                                                 @RequestParam(defaultValue = "0") int page,
                                                 @RequestParam(defaultValue = "10") int size,
                                                 @RequestParam(required = false) String field,
                                                 @RequestParam(required = false) String value) {
-        if (!activeTokens.contains(token) || !AuthService.isAdmin(token)) {
+        if (!principal.admin()) {
             return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
         }
 
         try {
             Pageable paging = PageRequest.of(page, size);
-            Page<User> users;
+            Page<UserView> users;
 
             if (field != null && value != null) {
-                users = userRepository.findUsersByFieldAndValue(field, value, paging);
+                users = userRepository.findUsersByFieldAndValue(field, value, paging).map(UserView::of);
             } else {
-                users = userRepository.findAll(paging);
+                users = userRepository.findAllViews(paging);
             }
 
             if (users.isEmpty()) {
                 return new ResponseEntity<>(HttpStatus.NO_CONTENT);
             }
 
-            return new ResponseEntity<>(users, HttpStatus.OK);
+            return new ResponseEntity<>(PageResponse.of(users), HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -119,29 +142,64 @@ public class UserController {
     /**
      * Create a new user.
      *
-     * @param token the authorization token
+     * @param principal the authenticated user
      * @param user  the user object to be created
      * @return ResponseEntity containing the created user or appropriate HTTP status
      */
     @PostMapping("/user")
-    public ResponseEntity<User> createUser(@RequestHeader("Authorization") String token, @RequestBody User user) {
-        if (!activeTokens.contains(token) || !AuthService.isAdmin(token)) {
+    public ResponseEntity<User> createUser(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal, @RequestBody User user) {
+        if (!principal.admin()) {
             return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
         }
 
+        if (userDeletionService.isPending(user.getUsername())) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT); // Return 409 while messages of a removed user with this username are rewritten
+        }
+
         try {
             User _user = userRepository
                     .save(new User(user.getUsername(), user.getPassword(), user.getName(), user.getSurname(), user.getBirthdate(), user.getGender(), user.getEmail(), user.getLocation(), user.isAdmin()));
+            usernameIndex.add(_user.getUsername());
+            mailboxCounterService.get(_user.getUsername());
             return new ResponseEntity<>(_user, HttpStatus.CREATED);
         } catch (Exception e) {
             return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * Create users in bulk from a CSV or NDJSON upload, which is read and stored while it is received.
+     * Rows that cannot be imported are reported and do not stop the import.
+     *
+     * @param principal the authenticated user
+     * @param format    the format of the upload ("ndjson" or "csv", default is "ndjson")
+     * @param body      the upload
+     * @return ResponseEntity containing the number of users created and the rejected rows or appropriate HTTP status
+     */
+    @PostMapping("/user/import")
+    public ResponseEntity<UserImportReport> importUsers(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal,
+                                                        @RequestParam(defaultValue = "ndjson") String format,
+                                                        InputStream body) {
+        if (!principal.admin()) {
+            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        }
+        if (!UserImportService.isFormat(format)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        try {
+            return new ResponseEntity<>(userImportService.importUsers(body, format), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST); // Return 400 if the CSV header is missing or invalid
+        } catch (Exception e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     /**
      * Update a user by username.
      *
-     * @param token    the authorization token
+     * @param principal the authenticated user
      * @param username the username of the user to be updated
      * @param field    the field to be updated
      * @param value    the new value for the specified field
@@ -149,20 +207,23 @@ public class UserController {
      */
     @PutMapping("/user/{username}")
     public ResponseEntity<User> updateUser(
-            @RequestHeader("Authorization") String token,
+            @RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal,
             @PathVariable("username") String username,
             @RequestParam("field") String field,
             @RequestParam("value") String value) {
-        if (!activeTokens.contains(token) || !AuthService.isAdmin(token)) {
+        if (!principal.admin()) {
             return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
         }
 
-        Optional<User> userData = Optional.ofNullable(userRepository.findByUsername(username));
+        Optional<User> userData = Optional.ofNullable(userCache.find(username));
 
         if (userData.isPresent()) {
             User _user = userData.get();
             switch (field.toLowerCase()) {
                 case "username":
+                    if (userDeletionService.isPending(value)) {
+                        return new ResponseEntity<>(HttpStatus.CONFLICT);
+                    }
                     _user.setUsername(value);
                     break;
                 case "password":
@@ -192,7 +253,12 @@ public class UserController {
                 default:
                     return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
             }
-            return new ResponseEntity<>(userRepository.save(_user), HttpStatus.OK);
+            User savedUser = userRepository.save(_user);
+            userCache.evict(username);
+            if (!savedUser.getUsername().equals(username)) {
+                usernameIndex.rename(username, savedUser.getUsername());
+            }
+            return new ResponseEntity<>(savedUser, HttpStatus.OK);
         } else {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
@@ -201,30 +267,26 @@ public class UserController {
     /**
      * Remove a user by username.
      *
-     * @param token    the authorization token
+     * @param principal the authenticated user
      * @param username the username of the user to be removed
      * @return ResponseEntity with appropriate HTTP status
      */
     @Transactional
     @DeleteMapping("/user/{username}")
-    public ResponseEntity<HttpStatus> removeUser(@RequestHeader("Authorization") String token, @PathVariable("username") String username) {
-        if (!activeTokens.contains(token) || !AuthService.isAdmin(token)) {
+    public ResponseEntity<HttpStatus> removeUser(@RequestAttribute(AuthInterceptor.PRINCIPAL) AuthPrincipal principal, @PathVariable("username") String username) {
+        if (!principal.admin()) {
             return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
         }
 
-        Optional<User> userData = Optional.ofNullable(userRepository.findByUsername(username));
-
-        if (userData.isPresent()) {
+        if (userCache.exists(username)) {
             try {
-                // Nullify sender and receiver in messages
-                messageRepository.nullifySender(username);
-                messageRepository.nullifyReceiver(username);
-
-                // Delete the user
-                userRepository.deleteByUsername(username);
+                // Delete the user; its messages are rewritten in the background
+                userDeletionService.remove(username);
+                usernameIndex.remove(username);
+                userCache.evictAfterCommit(username);
 
                 // Remove tokens associated with the username
-                activeTokens.removeIf(t -> AuthService.getUsername(t).equals(username));
+                sessionRegistry.removeUser(username);
 
                 return new ResponseEntity<>(HttpStatus.NO_CONTENT);
             } catch (Exception e) {
@@ -238,22 +300,18 @@ public class UserController {
     /**
      * Search for usernames containing a specified string.
      *
-     * @param token    the authorization token
      * @param username the string to search for within usernames
+     * @param limit    the maximum number of usernames to return (default is 10, at most 100)
      * @return ResponseEntity containing a list of matching usernames or appropriate HTTP status
      */
     @GetMapping("/user/search")
-    public ResponseEntity<List<String>> searchUsernames(@RequestHeader("Authorization") String token,
-                                                        @RequestParam("username") String username) {
-        if (!activeTokens.contains(token)) {
-            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+    public ResponseEntity<List<String>> searchUsernames(@RequestParam("username") String username,
+                                                        @RequestParam(defaultValue = "10") int limit) {
+        if (limit <= 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
-        List<User> users = userRepository.findAll();
-        List<String> usernames = users.stream()
-                .filter(user -> user.getUsername().toLowerCase().contains(username.toLowerCase()))
-                .map(User::getUsername)
-                .collect(Collectors.toList());
+        List<String> usernames = usernameIndex.search(username, Math.min(limit, MAX_SEARCH_RESULTS));
 
         return new ResponseEntity<>(usernames, HttpStatus.OK);
     }
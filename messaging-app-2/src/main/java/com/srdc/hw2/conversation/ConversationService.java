@@ -0,0 +1,200 @@
+package com.srdc.hw2.conversation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.srdc.hw2.archive.MessageArchiveService;
+import com.srdc.hw2.dto.ConversationSummary;
+import com.srdc.hw2.dto.MessageCursor;
+import com.srdc.hw2.dto.MessageView;
+import com.srdc.hw2.model.Conversation;
+import com.srdc.hw2.model.ConversationId;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.repository.ConversationRepository;
+import com.srdc.hw2.repository.MessageRepository;
+
+/**
+ * ConversationService reads the messages exchanged by two users and maintains the conversation lists.
+ * The messages of a conversation are one range of the participants index, whichever direction they were sent in.
+ * A user's conversation list has one row per partner holding the last message, created before the first message
+ * between the two users is stored and moved forward by the transactions that store later ones.
+ * Conversations and their last messages outlive the archiving of those messages, and reading a conversation
+ * continues into the archive once its messages in the messages table are exhausted.
+ */
+@Service
+public class ConversationService {
+
+    private static final Comparator<Message> MESSAGE_ORDER = Comparator.comparing(Message::getTimestamp).thenComparingLong(Message::getId);
+
+    @Autowired
+    ConversationRepository conversationRepository;
+
+    @Autowired
+    MessageRepository messageRepository;
+
+    @Autowired
+    MessageArchiveService messageArchiveService;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Creates the conversations that messages about to be stored are the first of, in both users' lists.
+     * Must be called before the transaction that stores the messages, so that transaction only updates rows.
+     *
+     * @param messages the messages about to be stored
+     */
+    public void prepare(List<Message> messages) {
+        Set<ConversationId> needed = new HashSet<>();
+        Set<String> participants = new HashSet<>();
+        for (Message message : messages) {
+            needed.add(new ConversationId(message.getSender(), message.getReceiver()));
+            needed.add(new ConversationId(message.getReceiver(), message.getSender()));
+            participants.add(message.getSender());
+            participants.add(message.getReceiver());
+        }
+        // A superset of the needed rows is read, but through the primary key and in one query
+        conversationRepository.findExisting(participants, participants).forEach(needed::remove);
+        for (ConversationId id : needed) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> conversationRepository.create(id.getUsername(), id.getPartner()));
+            } catch (DataIntegrityViolationException e) {
+                // A concurrent request created the conversation first
+            }
+        }
+    }
+
+    /**
+     * Makes stored messages the last message of their conversations in both users' lists, unless a later
+     * message is already recorded. Must be called in the transaction that stores the messages.
+     *
+     * @param messages the stored messages
+     */
+    public void recordSent(List<Message> messages) {
+        // The rows are updated in key order so that concurrent transactions lock them in the same order
+        Map<String, Map<String, Message>> latest = new TreeMap<>();
+        for (Message message : messages) {
+            latest(latest, message.getSender(), message.getReceiver(), message);
+            latest(latest, message.getReceiver(), message.getSender(), message);
+        }
+        latest.forEach((username, partners) -> partners.forEach((partner, message) ->
+                conversationRepository.updateLastMessage(username, partner, message.getId(), message.getTimestamp())));
+    }
+
+    /**
+     * Keeps the later of a message and the latest message recorded so far for a conversation.
+     */
+    private static void latest(Map<String, Map<String, Message>> latest, String username, String partner, Message message) {
+        latest.computeIfAbsent(username, u -> new TreeMap<>())
+                .merge(partner, message, (a, b) -> MESSAGE_ORDER.compare(a, b) >= 0 ? a : b);
+    }
+
+    /**
+     * Deletes the conversations of a removed user from its own list and from the lists of its partners.
+     *
+     * @param username the removed user's username
+     */
+    public void remove(String username) {
+        conversationRepository.deleteByPartner(username);
+        conversationRepository.deleteByUsername(username);
+    }
+
+    /**
+     * Finds a user's conversations whose last message is older than a position, most recent first.
+     *
+     * @param username the owner of the conversation list
+     * @param position the position of the last message of the last conversation seen
+     * @param limit    the maximum number of conversations
+     * @return the conversations with their last messages
+     */
+    public List<ConversationSummary> findConversations(String username, MessageCursor position, int limit) {
+        List<Conversation> conversations = conversationRepository.findBefore(username, position.timestamp(), position.id(), PageRequest.of(0, limit));
+        if (conversations.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, MessageView> hot = new HashMap<>();
+        messageRepository.findViewsByIds(conversations.stream().map(Conversation::getLastMessageId).toList())
+                .forEach(message -> hot.put(message.id(), message));
+        List<ConversationSummary> summaries = new ArrayList<>(conversations.size());
+        for (Conversation conversation : conversations) {
+            MessageView last = hot.get(conversation.getLastMessageId());
+            Optional<MessageView> message = last != null ? Optional.of(last)
+                    : messageArchiveService.findMessage(username, conversation.getLastMessageId(), conversation.getLastTimestamp());
+            message.ifPresent(view -> summaries.add(new ConversationSummary(conversation.getPartner(), view)));
+        }
+        return summaries;
+    }
+
+    /**
+     * Finds the messages exchanged by two users that are older than a position, newest first, continuing into
+     * the archive of the reading user when fewer messages are left in the messages table.
+     *
+     * @param username the user reading the conversation
+     * @param partner  the other participant
+     * @param position the position of the oldest message seen
+     * @param limit    the maximum number of messages
+     * @return the messages
+     */
+    public List<MessageView> findBefore(String username, String partner, MessageCursor position, int limit) {
+        boolean usernameFirst = username.compareTo(partner) <= 0;
+        List<MessageView> messages = messageRepository.findConversationBefore(usernameFirst ? username : partner, usernameFirst ? partner : username,
+                position.timestamp(), position.id(), PageRequest.of(0, limit));
+        if (messages.size() == limit) {
+            return messages;
+        }
+        // Archived messages are older than every message left in the messages table
+        List<MessageView> page = new ArrayList<>(messages);
+        page.addAll(messageArchiveService.findConversationBefore(username, partner, position, limit - messages.size()));
+        return page;
+    }
+
+    /**
+     * Returns the position of a message exchanged by two users.
+     *
+     * @param username the user reading the conversation
+     * @param partner  the other participant
+     * @param id       the id of the message
+     * @return the position of the message, or empty if it does not exist or belongs to another conversation
+     */
+    public Optional<MessageCursor> findPosition(String username, String partner, long id) {
+        return messageRepository.findById(id)
+                .filter(message -> (username.equals(message.getSender()) && partner.equals(message.getReceiver()))
+                        || (partner.equals(message.getSender()) && username.equals(message.getReceiver())))
+                .map(MessageCursor::of);
+    }
+
+    /**
+     * Finds the messages exchanged by two users that are newer than a position, oldest first.
+     *
+     * @param username the user reading the conversation
+     * @param partner  the other participant
+     * @param position the position of the newest message seen
+     * @param limit    the maximum number of messages
+     * @return the messages
+     */
+    public List<MessageView> findSince(String username, String partner, MessageCursor position, int limit) {
+        boolean usernameFirst = username.compareTo(partner) <= 0;
+        return messageRepository.findConversationSince(usernameFirst ? username : partner, usernameFirst ? partner : username,
+                position.timestamp(), position.id(), PageRequest.of(0, limit));
+    }
+}
@@ -0,0 +1,11 @@
+package com.srdc.hw2.dto;
+
+import java.sql.Date;
+
+/**
+ * A month of a user's archived messages.
+ *
+ * @param month    the first day of the month
+ * @param messages the number of archived messages the user sent or received in the month
+ */
+public record ArchiveMonth(Date month, long messages) {}
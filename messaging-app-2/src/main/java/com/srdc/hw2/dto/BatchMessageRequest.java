@@ -0,0 +1,11 @@
+package com.srdc.hw2.dto;
+
+import java.util.List;
+
+/**
+ * A message to be sent to several receivers at once.
+ *
+ * @param receivers the usernames of the receivers
+ * @param content   the content of the message
+ */
+public record BatchMessageRequest(List<String> receivers, String content) {}
@@ -0,0 +1,12 @@
+package com.srdc.hw2.dto;
+
+import java.util.List;
+import com.srdc.hw2.model.Message;
+
+/**
+ * The outcome of a batch send.
+ *
+ * @param sent             the messages that were created, one per existing receiver
+ * @param unknownReceivers the receivers that do not exist and got no message
+ */
+public record BatchMessageResponse(List<Message> sent, List<String> unknownReceivers) {}
@@ -0,0 +1,9 @@
+package com.srdc.hw2.dto;
+
+/**
+ * An entry of a user's conversation list.
+ *
+ * @param partner     the other participant of the conversation
+ * @param lastMessage the last message exchanged in either direction
+ */
+public record ConversationSummary(String partner, MessageView lastMessage) {}
@@ -0,0 +1,12 @@
+package com.srdc.hw2.dto;
+
+import java.util.List;
+
+/**
+ * A page of a keyset-paginated listing.
+ *
+ * @param content the items of the page
+ * @param next    the opaque cursor of the next page, or null if this is the last page
+ * @param <T>     the type of the items
+ */
+public record CursorPage<T>(List<T> content, String next) {}
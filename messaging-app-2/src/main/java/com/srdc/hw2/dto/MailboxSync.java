@@ -0,0 +1,13 @@
+package com.srdc.hw2.dto;
+
+import java.util.List;
+import com.srdc.hw2.model.Message;
+
+/**
+ * The messages added to a mailbox since a version the client holds.
+ *
+ * @param messages the received and sent messages, in the order they were added
+ * @param version  the version the client holds after applying the messages
+ * @param more     true if more messages were added and the client should sync again right away
+ */
+public record MailboxSync(List<Message> messages, long version, boolean more) {}
@@ -0,0 +1,9 @@
+package com.srdc.hw2.dto;
+
+/**
+ * The current version of a user's mailbox.
+ *
+ * @param username the owner of the mailbox
+ * @param version  the version
+ */
+public record MailboxVersion(String username, long version) {}
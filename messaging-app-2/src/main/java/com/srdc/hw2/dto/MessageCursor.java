@@ -0,0 +1,71 @@
+package com.srdc.hw2.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import com.srdc.hw2.model.Message;
+
+/**
+ * A position in a mailbox ordered by (timestamp, id), newest first.
+ * Clients receive it as an opaque string and pass it back to fetch the next page.
+ *
+ * @param timestamp the timestamp of the last message seen
+ * @param id        the id of the last message seen
+ */
+public record MessageCursor(Timestamp timestamp, long id) {
+
+    /**
+     * The position before the newest message, used for the first page.
+     */
+    public static final MessageCursor FIRST = new MessageCursor(Timestamp.valueOf("9999-12-31 23:59:59"), Long.MAX_VALUE);
+
+    /**
+     * Creates the cursor pointing after a message.
+     *
+     * @param message the last message of a page
+     * @return the cursor of the message
+     */
+    public static MessageCursor of(Message message) {
+        return new MessageCursor(message.getTimestamp(), message.getId());
+    }
+
+    /**
+     * Creates the cursor pointing after a message read as a view.
+     *
+     * @param message the last message of a page
+     * @return the cursor of the message
+     */
+    public static MessageCursor of(MessageView message) {
+        return new MessageCursor(message.timestamp(), message.id());
+    }
+
+    /**
+     * Encodes the cursor as an opaque URL-safe string.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        String value = timestamp.getTime() + ":" + timestamp.getNanos() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor created by {@link #encode()}.
+     *
+     * @param cursor the encoded cursor, or null for the first page
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static MessageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return FIRST;
+        }
+        String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+        Timestamp timestamp = new Timestamp(Long.parseLong(parts[0]));
+        timestamp.setNanos(Integer.parseInt(parts[1]));
+        return new MessageCursor(timestamp, Long.parseLong(parts[2]));
+    }
+}
@@ -0,0 +1,27 @@
+package com.srdc.hw2.dto;
+
+import java.sql.Timestamp;
+import com.srdc.hw2.model.Message;
+
+/**
+ * The columns of a message shown in mailbox listings, read without loading the entity.
+ *
+ * @param id        the id of the message
+ * @param sender    the sender's username
+ * @param receiver  the receiver's username
+ * @param content   the content of the message
+ * @param timestamp the timestamp of when the message was sent
+ * @param read      whether the receiver has read the message
+ */
+public record MessageView(long id, String sender, String receiver, String content, Timestamp timestamp, boolean read) {
+
+    /**
+     * Creates the view of a loaded message, for listings that are not served by a projection query.
+     *
+     * @param message the message
+     * @return the view of the message
+     */
+    public static MessageView of(Message message) {
+        return new MessageView(message.getId(), message.getSender(), message.getReceiver(), message.getContent(), message.getTimestamp(), message.isRead());
+    }
+}
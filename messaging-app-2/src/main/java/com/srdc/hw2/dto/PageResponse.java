@@ -0,0 +1,29 @@
+package com.srdc.hw2.dto;
+
+import java.util.List;
+import org.springframework.data.domain.Page;
+
+/**
+ * A page of an offset-paginated listing, with only the fields clients page with.
+ * Replaces the serialized Page, which also writes the whole pageable and sort structures.
+ *
+ * @param content       the items of the page
+ * @param number        the number of the page, starting from 0
+ * @param size          the requested size of the page
+ * @param totalElements the total number of items
+ * @param totalPages    the total number of pages
+ * @param <T>           the type of the items
+ */
+public record PageResponse<T>(List<T> content, int number, int size, long totalElements, int totalPages) {
+
+    /**
+     * Creates the response of a page.
+     *
+     * @param page the page
+     * @param <T>  the type of the items
+     * @return the response
+     */
+    public static <T> PageResponse<T> of(Page<T> page) {
+        return new PageResponse<>(page.getContent(), page.getNumber(), page.getSize(), page.getTotalElements(), page.getTotalPages());
+    }
+}
@@ -0,0 +1,10 @@
+package com.srdc.hw2.dto;
+
+/**
+ * A row of a bulk user import that was not imported.
+ *
+ * @param line     the line of the upload the row was read from, starting at 1
+ * @param username the username of the row, or null if it could not be read
+ * @param reason   why the row was rejected
+ */
+public record UserImportError(long line, String username, String reason) {}
@@ -0,0 +1,12 @@
+package com.srdc.hw2.dto;
+
+import java.util.List;
+
+/**
+ * The outcome of a bulk user import.
+ *
+ * @param imported the number of users created
+ * @param rejected the number of rows that were not imported
+ * @param errors   the rejected rows ordered by line, at most the configured number of them
+ */
+public record UserImportReport(long imported, long rejected, List<UserImportError> errors) {}
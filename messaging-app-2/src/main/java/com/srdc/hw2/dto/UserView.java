@@ -0,0 +1,31 @@
+package com.srdc.hw2.dto;
+
+import java.sql.Date;
+import com.srdc.hw2.model.User;
+
+/**
+ * The columns of a user shown in the user listing, without the password.
+ *
+ * @param username  the username
+ * @param name      the user's first name
+ * @param surname   the user's surname
+ * @param birthdate the user's birthdate
+ * @param gender    the user's gender
+ * @param email     the user's email address
+ * @param location  the user's location
+ * @param admin     whether the user is an admin
+ */
+public record UserView(String username, String name, String surname, Date birthdate, String gender,
+                       String email, String location, boolean admin) {
+
+    /**
+     * Creates the view of a loaded user, for listings that are not served by a projection query.
+     *
+     * @param user the user
+     * @return the view of the user
+     */
+    public static UserView of(User user) {
+        return new UserView(user.getUsername(), user.getName(), user.getSurname(), user.getBirthdate(), user.getGender(),
+                user.getEmail(), user.getLocation(), user.isAdmin());
+    }
+}
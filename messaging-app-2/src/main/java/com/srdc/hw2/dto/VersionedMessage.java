@@ -0,0 +1,11 @@
+package com.srdc.hw2.dto;
+
+import com.srdc.hw2.model.Message;
+
+/**
+ * A message together with the version of a user's mailbox that added it.
+ *
+ * @param message the message
+ * @param version the mailbox version
+ */
+public record VersionedMessage(Message message, long version) {}
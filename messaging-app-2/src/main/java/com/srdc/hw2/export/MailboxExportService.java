@@ -0,0 +1,176 @@
+package com.srdc.hw2.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.srdc.hw2.archive.MessageArchiveService;
+import com.srdc.hw2.dto.MessageView;
+import com.srdc.hw2.repository.MessageRepository;
+
+/**
+ * MailboxExportService writes a user's whole inbox and outbox as NDJSON or CSV.
+ * Messages are read as projections from a database cursor with a fixed fetch size and written out one by one,
+ * so no entity is loaded into the persistence context and memory use does not grow with the mailbox.
+ * Each mailbox continues with the user's archived messages, decoded one month at a time.
+ * The export holds one database connection and a read-only transaction until it is written.
+ */
+@Service
+public class MailboxExportService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER = "id,sender,receiver,content,timestamp,read\n";
+
+    @Autowired
+    MessageRepository messageRepository;
+
+    @Autowired
+    MessageArchiveService messageArchiveService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private ObjectWriter lineWriter;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        // Flushing after every message would send one packet per line
+        lineWriter = objectMapper.writerFor(MessageView.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Checks if a mailbox selection is supported.
+     *
+     * @param inout the mailbox to export ("in", "out" or "both")
+     * @return true if the mailbox can be exported
+     */
+    public static boolean isMailbox(String inout) {
+        return "in".equals(inout) || "out".equals(inout) || "both".equals(inout);
+    }
+
+    /**
+     * Checks if an export format is supported.
+     *
+     * @param format the format ("ndjson" or "csv")
+     * @return true if the format can be written
+     */
+    public static boolean isFormat(String format) {
+        return "ndjson".equals(format) || "csv".equals(format);
+    }
+
+    /**
+     * Writes the messages of a user's mailbox to a stream, newest first; with "both" the inbox is written before
+     * the outbox. The stream is flushed but not closed.
+     *
+     * @param username the owner of the mailbox
+     * @param inout    the mailbox to export ("in", "out" or "both")
+     * @param format   the format ("ndjson" or "csv")
+     * @param out      the stream to write to
+     * @return the number of messages written
+     * @throws IOException if writing to the stream fails
+     */
+    public long export(String username, String inout, String format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        boolean csv = "csv".equals(format);
+        // The generator writes through the same buffer and must leave the response stream open
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        if (csv) {
+            writer.write(CSV_HEADER);
+        }
+
+        try {
+            long written = transactionTemplate.execute(status -> {
+                long count = 0;
+                if (!"out".equals(inout)) {
+                    count += write(messageRepository.streamInbox(username), csv, writer, generator);
+                    count += write(messageArchiveService.stream(username, true), csv, writer, generator);
+                }
+                if (!"in".equals(inout)) {
+                    count += write(messageRepository.streamOutbox(username), csv, writer, generator);
+                    count += write(messageArchiveService.stream(username, false), csv, writer, generator);
+                }
+                return count;
+            });
+            generator.flush();
+            writer.flush();
+            return written;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes and then closes a stream of messages, one line per message.
+     */
+    private long write(Stream<MessageView> messages, boolean csv, Writer writer, JsonGenerator generator) {
+        try (messages) {
+            long count = 0;
+            for (MessageView message : (Iterable<MessageView>) messages::iterator) {
+                if (csv) {
+                    writeCsv(message, writer);
+                } else {
+                    lineWriter.writeValue(generator, message);
+                    generator.writeRaw('\n');
+                }
+                count++;
+            }
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a message as a CSV record.
+     */
+    private static void writeCsv(MessageView message, Writer writer) throws IOException {
+        writer.write(Long.toString(message.id()));
+        writer.write(',');
+        writeCsvField(message.sender(), writer);
+        writer.write(',');
+        writeCsvField(message.receiver(), writer);
+        writer.write(',');
+        writeCsvField(message.content(), writer);
+        writer.write(',');
+        writer.write(message.timestamp() != null ? message.timestamp().toInstant().toString() : "");
+        writer.write(',');
+        writer.write(Boolean.toString(message.read()));
+        writer.write('\n');
+    }
+
+    /**
+     * Writes a field, quoted as RFC 4180 requires when it contains a separator, a quote or a line break.
+     */
+    private static void writeCsvField(String value, Writer writer) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,270 @@
+package com.srdc.hw2.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.srdc.hw2.conversation.ConversationService;
+import com.srdc.hw2.mailbox.MailboxCounterService;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.push.MessagePushService;
+import com.srdc.hw2.repository.MessageRepository;
+import com.srdc.hw2.search.MessageSearchService;
+
+/**
+ * MessageIngestionService writes sent messages to the database.
+ * When write-behind ingestion is enabled, accepted messages are put on a bounded queue and a single writer thread
+ * stores them in group commits: a batch is committed as soon as it is full or when the oldest message in it has
+ * waited for the maximum delay, so many requests share one transaction and one fsync.
+ */
+@Service
+public class MessageIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageIngestionService.class);
+    private static final long IDLE_POLL_MS = 100;
+
+    @Autowired
+    MessageRepository messageRepository;
+
+    @Autowired
+    MessageSearchService messageSearchService;
+
+    @Autowired
+    MessagePushService messagePushService;
+
+    @Autowired
+    MailboxCounterService mailboxCounterService;
+
+    @Autowired
+    ConversationService conversationService;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${messaging.ingest.enabled:false}")
+    boolean enabled;
+
+    @Value("${messaging.ingest.queue-capacity:10000}")
+    int queueCapacity;
+
+    @Value("${messaging.ingest.batch-size:500}")
+    int batchSize;
+
+    @Value("${messaging.ingest.max-delay-ms:5}")
+    long maxDelay;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    boolean virtualThreads;
+
+    /**
+     * A queued message and the future completed once it is committed.
+     *
+     * @param message   the message to store
+     * @param committed completed with the stored message, or exceptionally if it could not be stored
+     */
+    private record Pending(Message message, CompletableFuture<Message> committed) {}
+
+    private BlockingQueue<Pending> queue;
+    private TransactionTemplate transactionTemplate;
+    private Thread writer;
+    private volatile boolean running;
+
+    private DistributionSummary batchSizes;
+    private Timer commitTimer;
+    private Counter rejected;
+    private Counter failed;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        batchSizes = DistributionSummary.builder("messaging.ingest.batch.size")
+                .description("Number of messages stored per group commit")
+                .register(meterRegistry);
+        commitTimer = Timer.builder("messaging.ingest.commit")
+                .description("Time spent storing and committing a batch of messages")
+                .register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("messaging.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Number of accepted messages waiting to be committed")
+                .register(meterRegistry);
+        rejected = Counter.builder("messaging.ingest.rejected")
+                .description("Messages rejected because the ingestion queue was full")
+                .register(meterRegistry);
+        failed = Counter.builder("messaging.ingest.failed")
+                .description("Accepted messages that could not be stored")
+                .register(meterRegistry);
+
+        running = true;
+        writer = (virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform()).name("message-writer").start(this::drain);
+    }
+
+    /**
+     * Checks if write-behind ingestion is enabled.
+     *
+     * @return true if messages are stored through the ingestion queue, false if they are stored synchronously
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stores messages in a single transaction on the calling thread, together with their index postings,
+     * mailbox counters and conversations, and pushes them to their receivers after the commit.
+     *
+     * @param messages the messages to store
+     * @return the stored messages
+     */
+    public List<Message> write(List<Message> messages) {
+        return commitTimer.record(() -> {
+            conversationService.prepare(messages);
+            return transactionTemplate.execute(status -> {
+                mailboxCounterService.recordSent(messages);
+                List<Message> saved = messageRepository.saveAll(messages);
+                messageSearchService.indexAll(saved);
+                conversationService.recordSent(saved);
+                saved.forEach(messagePushService::publishAfterCommit);
+                return saved;
+            });
+        });
+    }
+
+    /**
+     * Puts a message on the ingestion queue without waiting for it to be stored.
+     *
+     * @param message the message to store
+     * @return a future completed with the stored message once its batch is committed,
+     *         or null if ingestion is disabled, shutting down or the queue is full
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        if (!running) {
+            return null;
+        }
+        CompletableFuture<Message> committed = new CompletableFuture<>();
+        if (!queue.offer(new Pending(message, committed))) {
+            rejected.increment();
+            return null;
+        }
+        return committed;
+    }
+
+    /**
+     * Returns the number of messages waiting to be committed.
+     *
+     * @return the queue depth
+     */
+    public int queueDepth() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    /**
+     * Returns the number of messages the ingestion queue holds.
+     *
+     * @return the queue capacity
+     */
+    public int queueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Collects batches from the queue and commits them until the service is stopped and the queue is empty.
+     */
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelay);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() == batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Commits a batch, falling back to one transaction per message so that a single bad message
+     * does not fail the others.
+     */
+    private void commit(List<Pending> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        batch.forEach(pending -> messages.add(pending.message()));
+        try {
+            write(messages);
+            batchSizes.record(batch.size());
+            batch.forEach(pending -> pending.committed().complete(pending.message()));
+        } catch (RuntimeException batchFailure) {
+            logger.warn("Group commit of {} messages failed, retrying them one by one", batch.size(), batchFailure);
+            for (Pending pending : batch) {
+                // The rolled back batch may have assigned an id, so store a fresh copy
+                Message message = pending.message();
+                try {
+                    pending.committed().complete(write(List.of(new Message(message.getSender(), message.getReceiver(), message.getContent(), message.getTimestamp()))).get(0));
+                    batchSizes.record(1);
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    logger.error("Could not store {}", message, e);
+                    pending.committed().completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting messages and commits the ones still queued.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer != null) {
+            running = false;
+            writer.join();
+            // Commit messages offered while the writer was stopping
+            List<Pending> rest = new ArrayList<>();
+            queue.drainTo(rest);
+            if (!rest.isEmpty()) {
+                commit(rest);
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.srdc.hw2.mailbox;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.srdc.hw2.dto.MailboxSync;
+import com.srdc.hw2.dto.VersionedMessage;
+import com.srdc.hw2.model.MailboxCounter;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.repository.MailboxCounterRepository;
+import com.srdc.hw2.repository.MessageRepository;
+
+/**
+ * MailboxCounterService maintains the inbox, outbox and unread totals and the version of each user's mailbox.
+ * A user's counter is created from the messages table the first time it is read or updated and kept up to date
+ * afterwards by the transactions that send, read and remove messages. Sends and reads create a missing counter in
+ * their own transaction before updating it, so every update locks an existing row and none is lost to a counter
+ * created concurrently from messages that were not committed yet.
+ * Every stored message takes the next version of its receiver's and sender's mailboxes. The counter rows stay
+ * locked until the storing transaction commits, so a version read from a counter covers exactly the messages
+ * committed up to it, and a client holding a version can be sent the messages added since.
+ */
+@Service
+public class MailboxCounterService {
+
+    @Autowired
+    MailboxCounterRepository mailboxCounterRepository;
+
+    @Autowired
+    MessageRepository messageRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate readOnlyTransactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Adds messages to the counters of their senders and receivers and assigns them their mailbox versions.
+     * Must be called in the transaction that stores the messages, before they are stored.
+     * Each counter is created if missing and updated in one pass in username order, so that concurrent sends,
+     * even between the same two users in opposite directions, lock the counters in the same order.
+     *
+     * @param messages the messages about to be stored
+     */
+    public void recordSent(List<Message> messages) {
+        Map<String, long[]> counts = new TreeMap<>();
+        for (Message message : messages) {
+            counts.computeIfAbsent(message.getReceiver(), u -> new long[2])[0]++;
+            counts.computeIfAbsent(message.getSender(), u -> new long[2])[1]++;
+        }
+        Set<String> usernames = counts.keySet();
+        Set<String> existing = new HashSet<>();
+        mailboxCounterRepository.findVersions(usernames).forEach(version -> existing.add(version.username()));
+        counts.forEach((username, count) -> {
+            if (!existing.contains(username)) {
+                // Counted before the messages are stored, so the update below adds them
+                create(username);
+            }
+            mailboxCounterRepository.add(username, count[0], count[1]);
+        });
+
+        // The counters now hold the version of the last message, so the versions are handed out backwards
+        Map<String, Long> versions = new HashMap<>();
+        mailboxCounterRepository.findVersions(usernames).forEach(version -> versions.put(version.username(), version.version()));
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            Message message = messages.get(i);
+            message.assignVersions(take(versions, message.getReceiver()), take(versions, message.getSender()));
+        }
+    }
+
+    /**
+     * Returns the next version of a mailbox to hand out.
+     */
+    private static Long take(Map<String, Long> versions, String username) {
+        Long version = versions.get(username);
+        if (version != null) {
+            versions.put(username, version - 1);
+        }
+        return version;
+    }
+
+    /**
+     * Removes a message that has just been marked as read from its receiver's unread counter.
+     *
+     * @param username the receiver of the message
+     */
+    public void recordRead(String username) {
+        // A counter created now counts the message as read already
+        if (mailboxCounterRepository.existsById(username) || create(username) == 0) {
+            mailboxCounterRepository.removeUnread(username);
+        }
+    }
+
+    /**
+     * Removes messages that were moved to the archive from their senders' and receivers' counters.
+     * The counters are updated in username order, so that concurrent archiver transactions lock them in the same order.
+     *
+     * @param messages the archived messages
+     */
+    public void recordArchived(List<Message> messages) {
+        Map<String, long[]> counts = new TreeMap<>();
+        for (Message message : messages) {
+            long[] received = counts.computeIfAbsent(message.getReceiver(), u -> new long[3]);
+            received[0]++;
+            if (!message.isRead()) {
+                received[2]++;
+            }
+            counts.computeIfAbsent(message.getSender(), u -> new long[3])[1]++;
+        }
+        counts.forEach((username, count) -> mailboxCounterRepository.removeArchived(username, count[0], count[1], count[2]));
+    }
+
+    /**
+     * Advances the versions of mailboxes whose messages were rewritten, in username order like sends and archiving.
+     *
+     * @param usernames the owners of the mailboxes
+     */
+    public void touch(Collection<String> usernames) {
+        new TreeSet<>(usernames).forEach(mailboxCounterRepository::touch);
+    }
+
+    /**
+     * Deletes the counter of a removed user.
+     *
+     * @param username the removed user's username
+     */
+    public void remove(String username) {
+        mailboxCounterRepository.deleteByUsername(username);
+    }
+
+    /**
+     * Returns the counter of a user, creating it from the messages table if it does not exist yet.
+     *
+     * @param username the owner of the mailbox
+     * @return the counter of the user
+     */
+    public MailboxCounter get(String username) {
+        return mailboxCounterRepository.findById(username).orElseGet(() -> {
+            transactionTemplate.executeWithoutResult(status -> create(username));
+            // Read back in a read-write transaction, which sees the new counter even when reads are served by replicas
+            return transactionTemplate.execute(status -> mailboxCounterRepository.findById(username)).orElseThrow();
+        });
+    }
+
+    /**
+     * Creates the counters of users unless they exist, in username order, in the current transaction.
+     * Used for users created in bulk, which then start with a counter as users created one at a time do.
+     *
+     * @param usernames the usernames of the users
+     */
+    public void createAll(Collection<String> usernames) {
+        new TreeSet<>(usernames).forEach(this::create);
+    }
+
+    /**
+     * Creates the counter of a user from the stored messages unless it exists, returning the number created.
+     * Versions start from the clock, so they do not repeat those of an earlier user with the same username.
+     */
+    private int create(String username) {
+        return mailboxCounterRepository.createFromMessages(username, System.currentTimeMillis() * 1000);
+    }
+
+    /**
+     * Reads a user's counter and, with it, the part of the mailbox it describes in one read-only transaction, so both
+     * come from the same database even when reads are spread over replicas and a version or ETag taken from the
+     * counter matches what was read with it. A counter that does not exist there yet is created and read with the
+     * mailbox from the primary.
+     *
+     * @param username the owner of the mailbox
+     * @param reader   reads from the mailbox given its counter, in the transaction
+     * @param <T>      the type of the result
+     * @return the result of the reader
+     */
+    public <T> T read(String username, Function<MailboxCounter, T> reader) {
+        Optional<T> read = readOnlyTransactionTemplate.execute(status -> mailboxCounterRepository.findById(username)
+                .map(counter -> Optional.ofNullable(reader.apply(counter)))
+                .orElse(null));
+        if (read != null) {
+            return read.orElse(null);
+        }
+        return transactionTemplate.execute(status -> {
+            create(username);
+            return reader.apply(mailboxCounterRepository.findById(username).orElseThrow());
+        });
+    }
+
+    /**
+     * Returns the messages added to a user's mailbox after a version, received and sent, in the order they were added.
+     * When the version is current only the counter is read. The counter and the messages are read together by
+     * {@link #read}.
+     *
+     * @param username the owner of the mailbox
+     * @param since    the version the client holds
+     * @param limit    the maximum number of messages
+     * @return the messages and the version the client holds after applying them
+     */
+    public MailboxSync sync(String username, long since, int limit) {
+        return read(username, counter -> sync(username, counter.getVersion(), since, limit));
+    }
+
+    /**
+     * Returns the messages added to a user's mailbox between the version the client holds and a version read from
+     * the counter, in the current transaction.
+     */
+    private MailboxSync sync(String username, long version, long since, int limit) {
+        if (since >= version) {
+            return new MailboxSync(List.of(), version, false);
+        }
+
+        Pageable page = PageRequest.of(0, limit);
+        List<VersionedMessage> received = messageRepository.findReceivedBetween(username, since, version, page);
+        List<VersionedMessage> sent = messageRepository.findSentBetween(username, since, version, page);
+        List<VersionedMessage> added = new ArrayList<>(received);
+        added.addAll(sent);
+        added.sort(Comparator.comparingLong(VersionedMessage::version));
+
+        // The first messages of both listings are the first ones overall; past a full listing, some may be missing
+        boolean more = added.size() > limit || received.size() == limit || sent.size() == limit;
+        List<VersionedMessage> batch = added.subList(0, Math.min(limit, added.size()));
+        List<Message> messages = batch.stream().map(VersionedMessage::message).toList();
+        return more ? new MailboxSync(messages, batch.get(batch.size() - 1).version(), true) : new MailboxSync(messages, version, false);
+    }
+}
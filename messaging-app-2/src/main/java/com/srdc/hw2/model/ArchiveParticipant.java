@@ -0,0 +1,61 @@
+package com.srdc.hw2.model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.sql.Date;
+
+/**
+ * Records that a user sent or received messages stored in an archive segment.
+ */
+@Entity
+@Table(name = "message_archive_participants")
+@IdClass(ArchiveParticipantId.class)
+public class ArchiveParticipant implements Serializable {
+
+    @Id
+    @Column(name = "participant")
+    private String participant;
+
+    @Id
+    @Column(name = "username")
+    private String username;
+
+    @Id
+    @Column(name = "month_start")
+    private Date monthStart;
+
+    @Id
+    @Column(name = "first_id")
+    private long firstId;
+
+    /**
+     * Default constructor for JPA.
+     */
+    public ArchiveParticipant() {}
+
+    /**
+     * Parameterized constructor for creating a participant of a segment.
+     *
+     * @param participant the sender or receiver of messages in the segment
+     * @param segment     the segment
+     */
+    public ArchiveParticipant(String participant, ArchiveSegment segment) {
+        this.participant = participant;
+        this.username = segment.getUsername();
+        this.monthStart = segment.getMonthStart();
+        this.firstId = segment.getFirstId();
+    }
+
+    public String getParticipant() { return participant; }
+
+    public String getUsername() { return username; }
+
+    public Date getMonthStart() { return monthStart; }
+
+    public long getFirstId() { return firstId; }
+
+    @Override
+    public String toString() {
+        return "ArchiveParticipant [participant=" + participant + ", username=" + username + ", monthStart=" + monthStart + ", firstId=" + firstId + "]";
+    }
+}
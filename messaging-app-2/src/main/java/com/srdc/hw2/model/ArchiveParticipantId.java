@@ -0,0 +1,33 @@
+package com.srdc.hw2.model;
+
+import java.io.Serializable;
+import java.sql.Date;
+import java.util.Objects;
+
+/**
+ * Identifies a participant of an archive segment: the participant and the segment.
+ */
+public class ArchiveParticipantId implements Serializable {
+
+    private String participant;
+    private String username;
+    private Date monthStart;
+    private long firstId;
+
+    /**
+     * Default constructor for JPA.
+     */
+    public ArchiveParticipantId() {}
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ArchiveParticipantId other && Objects.equals(participant, other.participant)
+                && Objects.equals(username, other.username) && Objects.equals(monthStart, other.monthStart)
+                && firstId == other.firstId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(participant, username, monthStart, firstId);
+    }
+}
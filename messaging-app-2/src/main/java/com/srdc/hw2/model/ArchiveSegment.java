@@ -0,0 +1,70 @@
+package com.srdc.hw2.model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.sql.Date;
+
+/**
+ * Represents archived messages a user sent or received in one month, stored compressed in a single row.
+ * A month moved by several archiver runs has several segments.
+ */
+@Entity
+@Table(name = "message_archive")
+@IdClass(ArchiveSegmentId.class)
+public class ArchiveSegment implements Serializable {
+
+    @Id
+    @Column(name = "username")
+    private String username;
+
+    @Id
+    @Column(name = "month_start")
+    private Date monthStart;
+
+    @Id
+    @Column(name = "first_id")
+    private long firstId;
+
+    @Column(name = "message_count")
+    private int messageCount;
+
+    @Column(name = "data")
+    private byte[] data;
+
+    /**
+     * Default constructor for JPA.
+     */
+    public ArchiveSegment() {}
+
+    /**
+     * Parameterized constructor for creating an archive segment.
+     *
+     * @param username     the owner of the segment
+     * @param monthStart   the first day of the month of the segment's messages
+     * @param firstId      the smallest message id in the segment
+     * @param messageCount the number of messages in the segment
+     * @param data         the encoded messages
+     */
+    public ArchiveSegment(String username, Date monthStart, long firstId, int messageCount, byte[] data) {
+        this.username = username;
+        this.monthStart = monthStart;
+        this.firstId = firstId;
+        this.messageCount = messageCount;
+        this.data = data;
+    }
+
+    public String getUsername() { return username; }
+
+    public Date getMonthStart() { return monthStart; }
+
+    public long getFirstId() { return firstId; }
+
+    public int getMessageCount() { return messageCount; }
+
+    public byte[] getData() { return data; }
+
+    @Override
+    public String toString() {
+        return "ArchiveSegment [username=" + username + ", monthStart=" + monthStart + ", firstId=" + firstId + ", messageCount=" + messageCount + ", bytes=" + data.length + "]";
+    }
+}
@@ -0,0 +1,50 @@
+package com.srdc.hw2.model;
+
+import java.io.Serializable;
+import java.sql.Date;
+import java.util.Objects;
+
+/**
+ * Identifies an archive segment: its owner, the month of its messages and the id of its first message.
+ */
+public class ArchiveSegmentId implements Serializable {
+
+    private String username;
+    private Date monthStart;
+    private long firstId;
+
+    /**
+     * Default constructor for JPA.
+     */
+    public ArchiveSegmentId() {}
+
+    /**
+     * Parameterized constructor for creating an archive segment id.
+     *
+     * @param username   the owner of the segment
+     * @param monthStart the first day of the month of the segment's messages
+     * @param firstId    the smallest message id in the segment
+     */
+    public ArchiveSegmentId(String username, Date monthStart, long firstId) {
+        this.username = username;
+        this.monthStart = monthStart;
+        this.firstId = firstId;
+    }
+
+    public String getUsername() { return username; }
+
+    public Date getMonthStart() { return monthStart; }
+
+    public long getFirstId() { return firstId; }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ArchiveSegmentId other && Objects.equals(username, other.username)
+                && Objects.equals(monthStart, other.monthStart) && firstId == other.firstId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(username, monthStart, firstId);
+    }
+}
@@ -0,0 +1,48 @@
+package com.srdc.hw2.model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * Represents a conversation in a user's conversation list: the other participant and the last message exchanged.
+ * Every conversation between two users is stored once for each of them and updated by the transactions that
+ * send messages, so a user's conversations are listed without reading the mailbox.
+ */
+@Entity
+@Table(name = "conversations")
+@IdClass(ConversationId.class)
+public class Conversation implements Serializable {
+
+    @Id
+    @Column(name = "username")
+    private String username;
+
+    @Id
+    @Column(name = "partner")
+    private String partner;
+
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    @Column(name = "last_timestamp")
+    private Timestamp lastTimestamp;
+
+    /**
+     * Default constructor for JPA.
+     */
+    public Conversation() {}
+
+    public String getUsername() { return username; }
+
+    public String getPartner() { return partner; }
+
+    public Long getLastMessageId() { return lastMessageId; }
+
+    public Timestamp getLastTimestamp() { return lastTimestamp; }
+
+    @Override
+    public String toString() {
+        return "Conversation [username=" + username + ", partner=" + partner + ", lastMessageId=" + lastMessageId + ", lastTimestamp=" + lastTimestamp + "]";
+    }
+}
@@ -0,0 +1,43 @@
+package com.srdc.hw2.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Identifies a conversation row: the user whose conversation list it belongs to and the other participant.
+ */
+public class ConversationId implements Serializable {
+
+    private String username;
+    private String partner;
+
+    /**
+     * Default constructor for JPA.
+     */
+    public ConversationId() {}
+
+    /**
+     * Parameterized constructor for creating a conversation id.
+     *
+     * @param username the owner of the conversation list
+     * @param partner  the other participant of the conversation
+     */
+    public ConversationId(String username, String partner) {
+        this.username = username;
+        this.partner = partner;
+    }
+
+    public String getUsername() { return username; }
+
+    public String getPartner() { return partner; }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ConversationId other && Objects.equals(username, other.username) && Objects.equals(partner, other.partner);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(username, partner);
+    }
+}
@@ -0,0 +1,75 @@
+package com.srdc.hw2.model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Represents the maintained message totals of a user's mailbox.
+ * The totals are updated in the transactions that send and read messages, so listings and the mailbox summary
+ * do not have to count the messages table. The version is incremented by each of those changes.
+ */
+@Entity
+@Table(name = "mailbox_counters")
+public class MailboxCounter implements Serializable {
+
+    @Id
+    @Column(name = "username")
+    private String username;
+
+    @Column(name = "inbox")
+    private long inbox;
+
+    @Column(name = "outbox")
+    private long outbox;
+
+    @Column(name = "unread")
+    private long unread;
+
+    // Incremented by every change to the mailbox, also reflected in the ETag of mailbox listings
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    /**
+     * Default constructor for JPA.
+     */
+    public MailboxCounter() {}
+
+    /**
+     * Parameterized constructor for creating a mailbox counter.
+     *
+     * @param username the owner of the mailbox
+     * @param inbox    the number of received messages
+     * @param outbox   the number of sent messages
+     * @param unread   the number of received messages not read yet
+     */
+    public MailboxCounter(String username, long inbox, long outbox, long unread) {
+        this.username = username;
+        this.inbox = inbox;
+        this.outbox = outbox;
+        this.unread = unread;
+    }
+
+    public String getUsername() { return username; }
+
+    public long getInbox() { return inbox; }
+
+    public long getOutbox() { return outbox; }
+
+    public long getUnread() { return unread; }
+
+    public long getVersion() { return version; }
+
+    /**
+     * Returns the entity tag of the mailbox listings of the user at this version.
+     *
+     * @return the entity tag, without quotes
+     */
+    public String etag() {
+        return Integer.toHexString(username.hashCode()) + "-" + version;
+    }
+
+    @Override
+    public String toString() {
+        return "MailboxCounter [username=" + username + ", inbox=" + inbox + ", outbox=" + outbox + ", unread=" + unread + ", version=" + version + "]";
+    }
+}
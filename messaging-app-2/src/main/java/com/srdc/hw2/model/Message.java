@@ -1,5 +1,6 @@
 package com.srdc.hw2.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.io.Serializable;
 import java.sql.Timestamp;
@@ -8,11 +9,19 @@ import java.sql.Timestamp;
  * Represents a message entity stored in the database.
  */
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_receiver_timestamp", columnList = "receiver, timestamp DESC, id DESC"),
+        @Index(name = "idx_messages_sender_timestamp", columnList = "sender, timestamp DESC, id DESC"),
+        @Index(name = "idx_messages_participants_timestamp", columnList = "participant_low, participant_high, timestamp DESC, id DESC"),
+        @Index(name = "idx_messages_receiver_version", columnList = "receiver, receiver_version"),
+        @Index(name = "idx_messages_sender_version", columnList = "sender, sender_version"),
+        @Index(name = "idx_messages_timestamp", columnList = "timestamp, id")
+})
 public class Message implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messages_seq")
+    @SequenceGenerator(name = "messages_seq", sequenceName = "messages_seq", allocationSize = 50)
     private long id;
 
     @Column(name = "sender")
@@ -27,6 +36,23 @@ public class Message implements Serializable {
     @Column(name = "timestamp")
     private Timestamp timestamp;
 
+    @Column(name = "is_read", nullable = false, columnDefinition = "boolean default false")
+    private boolean read;
+
+    // The sender and receiver in String order, identifying the conversation the message belongs to
+    @Column(name = "participant_low")
+    private String participantLow;
+
+    @Column(name = "participant_high")
+    private String participantHigh;
+
+    // The version of the receiver's and of the sender's mailbox that added the message
+    @Column(name = "receiver_version")
+    private Long receiverVersion;
+
+    @Column(name = "sender_version")
+    private Long senderVersion;
+
     /**
      * Default constructor for JPA.
      */
@@ -47,6 +73,8 @@ public class Message implements Serializable {
         this.timestamp = timestamp;
     }
 
+    public long getId() { return id; }
+
     public String getSender() { return sender; }
 
     public String getReceiver() { return receiver; }
@@ -55,6 +83,11 @@ public class Message implements Serializable {
 
     public Timestamp getTimestamp() { return timestamp; }
 
+    public boolean isRead() { return read; }
+
+    @JsonIgnore
+    public Long getReceiverVersion() { return receiverVersion; }
+
     public void setSender(String sender) { this.sender = sender; }
 
     public void setReceiver(String receiver) { this.receiver = receiver; }
@@ -63,8 +96,34 @@ public class Message implements Serializable {
 
     public void setTimestamp(Timestamp timestamp) { this.timestamp = timestamp; }
 
+    public void setRead(boolean read) { this.read = read; }
+
+    /**
+     * Records the mailbox versions that add the message, before it is stored.
+     *
+     * @param receiverVersion the version of the receiver's mailbox
+     * @param senderVersion   the version of the sender's mailbox
+     */
+    public void assignVersions(Long receiverVersion, Long senderVersion) {
+        this.receiverVersion = receiverVersion;
+        this.senderVersion = senderVersion;
+    }
+
+    /**
+     * Sets the conversation participants from the sender and receiver before the message is stored.
+     */
+    @PrePersist
+    @PreUpdate
+    void assignParticipants() {
+        if (sender != null && receiver != null) {
+            boolean senderFirst = sender.compareTo(receiver) <= 0;
+            participantLow = senderFirst ? sender : receiver;
+            participantHigh = senderFirst ? receiver : sender;
+        }
+    }
+
     @Override
     public String toString() {
-        return "Message [id=" + id + ", sender=" + sender + ", receiver=" + receiver + ", content=" + content + ", timestamp=" + timestamp + "]";
+        return "Message [id=" + id + ", sender=" + sender + ", receiver=" + receiver + ", content=" + content + ", timestamp=" + timestamp + ", read=" + read + "]";
     }
 }
@@ -0,0 +1,82 @@
+package com.srdc.hw2.model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * Represents a posting of the full-text index over message contents: one term occurring in one message.
+ * The sender, receiver and timestamp are copied from the message so that a mailbox search only reads the postings of
+ * that mailbox, newest first.
+ */
+@Entity
+@Table(name = "message_terms", indexes = {
+        @Index(name = "idx_message_terms_receiver_term_timestamp", columnList = "receiver, term, timestamp DESC, message_id DESC"),
+        @Index(name = "idx_message_terms_sender_term_timestamp", columnList = "sender, term, timestamp DESC, message_id DESC"),
+        @Index(name = "idx_message_terms_message_id", columnList = "message_id")
+})
+public class MessageTerm implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private long id;
+
+    @Column(name = "message_id")
+    private long messageId;
+
+    @Column(name = "sender")
+    private String sender;
+
+    @Column(name = "receiver")
+    private String receiver;
+
+    @Column(name = "timestamp")
+    private Timestamp timestamp;
+
+    @Column(name = "term", length = 64)
+    private String term;
+
+    @Column(name = "frequency")
+    private int frequency;
+
+    /**
+     * Default constructor for JPA.
+     */
+    public MessageTerm() {}
+
+    /**
+     * Parameterized constructor for creating a posting.
+     *
+     * @param messageId the id of the message containing the term
+     * @param sender    the sender's username
+     * @param receiver  the receiver's username
+     * @param timestamp the time the message was sent
+     * @param term      the normalized term
+     * @param frequency the number of occurrences of the term in the message
+     */
+    public MessageTerm(long messageId, String sender, String receiver, Timestamp timestamp, String term, int frequency) {
+        this.messageId = messageId;
+        this.sender = sender;
+        this.receiver = receiver;
+        this.timestamp = timestamp;
+        this.term = term;
+        this.frequency = frequency;
+    }
+
+    public long getMessageId() { return messageId; }
+
+    public String getSender() { return sender; }
+
+    public String getReceiver() { return receiver; }
+
+    public Timestamp getTimestamp() { return timestamp; }
+
+    public String getTerm() { return term; }
+
+    public int getFrequency() { return frequency; }
+
+    @Override
+    public String toString() {
+        return "MessageTerm [id=" + id + ", messageId=" + messageId + ", sender=" + sender + ", receiver=" + receiver + ", timestamp=" + timestamp + ", term=" + term + ", frequency=" + frequency + "]";
+    }
+}
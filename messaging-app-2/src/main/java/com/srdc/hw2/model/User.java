@@ -1,14 +1,17 @@
 package com.srdc.hw2.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import java.io.Serializable;
 import java.sql.Date;
+import com.srdc.hw2.user.UserCacheListener;
 
 /**
  * Represents a user entity stored in the database.
  */
 @Entity
 @Table(name = "users")
+@EntityListeners(UserCacheListener.class)
 public class User implements Serializable {
 
     @Id
@@ -18,6 +21,8 @@ public class User implements Serializable {
     @Column(name = "username", unique = true)
     private String username;
 
+    // Accepted in requests but never written to responses
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @Column(name = "password")
     private String password;
 
@@ -72,6 +77,16 @@ public class User implements Serializable {
         this.isAdmin = isAdmin;
     }
 
+    /**
+     * Copy constructor, keeping the id so that saving the copy updates the same user.
+     *
+     * @param user the user to copy
+     */
+    public User(User user) {
+        this(user.username, user.password, user.name, user.surname, user.birthdate, user.gender, user.email, user.location, user.isAdmin);
+        this.id = user.id;
+    }
+
     public String getUsername() { return username; }
 
     public String getPassword() { return password; }
@@ -0,0 +1,57 @@
+package com.srdc.hw2.model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * Represents a removed user whose messages still carry its username.
+ * The tombstone is deleted once a background job has rewritten all of those messages; until then the
+ * username cannot be given to another user. The instance rewriting the messages holds a claim on the tombstone.
+ */
+@Entity
+@Table(name = "user_tombstones")
+public class UserTombstone implements Serializable {
+
+    @Id
+    @Column(name = "username")
+    private String username;
+
+    @Column(name = "removed_at")
+    private Timestamp removedAt;
+
+    @Column(name = "claimed_by", length = 64)
+    private String claimedBy;
+
+    @Column(name = "claimed_until")
+    private Timestamp claimedUntil;
+
+    /**
+     * Default constructor for JPA.
+     */
+    public UserTombstone() {}
+
+    /**
+     * Parameterized constructor for creating a tombstone.
+     *
+     * @param username  the username of the removed user
+     * @param removedAt the time the user was removed
+     */
+    public UserTombstone(String username, Timestamp removedAt) {
+        this.username = username;
+        this.removedAt = removedAt;
+    }
+
+    public String getUsername() { return username; }
+
+    public Timestamp getRemovedAt() { return removedAt; }
+
+    public String getClaimedBy() { return claimedBy; }
+
+    public Timestamp getClaimedUntil() { return claimedUntil; }
+
+    @Override
+    public String toString() {
+        return "UserTombstone [username=" + username + ", removedAt=" + removedAt + ", claimedBy=" + claimedBy + ", claimedUntil=" + claimedUntil + "]";
+    }
+}
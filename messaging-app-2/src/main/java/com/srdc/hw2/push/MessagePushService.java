@@ -0,0 +1,209 @@
+package com.srdc.hw2.push;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import com.srdc.hw2.dto.VersionedMessage;
+import com.srdc.hw2.mailbox.MailboxCounterService;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.repository.MessageRepository;
+
+/**
+ * MessagePushService delivers newly sent messages to their receivers over server-sent events.
+ * Every open stream gets a bounded queue drained by its own virtual thread, so idle streams hold no platform
+ * threads. Events are identified by the version of the receiver's mailbox that added the message, which is
+ * assigned under the mailbox counter's row lock and so follows commit order. Transactions publish after their
+ * commits in any order, so a message is written straight away only if it directly follows the last one written;
+ * otherwise the stream catches up from the database, where every earlier version has been committed already.
+ * A stream whose queue overflows is closed; the client reconnects with the id of the last event it received and the
+ * missed messages are replayed from the database.
+ */
+@Service
+public class MessagePushService {
+
+    private static final int REPLAY_CHUNK_SIZE = 100;
+
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final ExecutorService dispatchers = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Autowired
+    MessageRepository messageRepository;
+
+    @Autowired
+    MailboxCounterService mailboxCounterService;
+
+    @Value("${messaging.push.queue-capacity:256}")
+    int queueCapacity;
+
+    @Value("${messaging.push.timeout-ms:3600000}")
+    long timeout;
+
+    @Value("${messaging.push.heartbeat-ms:30000}")
+    long heartbeat;
+
+    /**
+     * An open stream of a user together with the messages waiting to be written to it.
+     */
+    private class Subscription {
+        final String username;
+        final Long lastEventId;
+        final SseEmitter emitter = new SseEmitter(timeout);
+        final BlockingQueue<Message> queue = new ArrayBlockingQueue<>(queueCapacity);
+        volatile boolean closed;
+        long lastSentVersion;
+
+        Subscription(String username, Long lastEventId) {
+            this.username = username;
+            this.lastEventId = lastEventId;
+        }
+
+        /**
+         * Registers the subscription, replays missed messages, then writes queued messages until the stream is closed.
+         * Without a Last-Event-ID the mailbox version is read before registering, so a message committed in between
+         * has a later version and is replayed; messages both replayed and queued are written once.
+         */
+        void dispatch() {
+            try {
+                lastSentVersion = lastEventId != null ? lastEventId : mailboxCounterService.get(username).getVersion();
+                subscriptions.computeIfAbsent(username, user -> ConcurrentHashMap.newKeySet()).add(this);
+                if (closed) {
+                    close();
+                    return;
+                }
+                // Commits the response headers once registered, so every message sent after the stream opens is delivered
+                emitter.send(SseEmitter.event().comment("connected"));
+                replay();
+                while (!closed) {
+                    Message message = queue.poll(heartbeat, TimeUnit.MILLISECONDS);
+                    if (message == null) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else if (message.getReceiverVersion() == null || message.getReceiverVersion() <= lastSentVersion) {
+                        // Written already, by a replay that caught up past it
+                    } else if (message.getReceiverVersion() == lastSentVersion + 1) {
+                        send(message, message.getReceiverVersion());
+                    } else {
+                        // An earlier version may still be on its way, or was not a message; both are in the database now
+                        replay();
+                    }
+                }
+            } catch (RuntimeException | IOException e) {
+                close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+            }
+        }
+
+        void replay() throws IOException {
+            List<VersionedMessage> missed;
+            do {
+                missed = messageRepository.findReceivedBetween(username, lastSentVersion, Long.MAX_VALUE, PageRequest.of(0, REPLAY_CHUNK_SIZE));
+                for (VersionedMessage missedMessage : missed) {
+                    send(missedMessage.message(), missedMessage.version());
+                }
+            } while (missed.size() == REPLAY_CHUNK_SIZE);
+        }
+
+        void send(Message message, long version) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(version))
+                    .name("message")
+                    .data(message, MediaType.APPLICATION_JSON));
+            lastSentVersion = version;
+        }
+
+        void offer(Message message) {
+            if (!queue.offer(message)) {
+                // The client cannot keep up; it resumes from its last event id after reconnecting
+                emitter.complete();
+                close();
+            }
+        }
+
+        void close() {
+            closed = true;
+            subscriptions.computeIfPresent(username, (user, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    /**
+     * Opens a stream of the messages received by a user.
+     *
+     * @param username    the receiver's username
+     * @param lastEventId the id of the last event the client received, or null for only new messages
+     * @return the emitter of the stream
+     */
+    public SseEmitter subscribe(String username, Long lastEventId) {
+        Subscription subscription = new Subscription(username, lastEventId);
+        subscription.emitter.onCompletion(subscription::close);
+        subscription.emitter.onTimeout(subscription::close);
+        subscription.emitter.onError(e -> subscription.close());
+
+        dispatchers.execute(subscription::dispatch);
+        return subscription.emitter;
+    }
+
+    /**
+     * Pushes a message to the open streams of its receiver once the current transaction commits.
+     *
+     * @param message the saved message
+     */
+    public void publishAfterCommit(Message message) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(message);
+                }
+            });
+        } else {
+            publish(message);
+        }
+    }
+
+    /**
+     * Pushes a message to the open streams of its receiver.
+     *
+     * @param message the saved message
+     */
+    public void publish(Message message) {
+        Set<Subscription> receivers = subscriptions.get(message.getReceiver());
+        if (receivers != null) {
+            receivers.forEach(subscription -> subscription.offer(message));
+        }
+    }
+
+    /**
+     * Returns the number of open streams.
+     *
+     * @return the number of open streams
+     */
+    public int subscriberCount() {
+        return subscriptions.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptions.values().forEach(set -> set.forEach(subscription -> subscription.emitter.complete()));
+        dispatchers.shutdownNow();
+    }
+}
@@ -0,0 +1,171 @@
+package com.srdc.hw2.ratelimit;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import com.srdc.hw2.ingest.MessageIngestionService;
+
+/**
+ * SendThrottle decides whether a message may be sent now.
+ * Sends are refused with 503 while the instance is saturated, i.e. too many threads wait for a database
+ * connection or the ingestion queue is nearly full, and with 429 once a user has used up the token bucket that
+ * limits how fast each user may send. Both answers carry a Retry-After header. Allowed sends take one token with a
+ * single compare-and-set and allocate nothing; the buckets of users who stopped sending are evicted periodically.
+ * The limits are local to this instance, like the session registry and the user cache.
+ */
+@Component
+public class SendThrottle {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    MessageIngestionService messageIngestionService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${messaging.rate-limit.enabled:true}")
+    boolean enabled;
+
+    @Value("${messaging.rate-limit.per-second:10}")
+    double perSecond;
+
+    @Value("${messaging.rate-limit.burst:20}")
+    int burst;
+
+    @Value("${messaging.load-shedding.max-pool-waiters:20}")
+    int maxPoolWaiters;
+
+    @Value("${messaging.load-shedding.queue-high-water:0.9}")
+    double queueHighWater;
+
+    @Value("${messaging.load-shedding.retry-after-seconds:1}")
+    long retryAfterSeconds;
+
+    private TokenBuckets buckets;
+    private HikariPoolMXBean pool;
+    private int queueLimit;
+    private Counter rateLimited;
+    private Counter poolSaturated;
+    private Counter queueSaturated;
+
+    @PostConstruct
+    public void init() {
+        buckets = new TokenBuckets(perSecond, burst);
+        queueLimit = messageIngestionService.isEnabled()
+                ? (int) Math.ceil(messageIngestionService.queueCapacity() * queueHighWater)
+                : Integer.MAX_VALUE;
+        rateLimited = rejected("rate-limit");
+        poolSaturated = rejected("pool");
+        queueSaturated = rejected("queue");
+        Gauge.builder("messaging.send.rate-limit.buckets", buckets, TokenBuckets::size)
+                .description("Number of users with a token bucket")
+                .register(meterRegistry);
+    }
+
+    private Counter rejected(String reason) {
+        return Counter.builder("messaging.send.rejected")
+                .description("Sends refused by the rate limit or because the instance was saturated")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Checks whether a user may send a message now, taking a token from the user's bucket if so.
+     *
+     * @param username the sender
+     * @param <T>      the body type of the response
+     * @return null if the message may be sent, otherwise the response refusing it
+     */
+    public <T> ResponseEntity<T> check(String username) {
+        return check(username, 1);
+    }
+
+    /**
+     * Checks whether a user may send a number of messages now, taking a token per message from the user's bucket
+     * if so. More messages than the burst are allowed once the bucket is full and delay the user's next sends.
+     *
+     * @param username the sender
+     * @param messages the number of messages, at least 1
+     * @param <T>      the body type of the response
+     * @return null if the messages may be sent, otherwise the response refusing them
+     */
+    public <T> ResponseEntity<T> check(String username, int messages) {
+        if (maxPoolWaiters > 0 && poolWaiters() >= maxPoolWaiters) {
+            poolSaturated.increment();
+            return unavailable();
+        }
+        if (messageIngestionService.queueDepth() >= queueLimit) {
+            queueSaturated.increment();
+            return unavailable();
+        }
+        if (!enabled) {
+            return null;
+        }
+        long wait = buckets.tryAcquire(username, messages);
+        if (wait == 0) {
+            return null;
+        }
+        rateLimited.increment();
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1))))
+                .build();
+    }
+
+    /**
+     * Returns the response refusing a message because the instance is saturated.
+     *
+     * @param <T> the body type of the response
+     * @return a 503 response with a Retry-After header
+     */
+    public <T> ResponseEntity<T> unavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .build();
+    }
+
+    /**
+     * Returns the number of threads waiting for a connection of the main connection pool.
+     * The pool is looked up on first use, as Hikari starts it with the first connection.
+     */
+    private int poolWaiters() {
+        HikariPoolMXBean mxBean = pool;
+        if (mxBean == null) {
+            try {
+                if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+                    return 0;
+                }
+                mxBean = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+            } catch (SQLException e) {
+                return 0;
+            }
+            if (mxBean == null) {
+                return 0;
+            }
+            pool = mxBean;
+        }
+        return mxBean.getThreadsAwaitingConnection();
+    }
+
+    /**
+     * Removes the token buckets of users who have not sent for long enough to have a full bucket again.
+     */
+    @Scheduled(fixedDelayString = "${messaging.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        buckets.evictIdle();
+    }
+}
@@ -0,0 +1,109 @@
+package com.srdc.hw2.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * TokenBuckets holds one token bucket per key, refilled at a fixed rate up to a burst size.
+ * Each bucket is a single AtomicLong holding the time at which it will be full again (the generic cell rate
+ * algorithm form of a token bucket), so taking a token is one compare-and-set and allocates nothing once the
+ * key's bucket exists. Buckets that have filled up are indistinguishable from new ones and are evicted by
+ * {@link #evictIdle()}; a token taken concurrently with the eviction of its bucket may go uncounted.
+ */
+public class TokenBuckets {
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final long interval;
+    private final long capacity;
+    private final LongSupplier clock;
+
+    /**
+     * The time in nanoseconds at which a bucket is full again; it is full whenever this is not in the future.
+     */
+    private static final class Bucket extends AtomicLong {
+        Bucket(long fullAt) {
+            super(fullAt);
+        }
+    }
+
+    /**
+     * Creates buckets refilled at a rate up to a burst size.
+     *
+     * @param permitsPerSecond the number of tokens added to each bucket per second
+     * @param burst            the number of tokens a full bucket holds
+     */
+    public TokenBuckets(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    TokenBuckets(double permitsPerSecond, int burst, LongSupplier clock) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("The rate and the burst must be positive");
+        }
+        this.interval = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.capacity = interval * burst;
+        this.clock = clock;
+    }
+
+    /**
+     * Takes a token from the bucket of a key if it has one.
+     *
+     * @param key the key, e.g. a username
+     * @return 0 if a token was taken, otherwise the nanoseconds until the bucket has a token again
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, 1);
+    }
+
+    /**
+     * Takes several tokens from the bucket of a key if it has them. More tokens than a full bucket holds are
+     * granted once the bucket is full, leaving it short of the remainder, which is refilled before the next token.
+     *
+     * @param key     the key, e.g. a username
+     * @param permits the number of tokens to take, at least 1
+     * @return 0 if the tokens were taken, otherwise the nanoseconds until the bucket has them again
+     */
+    public long tryAcquire(String key, int permits) {
+        long cost = interval * permits;
+        long now = clock.getAsLong();
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(now));
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long start = fullAt - now > 0 ? fullAt : now;
+            long next = start + cost;
+            long wait = start + Math.min(cost, capacity) - now - capacity;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Removes the buckets that are full.
+     *
+     * @return the number of buckets removed
+     */
+    public int evictIdle() {
+        long now = clock.getAsLong();
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        return before - buckets.size();
+    }
+
+    /**
+     * Returns the number of buckets.
+     *
+     * @return the number of keys with a bucket that is not known to be full
+     */
+    public int size() {
+        return buckets.size();
+    }
+}
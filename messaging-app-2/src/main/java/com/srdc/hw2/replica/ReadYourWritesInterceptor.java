@@ -0,0 +1,105 @@
+package com.srdc.hw2.replica;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import com.srdc.hw2.security.AuthInterceptor;
+import com.srdc.hw2.security.AuthPrincipal;
+
+/**
+ * ReadYourWritesInterceptor remembers the users who recently changed data, so that their reads are served by
+ * the primary database until the replicas have caught up with their changes.
+ * Any request that is not a GET, HEAD or OPTIONS request counts as a change; it opens the window when it starts,
+ * so the reads of the request itself go to the primary, and again when it completes. The dispatch that completes
+ * an asynchronous request only restarts the window.
+ */
+@Component
+@ConditionalOnProperty(name = "messaging.replica.enabled", havingValue = "true")
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+    // The time in nanoseconds until which each recent writer reads from the primary
+    private final Map<String, Long> readPrimaryUntil = new ConcurrentHashMap<>();
+
+    @Value("${messaging.replica.read-your-writes-ms:5000}")
+    long windowMs;
+
+    /**
+     * Opens the window of a user whose request may change data.
+     *
+     * @param request  the current request
+     * @param response the current response
+     * @param handler  the chosen handler
+     * @return true, the request always proceeds
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() != DispatcherType.ASYNC) {
+            recordWrite(request);
+        }
+        return true;
+    }
+
+    /**
+     * Restarts the window of a user whose request may have changed data, now that the changes are committed.
+     *
+     * @param request  the current request
+     * @param response the current response
+     * @param handler  the chosen handler
+     * @param ex       the exception thrown by the handler, if any
+     */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        recordWrite(request);
+    }
+
+    private void recordWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method)
+                && request.getAttribute(AuthInterceptor.PRINCIPAL) instanceof AuthPrincipal principal) {
+            recordWrite(principal.username());
+        }
+    }
+
+    /**
+     * Sends a user's reads to the primary for the read-your-writes window from now on.
+     *
+     * @param username the user who changed data
+     */
+    public void recordWrite(String username) {
+        readPrimaryUntil.put(username, System.nanoTime() + windowMs * 1_000_000);
+    }
+
+    /**
+     * Checks if a user's reads must be served by the primary.
+     *
+     * @param username the user
+     * @return true if the user changed data within the window
+     */
+    public boolean isRecentWriter(String username) {
+        Long until = readPrimaryUntil.get(username);
+        if (until == null) {
+            return false;
+        }
+        if (until - System.nanoTime() > 0) {
+            return true;
+        }
+        readPrimaryUntil.remove(username, until);
+        return false;
+    }
+
+    /**
+     * Forgets the users whose window has ended.
+     */
+    @Scheduled(fixedDelayString = "${messaging.replica.read-your-writes-ms:5000}")
+    public void sweep() {
+        long now = System.nanoTime();
+        readPrimaryUntil.values().removeIf(until -> until - now <= 0);
+    }
+}
@@ -0,0 +1,61 @@
+package com.srdc.hw2.replica;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * ReplicaConfig replaces the application's data source with one that reads from replicas when
+ * messaging.replica.enabled is set. The primary database is configured by the spring.datasource properties as
+ * without replicas; Flyway, JPA and the background jobs keep using it.
+ */
+@Configuration
+@ConditionalOnProperty(name = "messaging.replica.enabled", havingValue = "true")
+public class ReplicaConfig {
+
+    @Value("${messaging.replica.urls}")
+    List<String> urls;
+
+    @Value("${messaging.replica.username:${spring.datasource.username:}}")
+    String username;
+
+    @Value("${messaging.replica.password:${spring.datasource.password:}}")
+    String password;
+
+    @Value("${messaging.replica.pool-size:10}")
+    int poolSize;
+
+    @Value("${messaging.replica.policy:round-robin}")
+    String policy;
+
+    /**
+     * Creates the connection pools of the primary and the replicas behind one data source.
+     *
+     * @param properties     the spring.datasource properties of the primary
+     * @param readYourWrites the recent writers, whose reads go to the primary
+     * @return the data source
+     */
+    @Bean
+    public ReplicatedDataSource dataSource(DataSourceProperties properties, ReadYourWritesInterceptor readYourWrites) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        List<DataSource> replicas = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        return new ReplicatedDataSource(primary, replicas, ReplicaPolicy.of(policy), readYourWrites);
+    }
+}
@@ -0,0 +1,35 @@
+package com.srdc.hw2.replica;
+
+import java.util.Locale;
+
+/**
+ * How read-only transactions are spread over the replicas.
+ */
+public enum ReplicaPolicy {
+
+    /**
+     * Each transaction goes to the replica after the one the previous transaction went to.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * Each transaction goes to a replica chosen at random.
+     */
+    RANDOM,
+
+    /**
+     * Each transaction goes to the replica whose pool has the fewest connections in use.
+     */
+    LEAST_ACTIVE;
+
+    /**
+     * Reads a policy from its configured name, e.g. "round-robin".
+     *
+     * @param name the name of the policy, in any case, with dashes or underscores
+     * @return the policy
+     * @throws IllegalArgumentException if there is no such policy
+     */
+    public static ReplicaPolicy of(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
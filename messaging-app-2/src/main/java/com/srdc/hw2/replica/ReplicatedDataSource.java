@@ -0,0 +1,120 @@
+package com.srdc.hw2.replica;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import com.srdc.hw2.security.AuthInterceptor;
+import com.srdc.hw2.security.AuthPrincipal;
+
+/**
+ * ReplicatedDataSource sends the read-only transactions of API requests to read replicas and everything else to
+ * the primary database.
+ * Connections are fetched lazily on their first statement, once the transaction has marked them read-only, so
+ * read-only transactions (the repositories' finder methods and services marked read-only) can be told apart.
+ * Users who recently changed data, and work that is not part of a request such as the background jobs, always
+ * read from the primary, so they never act on data the replicas have not received yet.
+ */
+public class ReplicatedDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+    private static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+
+    /**
+     * Creates the data source over a primary database and its replicas.
+     *
+     * @param primary        the primary database
+     * @param replicas       the replicas, at least one
+     * @param policy         how read-only transactions are spread over the replicas
+     * @param readYourWrites the recent writers, whose reads go to the primary
+     */
+    public ReplicatedDataSource(DataSource primary, List<DataSource> replicas, ReplicaPolicy policy, ReadYourWritesInterceptor readYourWrites) {
+        super(primary);
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is required");
+        }
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        setReadOnlyDataSource(new ReplicaRouter(policy, readYourWrites));
+    }
+
+    /**
+     * Chooses the database of a read-only transaction: a replica, or the primary if its reads must see the latest writes.
+     */
+    private final class ReplicaRouter extends AbstractRoutingDataSource {
+
+        private final ReplicaPolicy policy;
+        private final ReadYourWritesInterceptor readYourWrites;
+        private final AtomicInteger next = new AtomicInteger();
+
+        ReplicaRouter(ReplicaPolicy policy, ReadYourWritesInterceptor readYourWrites) {
+            this.policy = policy;
+            this.readYourWrites = readYourWrites;
+            Map<Object, Object> targets = new HashMap<>();
+            targets.put(PRIMARY, primary);
+            for (int i = 0; i < replicas.size(); i++) {
+                targets.put(i, replicas.get(i));
+            }
+            setTargetDataSources(targets);
+            setDefaultTargetDataSource(primary);
+            setLenientFallback(false);
+            afterPropertiesSet();
+        }
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            RequestAttributes request = RequestContextHolder.getRequestAttributes();
+            if (request == null) {
+                return PRIMARY;
+            }
+            if (request.getAttribute(AuthInterceptor.PRINCIPAL, RequestAttributes.SCOPE_REQUEST) instanceof AuthPrincipal principal
+                    && readYourWrites.isRecentWriter(principal.username())) {
+                return PRIMARY;
+            }
+            return switch (policy) {
+                case ROUND_ROBIN -> Math.floorMod(next.getAndIncrement(), replicas.size());
+                case RANDOM -> ThreadLocalRandom.current().nextInt(replicas.size());
+                case LEAST_ACTIVE -> leastActive();
+            };
+        }
+
+        private int leastActive() {
+            int best = 0;
+            int fewest = Integer.MAX_VALUE;
+            for (int i = 0; i < replicas.size(); i++) {
+                int active = replicas.get(i) instanceof HikariDataSource pool && pool.getHikariPoolMXBean() != null
+                        ? pool.getHikariPoolMXBean().getActiveConnections()
+                        : 0;
+                if (active < fewest) {
+                    best = i;
+                    fewest = active;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Closes the connection pools of the primary and the replicas.
+     */
+    @Override
+    public void close() throws Exception {
+        for (DataSource replica : replicas) {
+            if (replica instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
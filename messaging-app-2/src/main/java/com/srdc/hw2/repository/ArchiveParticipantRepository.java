@@ -0,0 +1,58 @@
+package com.srdc.hw2.repository;
+
+import java.sql.Date;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import com.srdc.hw2.model.ArchiveParticipant;
+import com.srdc.hw2.model.ArchiveParticipantId;
+import com.srdc.hw2.model.ArchiveSegmentId;
+
+/**
+ * Repository interface for managing the participants of archive segments.
+ */
+public interface ArchiveParticipantRepository extends JpaRepository<ArchiveParticipant, ArchiveParticipantId> {
+
+    /**
+     * Finds the archive segments holding messages of a user.
+     *
+     * @param participant the sender or receiver of the messages
+     * @param pageable    the pagination information limiting the number of segments
+     * @return a list of segment ids
+     */
+    @Query("SELECT new com.srdc.hw2.model.ArchiveSegmentId(p.username, p.monthStart, p.firstId) FROM ArchiveParticipant p " +
+            "WHERE p.participant = :participant")
+    List<ArchiveSegmentId> findSegments(@Param("participant") String participant, Pageable pageable);
+
+    /**
+     * Finds the segments of a user's archive holding messages exchanged with a partner, up to a month, latest month first.
+     *
+     * @param username   the owner of the archive
+     * @param partner    the other participant
+     * @param monthStart the first day of the latest month to include
+     * @return a list of segment ids
+     */
+    @Query("SELECT new com.srdc.hw2.model.ArchiveSegmentId(p.username, p.monthStart, p.firstId) FROM ArchiveParticipant p " +
+            "WHERE p.participant = :partner AND p.username = :username AND p.monthStart <= :monthStart " +
+            "ORDER BY p.monthStart DESC")
+    List<ArchiveSegmentId> findConversationSegments(@Param("username") String username, @Param("partner") String partner,
+                                                    @Param("monthStart") Date monthStart);
+
+    /**
+     * Deletes a participant from a segment once its messages there were rewritten.
+     *
+     * @param participant the removed participant
+     * @param username    the owner of the segment
+     * @param monthStart  the first day of the month of the segment
+     * @param firstId     the smallest message id in the segment
+     */
+    @Modifying
+    @Query("DELETE FROM ArchiveParticipant p WHERE p.participant = :participant AND p.username = :username " +
+            "AND p.monthStart = :monthStart AND p.firstId = :firstId")
+    void deleteFromSegment(@Param("participant") String participant, @Param("username") String username,
+                           @Param("monthStart") Date monthStart, @Param("firstId") long firstId);
+
+}
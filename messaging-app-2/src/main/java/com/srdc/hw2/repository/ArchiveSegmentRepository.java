@@ -0,0 +1,57 @@
+package com.srdc.hw2.repository;
+
+import java.sql.Date;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import com.srdc.hw2.dto.ArchiveMonth;
+import com.srdc.hw2.model.ArchiveSegment;
+import com.srdc.hw2.model.ArchiveSegmentId;
+
+/**
+ * Repository interface for managing the segments of the message archive.
+ */
+public interface ArchiveSegmentRepository extends JpaRepository<ArchiveSegment, ArchiveSegmentId> {
+
+    /**
+     * Finds the segments of a user's archive for one month.
+     *
+     * @param username   the owner of the segments
+     * @param monthStart the first day of the month
+     * @return a list of segments
+     */
+    @Query("SELECT s FROM ArchiveSegment s WHERE s.username = :username AND s.monthStart = :monthStart")
+    List<ArchiveSegment> findMonth(@Param("username") String username, @Param("monthStart") Date monthStart);
+
+    /**
+     * Lists the archived months of a user, most recent first.
+     *
+     * @param username the owner of the archive
+     * @return the months with the number of archived messages in each
+     */
+    @Query("SELECT new com.srdc.hw2.dto.ArchiveMonth(s.monthStart, SUM(s.messageCount)) FROM ArchiveSegment s " +
+            "WHERE s.username = :username GROUP BY s.monthStart ORDER BY s.monthStart DESC")
+    List<ArchiveMonth> findMonths(@Param("username") String username);
+
+    /**
+     * Deletes the segments of months before a retention limit.
+     *
+     * @param monthStart the first day of the oldest month to keep
+     * @return the number of deleted segments
+     */
+    @Modifying
+    @Query("DELETE FROM ArchiveSegment s WHERE s.monthStart < :monthStart")
+    int deleteOlderThan(@Param("monthStart") Date monthStart);
+
+    /**
+     * Deletes the archive of a removed user.
+     *
+     * @param username the removed user's username
+     */
+    @Modifying
+    @Query("DELETE FROM ArchiveSegment s WHERE s.username = :username")
+    void deleteByUsername(@Param("username") String username);
+
+}
@@ -0,0 +1,109 @@
+package com.srdc.hw2.repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import com.srdc.hw2.model.Conversation;
+import com.srdc.hw2.model.ConversationId;
+
+/**
+ * Repository interface for managing the conversation lists of users.
+ */
+public interface ConversationRepository extends JpaRepository<Conversation, ConversationId> {
+
+    /**
+     * Creates an empty conversation in a user's list, unless it exists.
+     * If two transactions create the same conversation concurrently, the later one fails on the primary key.
+     * An empty conversation is not listed until its first message is recorded.
+     *
+     * @param username the owner of the conversation list
+     * @param partner  the other participant of the conversation
+     * @return the number of created conversations
+     */
+    @Modifying
+    @Query(value = "INSERT INTO conversations (username, partner) SELECT :username, :partner " +
+            "WHERE NOT EXISTS (SELECT 1 FROM conversations c WHERE c.username = :username AND c.partner = :partner)",
+            nativeQuery = true)
+    int create(@Param("username") String username, @Param("partner") String partner);
+
+    /**
+     * Finds which of the given conversations exist, looked up by primary key.
+     *
+     * @param usernames the owners of the conversation lists
+     * @param partners  the other participants of the conversations
+     * @return the ids of the existing conversations between any of the owners and any of the partners
+     */
+    @Query("SELECT new com.srdc.hw2.model.ConversationId(c.username, c.partner) FROM Conversation c " +
+            "WHERE c.username IN :usernames AND c.partner IN :partners")
+    List<ConversationId> findExisting(@Param("usernames") Collection<String> usernames,
+                                      @Param("partners") Collection<String> partners);
+
+    /**
+     * Sets the last message of a conversation unless it already has a later one.
+     *
+     * @param username  the owner of the conversation list
+     * @param partner   the other participant of the conversation
+     * @param id        the id of the message
+     * @param timestamp the timestamp of the message
+     * @return 1 if the conversation was updated, 0 if it does not exist or has a later message
+     */
+    @Modifying
+    @Query("UPDATE Conversation c SET c.lastMessageId = :id, c.lastTimestamp = :timestamp " +
+            "WHERE c.username = :username AND c.partner = :partner AND (c.lastMessageId IS NULL OR " +
+            "c.lastTimestamp < :timestamp OR (c.lastTimestamp = :timestamp AND c.lastMessageId < :id))")
+    int updateLastMessage(@Param("username") String username, @Param("partner") String partner,
+                          @Param("id") long id, @Param("timestamp") Timestamp timestamp);
+
+    /**
+     * Finds a user's conversations whose last message is older than a keyset position, most recent first.
+     *
+     * @param username  the owner of the conversation list
+     * @param timestamp the timestamp of the last message of the last conversation seen
+     * @param id        the id of the last message of the last conversation seen
+     * @param pageable  the pagination information limiting the number of conversations
+     * @return a list of conversations
+     */
+    @Query("SELECT c FROM Conversation c WHERE c.username = :username AND " +
+            "(c.lastTimestamp < :timestamp OR (c.lastTimestamp = :timestamp AND c.lastMessageId < :id)) " +
+            "ORDER BY c.lastTimestamp DESC, c.lastMessageId DESC")
+    List<Conversation> findBefore(
+            @Param("username") String username,
+            @Param("timestamp") Timestamp timestamp,
+            @Param("id") long id,
+            Pageable pageable
+    );
+
+    /**
+     * Deletes the conversations other users have with a user, found through the user's own conversation list.
+     *
+     * @param username the username of the partner to remove
+     */
+    @Modifying
+    @Query("DELETE FROM Conversation c WHERE c.partner = :username AND " +
+            "c.username IN (SELECT p.partner FROM Conversation p WHERE p.username = :username)")
+    void deleteByPartner(@Param("username") String username);
+
+    /**
+     * Deletes a user's conversation list.
+     *
+     * @param username the owner of the conversation list
+     */
+    @Modifying
+    @Query("DELETE FROM Conversation c WHERE c.username = :username")
+    void deleteByUsername(@Param("username") String username);
+
+    /**
+     * Deletes the conversations whose last message is older than a time, and so out of the archive's retention period.
+     *
+     * @param timestamp the time before which conversations are deleted
+     */
+    @Modifying
+    @Query("DELETE FROM Conversation c WHERE c.lastTimestamp < :timestamp")
+    void deleteOlderThan(@Param("timestamp") Timestamp timestamp);
+
+}
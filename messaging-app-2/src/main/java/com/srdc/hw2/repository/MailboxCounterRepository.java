@@ -0,0 +1,100 @@
+package com.srdc.hw2.repository;
+
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import com.srdc.hw2.dto.MailboxVersion;
+import com.srdc.hw2.model.MailboxCounter;
+
+/**
+ * Repository interface for managing the maintained mailbox counters.
+ */
+public interface MailboxCounterRepository extends JpaRepository<MailboxCounter, String> {
+
+    /**
+     * Creates the counter of a user from the messages stored so far, unless it exists.
+     * If two transactions create the same counter concurrently, the later one waits for the first and creates nothing.
+     *
+     * @param username the owner of the mailbox
+     * @param version  the initial version, distinct from the versions of earlier users with the same username
+     * @return the number of created counters
+     */
+    @Modifying
+    @Query(value = "INSERT INTO mailbox_counters (username, inbox, outbox, unread, version) SELECT :username, " +
+            "(SELECT COUNT(*) FROM messages m WHERE m.receiver = :username), " +
+            "(SELECT COUNT(*) FROM messages m WHERE m.sender = :username), " +
+            "(SELECT COUNT(*) FROM messages m WHERE m.receiver = :username AND m.is_read = FALSE), :version " +
+            "ON CONFLICT DO NOTHING",
+            nativeQuery = true)
+    int createFromMessages(@Param("username") String username, @Param("version") long version);
+
+    /**
+     * Adds newly received, unread messages and newly sent messages to the counters of a user.
+     * The version of the mailbox is advanced by one per message.
+     *
+     * @param username the receiver and sender
+     * @param inbox    the number of messages the user got
+     * @param outbox   the number of messages the user sent
+     */
+    @Modifying
+    @Query("UPDATE MailboxCounter c SET c.inbox = c.inbox + :inbox, c.unread = c.unread + :inbox, " +
+            "c.outbox = c.outbox + :outbox, c.version = c.version + :inbox + :outbox WHERE c.username = :username")
+    void add(@Param("username") String username, @Param("inbox") long inbox, @Param("outbox") long outbox);
+
+    /**
+     * Removes a message from the unread counter of a user and advances the version of the mailbox.
+     *
+     * @param username the receiver of the message
+     */
+    @Modifying
+    @Query("UPDATE MailboxCounter c SET c.unread = CASE WHEN c.unread > 0 THEN c.unread - 1 ELSE 0 END, " +
+            "c.version = c.version + 1 WHERE c.username = :username")
+    void removeUnread(@Param("username") String username);
+
+    /**
+     * Removes archived messages from the counters of a user and advances the version of the mailbox.
+     *
+     * @param username the owner of the mailbox
+     * @param inbox    the number of archived messages the user received
+     * @param outbox   the number of archived messages the user sent
+     * @param unread   the number of archived messages the user had not read
+     */
+    @Modifying
+    @Query("UPDATE MailboxCounter c SET c.inbox = CASE WHEN c.inbox > :inbox THEN c.inbox - :inbox ELSE 0 END, " +
+            "c.outbox = CASE WHEN c.outbox > :outbox THEN c.outbox - :outbox ELSE 0 END, " +
+            "c.unread = CASE WHEN c.unread > :unread THEN c.unread - :unread ELSE 0 END, " +
+            "c.version = c.version + 1 WHERE c.username = :username")
+    void removeArchived(@Param("username") String username, @Param("inbox") long inbox,
+                        @Param("outbox") long outbox, @Param("unread") long unread);
+
+    /**
+     * Advances the version of a mailbox whose messages were changed.
+     *
+     * @param username the owner of the mailbox
+     */
+    @Modifying
+    @Query("UPDATE MailboxCounter c SET c.version = c.version + 1 WHERE c.username = :username")
+    void touch(@Param("username") String username);
+
+    /**
+     * Finds the current versions of several mailboxes, read from the database rather than the persistence context.
+     *
+     * @param usernames the owners of the mailboxes
+     * @return the versions of the mailboxes that have a counter
+     */
+    @Query("SELECT new com.srdc.hw2.dto.MailboxVersion(c.username, c.version) FROM MailboxCounter c WHERE c.username IN :usernames")
+    List<MailboxVersion> findVersions(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * Deletes the counter of a user.
+     *
+     * @param username the owner of the mailbox
+     */
+    @Modifying
+    @Query("DELETE FROM MailboxCounter c WHERE c.username = :username")
+    void deleteByUsername(@Param("username") String username);
+
+}
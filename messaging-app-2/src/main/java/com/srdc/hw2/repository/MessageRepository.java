@@ -1,16 +1,31 @@
 package com.srdc.hw2.repository;
 
+import java.util.Collection;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.stream.Stream;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Transactional;
+import com.srdc.hw2.dto.MessageView;
+import com.srdc.hw2.dto.VersionedMessage;
 import com.srdc.hw2.model.Message;
 
 /**
  * Repository interface for managing Message entities.
+ * Its queries run in read-only transactions unless they join a surrounding one, so that replicas can serve them;
+ * the modifying queries are only called within read-write transactions.
  */
+@Transactional(readOnly = true)
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
     /**
@@ -32,25 +47,154 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     Page<Message> findBySender(String sender, Pageable pageable);
 
     /**
-     * Nullifies the sender's username in messages.
+     * Finds a page of messages by receiver's username without counting the inbox.
+     * Only the listed columns are read, and no entities are loaded into the persistence context.
      *
-     * @param username the username to be nullified
+     * @param receiver the receiver's username
+     * @param pageable the pagination information
+     * @return the messages of the page
+     */
+    @Query("SELECT new com.srdc.hw2.dto.MessageView(m.id, m.sender, m.receiver, m.content, m.timestamp, m.read) " +
+            "FROM Message m WHERE m.receiver = :receiver")
+    List<MessageView> findInboxPage(@Param("receiver") String receiver, Pageable pageable);
+
+    /**
+     * Finds a page of messages by sender's username without counting the outbox.
+     * Only the listed columns are read, and no entities are loaded into the persistence context.
+     *
+     * @param sender   the sender's username
+     * @param pageable the pagination information
+     * @return the messages of the page
+     */
+    @Query("SELECT new com.srdc.hw2.dto.MessageView(m.id, m.sender, m.receiver, m.content, m.timestamp, m.read) " +
+            "FROM Message m WHERE m.sender = :sender")
+    List<MessageView> findOutboxPage(@Param("sender") String sender, Pageable pageable);
+
+    /**
+     * Marks a received message as read.
+     *
+     * @param id       the id of the message
+     * @param receiver the receiver's username
+     * @return 1 if the message was unread, 0 otherwise
      */
     @Modifying
-    @Query("UPDATE Message m SET m.sender = '~ removed user ~' WHERE m.sender = :username")
-    void nullifySender(@Param("username") String username);
+    @Query("UPDATE Message m SET m.read = true WHERE m.id = :id AND m.receiver = :receiver AND m.read = false")
+    int markRead(@Param("id") long id, @Param("receiver") String receiver);
 
     /**
-     * Nullifies the receiver's username in messages.
+     * Checks if a message was received by a user.
      *
-     * @param username the username to be nullified
+     * @param id       the id of the message
+     * @param receiver the receiver's username
+     * @return true if the message is in the user's inbox, false otherwise
+     */
+    @Query("SELECT COUNT(m) > 0 FROM Message m WHERE m.id = :id AND m.receiver = :receiver")
+    boolean existsInInbox(@Param("id") long id, @Param("receiver") String receiver);
+
+    /**
+     * Finds the ids of messages involving a user, for rewriting them in chunks.
+     * Written as a union so that each side is read from its mailbox index instead of scanning the table.
+     *
+     * @param username the username to search for as sender or receiver
+     * @param pageable the pagination information limiting the chunk
+     * @return a list of ids
+     */
+    @Query("SELECT m.id FROM Message m WHERE m.sender = :username " +
+            "UNION SELECT m.id FROM Message m WHERE m.receiver = :username")
+    List<Long> findIdsByUser(@Param("username") String username, Pageable pageable);
+
+    /**
+     * Replaces a removed user's username with the removed-user placeholder in the given messages
+     * and takes them out of their conversation, which was deleted with the user.
+     *
+     * @param username the username of the removed user
+     * @param ids      the ids of the messages to update
+     * @return the number of updated rows
      */
     @Modifying
-    @Query("UPDATE Message m SET m.receiver = '~ removed user ~' WHERE m.receiver = :username")
-    void nullifyReceiver(@Param("username") String username);
+    @Query("UPDATE Message m SET " +
+            "m.sender = CASE WHEN m.sender = :username THEN '~ removed user ~' ELSE m.sender END, " +
+            "m.receiver = CASE WHEN m.receiver = :username THEN '~ removed user ~' ELSE m.receiver END, " +
+            "m.participantLow = NULL, m.participantHigh = NULL " +
+            "WHERE m.id IN :ids")
+    int anonymize(@Param("username") String username, @Param("ids") Collection<Long> ids);
+
+    /**
+     * Streams all messages received by a user, newest first, for the mailbox export.
+     * Rows are fetched from a database cursor in batches of the fetch size, so the caller must consume the stream
+     * inside a transaction and close it. Ordering by the receiver too, though it is fixed, lets H2 read the rows in
+     * the order of the receiver index instead of sorting the whole mailbox in memory.
+     *
+     * @param receiver the receiver's username
+     * @return a stream of message views
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.srdc.hw2.dto.MessageView(m.id, m.sender, m.receiver, m.content, m.timestamp, m.read) " +
+            "FROM Message m WHERE m.receiver = :receiver ORDER BY m.receiver, m.timestamp DESC, m.id DESC")
+    Stream<MessageView> streamInbox(@Param("receiver") String receiver);
 
     /**
-     * Finds inbox messages by a field and value with pagination.
+     * Streams all messages sent by a user, newest first, for the mailbox export.
+     * Rows are fetched from a database cursor in batches of the fetch size, so the caller must consume the stream
+     * inside a transaction and close it. Ordered by the sender too, as {@link #streamInbox} is by the receiver.
+     *
+     * @param sender the sender's username
+     * @return a stream of message views
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.srdc.hw2.dto.MessageView(m.id, m.sender, m.receiver, m.content, m.timestamp, m.read) " +
+            "FROM Message m WHERE m.sender = :sender ORDER BY m.sender, m.timestamp DESC, m.id DESC")
+    Stream<MessageView> streamOutbox(@Param("sender") String sender);
+
+    /**
+     * Finds the users taking part in the given messages.
+     *
+     * @param ids the ids of the messages
+     * @return the senders and receivers of the messages
+     */
+    @Query("SELECT m.sender FROM Message m WHERE m.id IN :ids UNION SELECT m.receiver FROM Message m WHERE m.id IN :ids")
+    List<String> findParticipants(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Finds the messages a user received between two versions of the user's mailbox, in version order.
+     *
+     * @param username the receiver's username
+     * @param after the version the client holds, exclusive
+     * @param upTo the current version, inclusive
+     * @param pageable the pagination information limiting the number of messages
+     * @return a list of messages with their versions
+     */
+    @Query("SELECT new com.srdc.hw2.dto.VersionedMessage(m, m.receiverVersion) FROM Message m WHERE m.receiver = :username AND " +
+            "m.receiverVersion > :after AND m.receiverVersion <= :upTo ORDER BY m.receiverVersion")
+    List<VersionedMessage> findReceivedBetween(
+            @Param("username") String username,
+            @Param("after") long after,
+            @Param("upTo") long upTo,
+            Pageable pageable
+    );
+
+    /**
+     * Finds the messages a user sent to other users between two versions of the user's mailbox, in version order.
+     * Messages to oneself are found once, by {@link #findReceivedBetween}.
+     *
+     * @param username the sender's username
+     * @param after the version the client holds, exclusive
+     * @param upTo the current version, inclusive
+     * @param pageable the pagination information limiting the number of messages
+     * @return a list of messages with their versions
+     */
+    @Query("SELECT new com.srdc.hw2.dto.VersionedMessage(m, m.senderVersion) FROM Message m WHERE m.sender = :username AND " +
+            "m.receiver <> :username AND m.senderVersion > :after AND m.senderVersion <= :upTo ORDER BY m.senderVersion")
+    List<VersionedMessage> findSentBetween(
+            @Param("username") String username,
+            @Param("after") long after,
+            @Param("upTo") long upTo,
+            Pageable pageable
+    );
+
+    /**
+     * Finds inbox messages by a field and value with pagination. The receiver matches case-insensitively, from the
+     * lowercase receiver index on PostgreSQL. Searches by content are served by the full-text index instead.
      *
      * @param username the receiver's username
      * @param field the field to search by
@@ -60,12 +204,10 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
      */
     @Query(value = "SELECT * FROM messages m WHERE " +
             "LOWER(m.receiver) = LOWER(:username) AND " +
-            "((:field = 'sender' AND LOWER(m.sender) LIKE LOWER(CONCAT('%', :value, '%'))) OR " +
-            "(:field = 'content' AND LOWER(m.content) LIKE LOWER(CONCAT('%', :value, '%'))))",
+            "(:field = 'sender' AND LOWER(m.sender) LIKE LOWER(CONCAT('%', :value, '%')))",
             countQuery = "SELECT count(*) FROM messages m WHERE " +
                     "LOWER(m.receiver) = LOWER(:username) AND " +
-                    "((:field = 'sender' AND LOWER(m.sender) LIKE LOWER(CONCAT('%', :value, '%'))) OR " +
-                    "(:field = 'content' AND LOWER(m.content) LIKE LOWER(CONCAT('%', :value, '%'))))",
+                    "(:field = 'sender' AND LOWER(m.sender) LIKE LOWER(CONCAT('%', :value, '%')))",
             nativeQuery = true)
     Page<Message> findInboxMessagesByFieldAndValue(
             @Param("username") String username,
@@ -75,7 +217,8 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     );
 
     /**
-     * Finds outbox messages by a field and value with pagination.
+     * Finds outbox messages by a field and value with pagination. The sender matches case-insensitively, from the
+     * lowercase sender index on PostgreSQL. Searches by content are served by the full-text index instead.
      *
      * @param username the sender's username
      * @param field the field to search by
@@ -85,12 +228,10 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
      */
     @Query(value = "SELECT * FROM messages m WHERE " +
             "LOWER(m.sender) = LOWER(:username) AND " +
-            "((:field = 'receiver' AND LOWER(m.receiver) LIKE LOWER(CONCAT('%', :value, '%'))) OR " +
-            "(:field = 'content' AND LOWER(m.content) LIKE LOWER(CONCAT('%', :value, '%'))))",
+            "(:field = 'receiver' AND LOWER(m.receiver) LIKE LOWER(CONCAT('%', :value, '%')))",
             countQuery = "SELECT count(*) FROM messages m WHERE " +
                     "LOWER(m.sender) = LOWER(:username) AND " +
-                    "((:field = 'receiver' AND LOWER(m.receiver) LIKE LOWER(CONCAT('%', :value, '%'))) OR " +
-                    "(:field = 'content' AND LOWER(m.content) LIKE LOWER(CONCAT('%', :value, '%'))))",
+                    "(:field = 'receiver' AND LOWER(m.receiver) LIKE LOWER(CONCAT('%', :value, '%')))",
             nativeQuery = true)
     Page<Message> findOutboxMessagesByFieldAndValue(
             @Param("username") String username,
@@ -99,4 +240,182 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
             Pageable pageable
     );
 
+    /**
+     * Finds messages that have no postings in the full-text index, in id order.
+     *
+     * @param after the id after which to start
+     * @param pageable the pagination information limiting the chunk size
+     * @return a list of messages
+     */
+    @Query("SELECT m FROM Message m WHERE m.id > :after AND " +
+            "NOT EXISTS (SELECT t FROM MessageTerm t WHERE t.messageId = m.id) ORDER BY m.id")
+    List<Message> findUnindexedMessages(@Param("after") long after, Pageable pageable);
+
+    /**
+     * Finds inbox messages older than a keyset position, newest first.
+     * Only the listed columns are read, and no entities are loaded into the persistence context.
+     *
+     * @param username the receiver's username
+     * @param timestamp the timestamp of the last message seen
+     * @param id the id of the last message seen
+     * @param pageable the pagination information limiting the number of messages
+     * @return a list of message views
+     */
+    @Query("SELECT new com.srdc.hw2.dto.MessageView(m.id, m.sender, m.receiver, m.content, m.timestamp, m.read) " +
+            "FROM Message m WHERE m.receiver = :username AND " +
+            "(m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    List<MessageView> findInboxBefore(
+            @Param("username") String username,
+            @Param("timestamp") Timestamp timestamp,
+            @Param("id") long id,
+            Pageable pageable
+    );
+
+    /**
+     * Finds outbox messages older than a keyset position, newest first.
+     * Only the listed columns are read, and no entities are loaded into the persistence context.
+     *
+     * @param username the sender's username
+     * @param timestamp the timestamp of the last message seen
+     * @param id the id of the last message seen
+     * @param pageable the pagination information limiting the number of messages
+     * @return a list of message views
+     */
+    @Query("SELECT new com.srdc.hw2.dto.MessageView(m.id, m.sender, m.receiver, m.content, m.timestamp, m.read) " +
+            "FROM Message m WHERE m.sender = :username AND " +
+            "(m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    List<MessageView> findOutboxBefore(
+            @Param("username") String username,
+            @Param("timestamp") Timestamp timestamp,
+            @Param("id") long id,
+            Pageable pageable
+    );
+
+    /**
+     * Finds inbox messages whose sender contains a value and that are older than a keyset position, newest first.
+     * Only the listed columns are read, and no entities are loaded into the persistence context.
+     *
+     * @param username the receiver's username
+     * @param value the value to search for in the sender
+     * @param timestamp the timestamp of the last message seen
+     * @param id the id of the last message seen
+     * @param pageable the pagination information limiting the number of messages
+     * @return a list of message views
+     */
+    @Query("SELECT new com.srdc.hw2.dto.MessageView(m.id, m.sender, m.receiver, m.content, m.timestamp, m.read) " +
+            "FROM Message m WHERE m.receiver = :username AND " +
+            "LOWER(m.sender) LIKE LOWER(CONCAT('%', :value, '%')) AND " +
+            "(m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    List<MessageView> findInboxBySenderBefore(
+            @Param("username") String username,
+            @Param("value") String value,
+            @Param("timestamp") Timestamp timestamp,
+            @Param("id") long id,
+            Pageable pageable
+    );
+
+    /**
+     * Finds outbox messages whose receiver contains a value and that are older than a keyset position, newest first.
+     * Only the listed columns are read, and no entities are loaded into the persistence context.
+     *
+     * @param username the sender's username
+     * @param value the value to search for in the receiver
+     * @param timestamp the timestamp of the last message seen
+     * @param id the id of the last message seen
+     * @param pageable the pagination information limiting the number of messages
+     * @return a list of message views
+     */
+    @Query("SELECT new com.srdc.hw2.dto.MessageView(m.id, m.sender, m.receiver, m.content, m.timestamp, m.read) " +
+            "FROM Message m WHERE m.sender = :username AND " +
+            "LOWER(m.receiver) LIKE LOWER(CONCAT('%', :value, '%')) AND " +
+            "(m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    List<MessageView> findOutboxByReceiverBefore(
+            @Param("username") String username,
+            @Param("value") String value,
+            @Param("timestamp") Timestamp timestamp,
+            @Param("id") long id,
+            Pageable pageable
+    );
+
+    /**
+     * Finds the messages exchanged by two users that are older than a keyset position, newest first.
+     * Only the listed columns are read, and no entities are loaded into the persistence context.
+     *
+     * @param low the participant whose username sorts first
+     * @param high the participant whose username sorts last
+     * @param timestamp the timestamp of the last message seen
+     * @param id the id of the last message seen
+     * @param pageable the pagination information limiting the number of messages
+     * @return a list of message views
+     */
+    @Query("SELECT new com.srdc.hw2.dto.MessageView(m.id, m.sender, m.receiver, m.content, m.timestamp, m.read) " +
+            "FROM Message m WHERE m.participantLow = :low AND m.participantHigh = :high AND " +
+            "(m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    List<MessageView> findConversationBefore(
+            @Param("low") String low,
+            @Param("high") String high,
+            @Param("timestamp") Timestamp timestamp,
+            @Param("id") long id,
+            Pageable pageable
+    );
+
+    /**
+     * Finds the messages exchanged by two users that are newer than a keyset position, oldest first.
+     * Only the listed columns are read, and no entities are loaded into the persistence context.
+     *
+     * @param low the participant whose username sorts first
+     * @param high the participant whose username sorts last
+     * @param timestamp the timestamp of the newest message seen
+     * @param id the id of the newest message seen
+     * @param pageable the pagination information limiting the number of messages
+     * @return a list of message views
+     */
+    @Query("SELECT new com.srdc.hw2.dto.MessageView(m.id, m.sender, m.receiver, m.content, m.timestamp, m.read) " +
+            "FROM Message m WHERE m.participantLow = :low AND m.participantHigh = :high AND " +
+            "(m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id)) " +
+            "ORDER BY m.timestamp ASC, m.id ASC")
+    List<MessageView> findConversationSince(
+            @Param("low") String low,
+            @Param("high") String high,
+            @Param("timestamp") Timestamp timestamp,
+            @Param("id") long id,
+            Pageable pageable
+    );
+
+    /**
+     * Finds the oldest messages sent before a time and locks them, so they cannot be marked read while they are archived.
+     *
+     * @param timestamp the time before which messages are returned
+     * @param pageable  the pagination information limiting the number of messages
+     * @return a list of messages, oldest first
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT m FROM Message m WHERE m.timestamp < :timestamp ORDER BY m.timestamp, m.id")
+    List<Message> findOldestBefore(@Param("timestamp") Timestamp timestamp, Pageable pageable);
+
+    /**
+     * Finds messages by id, read as views.
+     *
+     * @param ids the ids of the messages
+     * @return the messages that exist, in no particular order
+     */
+    @Query("SELECT new com.srdc.hw2.dto.MessageView(m.id, m.sender, m.receiver, m.content, m.timestamp, m.read) " +
+            "FROM Message m WHERE m.id IN :ids")
+    List<MessageView> findViewsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes messages by id.
+     *
+     * @param ids the ids of the messages
+     * @return the number of deleted messages
+     */
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
 }
@@ -0,0 +1,71 @@
+package com.srdc.hw2.repository;
+
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import com.srdc.hw2.model.MessageTerm;
+
+/**
+ * Repository interface for managing the postings of the message full-text index.
+ */
+public interface MessageTermRepository extends JpaRepository<MessageTerm, Long> {
+
+    /**
+     * Finds the ids of postings involving a user, for rewriting them in chunks.
+     *
+     * @param username the username to search for as sender or receiver
+     * @param pageable the pagination information limiting the chunk
+     * @return a list of ids
+     */
+    @Query("SELECT t.id FROM MessageTerm t WHERE t.sender = :username " +
+            "UNION SELECT t.id FROM MessageTerm t WHERE t.receiver = :username")
+    List<Long> findIdsByUser(@Param("username") String username, Pageable pageable);
+
+    /**
+     * Replaces a removed user's username with the removed-user placeholder in the given postings.
+     *
+     * @param username the username of the removed user
+     * @param ids      the ids of the postings to update
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query("UPDATE MessageTerm t SET " +
+            "t.sender = CASE WHEN t.sender = :username THEN '~ removed user ~' ELSE t.sender END, " +
+            "t.receiver = CASE WHEN t.receiver = :username THEN '~ removed user ~' ELSE t.receiver END " +
+            "WHERE t.id IN :ids")
+    int anonymize(@Param("username") String username, @Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes the postings of messages.
+     *
+     * @param messageIds the ids of the messages
+     */
+    @Modifying
+    @Query("DELETE FROM MessageTerm t WHERE t.messageId IN :messageIds")
+    void deleteByMessageIds(@Param("messageIds") Collection<Long> messageIds);
+
+    /**
+     * Finds the id up to which the messages stored before the full-text index existed have been indexed.
+     *
+     * @return the id, or null once the backfill has completed
+     */
+    @Query(value = "SELECT indexed_through FROM search_backfill WHERE id = 1 AND completed = FALSE", nativeQuery = true)
+    Long findBackfillPosition();
+
+    /**
+     * Records the progress of the backfill.
+     *
+     * @param indexedThrough the id up to which messages have been indexed
+     * @param completed      whether all messages have been indexed
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE search_backfill SET indexed_through = :indexedThrough, completed = :completed WHERE id = 1", nativeQuery = true)
+    void saveBackfillPosition(@Param("indexedThrough") long indexedThrough, @Param("completed") boolean completed);
+
+}
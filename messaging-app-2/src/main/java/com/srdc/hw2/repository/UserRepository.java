@@ -1,16 +1,22 @@
 package com.srdc.hw2.repository;
 
-import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.domain.Page;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import org.springframework.data.domain.Pageable;
+import com.srdc.hw2.dto.UserView;
 import com.srdc.hw2.model.User;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Repository interface for managing User entities.
+ * Its queries run in read-only transactions unless they join a surrounding one, so that replicas can serve them.
  */
+@Transactional(readOnly = true)
 public interface UserRepository extends JpaRepository<User, Long> {
 
     /**
@@ -31,11 +37,31 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     /**
      * Checks if a user exists by username.
+     * Declared as a string query: derived queries build their criteria query under a lock shared by all callers,
+     * which serializes concurrent message sends.
      *
      * @param username the username to check
      * @return true if the user exists, false otherwise
      */
-    boolean existsByUsername(String username);
+    @Query("SELECT COUNT(u) > 0 FROM User u WHERE u.username = :username")
+    boolean existsByUsername(@Param("username") String username);
+
+    /**
+     * Finds which of the given usernames belong to existing users.
+     *
+     * @param usernames the usernames to check
+     * @return the usernames that exist
+     */
+    @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+    Set<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * Finds the usernames of all users.
+     *
+     * @return a list of usernames
+     */
+    @Query("SELECT u.username FROM User u")
+    List<String> findAllUsernames();
 
     /**
      * Finds all users with pagination.
@@ -45,6 +71,16 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     Page<User> findAll(Pageable pageable);
 
+    /**
+     * Finds all users with pagination, reading only the columns of the user listing.
+     *
+     * @param pageable the pagination information
+     * @return a page of users without their passwords
+     */
+    @Query(value = "SELECT new com.srdc.hw2.dto.UserView(u.username, u.name, u.surname, u.birthdate, u.gender, u.email, u.location, u.isAdmin) FROM User u",
+            countQuery = "SELECT COUNT(u) FROM User u")
+    Page<UserView> findAllViews(Pageable pageable);
+
     /**
      * Finds users by a field and value with pagination.
      *
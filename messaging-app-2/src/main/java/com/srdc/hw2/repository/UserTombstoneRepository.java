@@ -0,0 +1,62 @@
+package com.srdc.hw2.repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import com.srdc.hw2.model.UserTombstone;
+
+/**
+ * Repository interface for managing the tombstones of removed users.
+ */
+public interface UserTombstoneRepository extends JpaRepository<UserTombstone, String> {
+
+    /**
+     * Finds the tombstones in the order the users were removed.
+     *
+     * @return a list of tombstones, oldest first
+     */
+    @Query("SELECT t FROM UserTombstone t ORDER BY t.removedAt")
+    List<UserTombstone> findAllOldestFirst();
+
+    /**
+     * Finds which of the given usernames belong to removed users whose messages are still being rewritten.
+     *
+     * @param usernames the usernames to check
+     * @return the usernames with a tombstone
+     */
+    @Query("SELECT t.username FROM UserTombstone t WHERE t.username IN :usernames")
+    Set<String> findPendingUsernames(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * Claims the tombstone of a removed user for an instance, or renews the instance's claim, unless another
+     * instance holds a claim that has not expired.
+     *
+     * @param username the username of the removed user
+     * @param owner    the id of the claiming instance
+     * @param now      the current time
+     * @param until    the time the claim expires
+     * @return 1 if the instance holds the claim, 0 otherwise
+     */
+    @Modifying
+    @Query("UPDATE UserTombstone t SET t.claimedBy = :owner, t.claimedUntil = :until WHERE t.username = :username " +
+            "AND (t.claimedBy IS NULL OR t.claimedBy = :owner OR t.claimedUntil < :now)")
+    int claim(@Param("username") String username, @Param("owner") String owner,
+              @Param("now") Timestamp now, @Param("until") Timestamp until);
+
+    /**
+     * Deletes the tombstone of a removed user if the instance holds the claim on it.
+     *
+     * @param username the username of the removed user
+     * @param owner    the id of the instance
+     * @return the number of deleted tombstones
+     */
+    @Modifying
+    @Query("DELETE FROM UserTombstone t WHERE t.username = :username AND t.claimedBy = :owner")
+    int deleteClaimed(@Param("username") String username, @Param("owner") String owner);
+
+}
@@ -0,0 +1,361 @@
+package com.srdc.hw2.search;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import com.srdc.hw2.dto.MessageCursor;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.model.MessageTerm;
+import com.srdc.hw2.repository.MessageRepository;
+import com.srdc.hw2.repository.MessageTermRepository;
+
+/**
+ * MessageSearchService provides full-text search over message contents.
+ * Contents are split into lowercase terms and stored as postings in the message_terms table when a message is sent.
+ * A query matches messages containing all of its terms and all of its quoted phrases, ranked by term frequency.
+ * The select and count queries of a search are timed separately.
+ */
+@Service
+public class MessageSearchService {
+
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int BACKFILL_CHUNK_SIZE = 1000;
+    private static final int FREQUENCY_LIMIT = 1000;
+    private static final Pattern TERM_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern PHRASE = Pattern.compile("\"([^\"]*)\"");
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    MessageRepository messageRepository;
+
+    @Autowired
+    MessageTermRepository messageTermRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${messaging.search.backfill-on-startup:true}")
+    boolean backfillOnStartup;
+
+    private Timer selectTimer;
+    private Timer countTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        selectTimer = Timer.builder("messaging.search.query")
+                .description("Time spent running full-text search queries")
+                .tag("query", "select")
+                .register(meterRegistry);
+        countTimer = Timer.builder("messaging.search.query")
+                .description("Time spent running full-text search queries")
+                .tag("query", "count")
+                .register(meterRegistry);
+    }
+
+    /**
+     * A parsed search query: the terms every result must contain and the phrases it must contain verbatim.
+     *
+     * @param terms   the normalized terms of the query
+     * @param phrases the lowercase quoted phrases of the query
+     */
+    record SearchQuery(Set<String> terms, List<String> phrases) {}
+
+    /**
+     * Adds the postings of a saved message to the index.
+     *
+     * @param message the message to index
+     */
+    public void index(Message message) {
+        messageTermRepository.saveAll(postings(message));
+    }
+
+    /**
+     * Adds the postings of several saved messages to the index in one batch.
+     *
+     * @param messages the messages to index
+     */
+    public void indexAll(List<Message> messages) {
+        List<MessageTerm> postings = new ArrayList<>();
+        messages.forEach(message -> postings.addAll(postings(message)));
+        messageTermRepository.saveAll(postings);
+    }
+
+    /**
+     * Searches the contents of a user's inbox.
+     *
+     * @param username the receiver's username
+     * @param query    the search query; quoted parts are matched as phrases
+     * @param pageable the pagination information
+     * @return a page of messages, most relevant first
+     */
+    @Transactional(readOnly = true)
+    public Page<Message> searchInbox(String username, String query, Pageable pageable) {
+        return search("receiver", username, parse(query), pageable);
+    }
+
+    /**
+     * Searches the contents of a user's outbox.
+     *
+     * @param username the sender's username
+     * @param query    the search query; quoted parts are matched as phrases
+     * @param pageable the pagination information
+     * @return a page of messages, most relevant first
+     */
+    @Transactional(readOnly = true)
+    public Page<Message> searchOutbox(String username, String query, Pageable pageable) {
+        return search("sender", username, parse(query), pageable);
+    }
+
+    /**
+     * Searches the contents of a user's inbox for messages older than a keyset position, newest first.
+     *
+     * @param username the receiver's username
+     * @param query    the search query; quoted parts are matched as phrases
+     * @param cursor   the position of the last message seen
+     * @param limit    the maximum number of messages to return
+     * @return a list of messages
+     */
+    @Transactional(readOnly = true)
+    public List<Message> searchInboxBefore(String username, String query, MessageCursor cursor, int limit) {
+        return searchBefore("receiver", username, parse(query), cursor, limit);
+    }
+
+    /**
+     * Searches the contents of a user's outbox for messages older than a keyset position, newest first.
+     *
+     * @param username the sender's username
+     * @param query    the search query; quoted parts are matched as phrases
+     * @param cursor   the position of the last message seen
+     * @param limit    the maximum number of messages to return
+     * @return a list of messages
+     */
+    @Transactional(readOnly = true)
+    public List<Message> searchOutboxBefore(String username, String query, MessageCursor cursor, int limit) {
+        return searchBefore("sender", username, parse(query), cursor, limit);
+    }
+
+    /**
+     * Indexes the messages that were stored before the full-text index existed, once.
+     * Progress is recorded after every chunk, so an interrupted backfill resumes where it stopped, and later
+     * starts skip the backfill once it has completed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!backfillOnStartup) {
+            return;
+        }
+        Long position = messageTermRepository.findBackfillPosition();
+        if (position != null) {
+            messageTermRepository.saveBackfillPosition(indexFrom(position, true), true);
+        }
+    }
+
+    /**
+     * Indexes all messages that have no postings, such as messages inserted without the application.
+     * Unlike the startup backfill this always reads the whole messages table.
+     */
+    public void indexUnindexedMessages() {
+        indexFrom(0, false);
+    }
+
+    /**
+     * Indexes the messages without postings after an id in chunks, returning the last id read.
+     */
+    private long indexFrom(long after, boolean recordProgress) {
+        List<Message> chunk;
+        do {
+            chunk = messageRepository.findUnindexedMessages(after, PageRequest.of(0, BACKFILL_CHUNK_SIZE));
+            indexAll(chunk);
+            if (!chunk.isEmpty()) {
+                after = chunk.get(chunk.size() - 1).getId();
+                if (recordProgress) {
+                    messageTermRepository.saveBackfillPosition(after, false);
+                }
+            }
+        } while (chunk.size() == BACKFILL_CHUNK_SIZE);
+        return after;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Page<Message> search(String mailbox, String username, SearchQuery query, Pageable pageable) {
+        if (query.terms().isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        String from = from(mailbox, query);
+        Query select = entityManager.createNativeQuery("SELECT m.*" + from + " ORDER BY r.score DESC, m.timestamp DESC, m.id DESC", Message.class);
+        bind(select, username, query);
+        select.setFirstResult((int) pageable.getOffset());
+        select.setMaxResults(pageable.getPageSize());
+        List<Message> messages = selectTimer.record(() -> select.getResultList());
+
+        return PageableExecutionUtils.getPage(messages, pageable, () -> {
+            Query count = entityManager.createNativeQuery("SELECT COUNT(*)" + from);
+            bind(count, username, query);
+            return countTimer.record(() -> ((Number) count.getSingleResult()).longValue());
+        });
+    }
+
+    /**
+     * Walks the postings of the rarest term in the mailbox newest first from the keyset position, keeping the
+     * messages that also contain the other terms and the phrases, so a page costs about the same at any depth
+     * and a common term does not make a selective query walk most of the mailbox.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Message> searchBefore(String mailbox, String username, SearchQuery query, MessageCursor cursor, int limit) {
+        if (query.terms().isEmpty()) {
+            return List.of();
+        }
+
+        List<String> terms = byFrequency(mailbox, username, query.terms());
+        StringBuilder sql = new StringBuilder("SELECT m.* FROM message_terms t JOIN messages m ON m.id = t.message_id")
+                .append(" WHERE t.").append(mailbox).append(" = :username AND t.term = :term0")
+                .append(" AND (t.timestamp < :timestamp OR (t.timestamp = :timestamp AND t.message_id < :id))");
+        for (int i = 1; i < terms.size(); i++) {
+            sql.append(" AND EXISTS (SELECT 1 FROM message_terms t").append(i).append(" WHERE t").append(i)
+                    .append(".message_id = t.message_id AND t").append(i).append(".term = :term").append(i).append(")");
+        }
+        for (int i = 0; i < query.phrases().size(); i++) {
+            sql.append(" AND LOWER(m.content) LIKE :phrase").append(i).append(" ESCAPE '\\'");
+        }
+        sql.append(" ORDER BY t.timestamp DESC, t.message_id DESC");
+
+        Query select = entityManager.createNativeQuery(sql.toString(), Message.class);
+        select.setParameter("username", username);
+        for (int i = 0; i < terms.size(); i++) {
+            select.setParameter("term" + i, terms.get(i));
+        }
+        bindPhrases(select, query);
+        select.setParameter("timestamp", cursor.timestamp());
+        select.setParameter("id", cursor.id());
+        select.setMaxResults(limit);
+        return selectTimer.record(() -> select.getResultList());
+    }
+
+    /**
+     * Orders the terms of a query by the number of messages of the mailbox containing them, rarest first.
+     * Each count stops at a limit, so it reads a bounded range of the mailbox and term index; terms above the
+     * limit keep their query order.
+     */
+    List<String> byFrequency(String mailbox, String username, Set<String> terms) {
+        List<String> ordered = new ArrayList<>(terms);
+        if (ordered.size() < 2) {
+            return ordered;
+        }
+        Map<String, Long> frequencies = new HashMap<>();
+        for (String term : ordered) {
+            Query count = entityManager.createNativeQuery("SELECT COUNT(*) FROM (SELECT 1 FROM message_terms t WHERE t." + mailbox +
+                    " = :username AND t.term = :term LIMIT " + FREQUENCY_LIMIT + ") f");
+            count.setParameter("username", username);
+            count.setParameter("term", term);
+            frequencies.put(term, ((Number) count.getSingleResult()).longValue());
+        }
+        ordered.sort(Comparator.comparing(frequencies::get));
+        return ordered;
+    }
+
+    /**
+     * Builds the FROM and WHERE clauses matching the messages of a mailbox that contain all terms and phrases.
+     */
+    private static String from(String mailbox, SearchQuery query) {
+        StringBuilder from = new StringBuilder()
+                .append(" FROM messages m JOIN (SELECT t.message_id, SUM(t.frequency) AS score FROM message_terms t")
+                .append(" WHERE t.").append(mailbox).append(" = :username AND t.term IN (:terms)")
+                .append(" GROUP BY t.message_id HAVING COUNT(*) = :termCount) r ON r.message_id = m.id");
+        List<String> conditions = new ArrayList<>();
+        for (int i = 0; i < query.phrases().size(); i++) {
+            conditions.add("LOWER(m.content) LIKE :phrase" + i + " ESCAPE '\\'");
+        }
+        if (!conditions.isEmpty()) {
+            from.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        return from.toString();
+    }
+
+    private static void bind(Query query, String username, SearchQuery searchQuery) {
+        query.setParameter("username", username);
+        query.setParameter("terms", searchQuery.terms());
+        query.setParameter("termCount", searchQuery.terms().size());
+        bindPhrases(query, searchQuery);
+    }
+
+    private static void bindPhrases(Query query, SearchQuery searchQuery) {
+        for (int i = 0; i < searchQuery.phrases().size(); i++) {
+            query.setParameter("phrase" + i, "%" + escapeLike(searchQuery.phrases().get(i)) + "%");
+        }
+    }
+
+    /**
+     * Parses a search query into terms and quoted phrases.
+     *
+     * @param query the raw search query
+     * @return the parsed query
+     */
+    static SearchQuery parse(String query) {
+        List<String> phrases = new ArrayList<>();
+        Matcher matcher = PHRASE.matcher(query);
+        while (matcher.find()) {
+            String phrase = matcher.group(1).trim().toLowerCase(Locale.ROOT);
+            if (!phrase.isEmpty()) {
+                phrases.add(phrase);
+            }
+        }
+        return new SearchQuery(new LinkedHashSet<>(terms(query).keySet()), phrases);
+    }
+
+    /**
+     * Splits a text into normalized terms with their number of occurrences.
+     *
+     * @param text the text to split
+     * @return the terms of the text mapped to their frequencies
+     */
+    static Map<String, Integer> terms(String text) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        if (text == null) {
+            return terms;
+        }
+        for (String term : TERM_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty()) {
+                terms.merge(term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term, 1, Integer::sum);
+            }
+        }
+        return terms;
+    }
+
+    private static List<MessageTerm> postings(Message message) {
+        List<MessageTerm> postings = new ArrayList<>();
+        terms(message.getContent()).forEach((term, frequency) ->
+                postings.add(new MessageTerm(message.getId(), message.getSender(), message.getReceiver(), message.getTimestamp(), term, frequency)));
+        return postings;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
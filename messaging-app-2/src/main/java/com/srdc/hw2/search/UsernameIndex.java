@@ -0,0 +1,172 @@
+package com.srdc.hw2.search;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import com.srdc.hw2.repository.UserRepository;
+
+/**
+ * UsernameIndex is an in-memory trigram index over all usernames, used for typeahead search.
+ * Single characters and character pairs are indexed as well, so queries shorter than a trigram are answered
+ * from their own posting list instead of a scan over all usernames.
+ * It is built from the users table at startup and kept up to date as users are created, renamed and removed.
+ */
+@Component
+public class UsernameIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final NavigableSet<String> usernames = new ConcurrentSkipListSet<>();
+    private final Map<String, Posting> postings = new ConcurrentHashMap<>();
+
+    /**
+     * The sorted usernames containing a trigram, with a size counter since skip lists count in linear time.
+     */
+    private static class Posting {
+        final NavigableSet<String> names = new ConcurrentSkipListSet<>();
+        final AtomicInteger size = new AtomicInteger();
+    }
+
+    @Autowired
+    UserRepository userRepository;
+
+    /**
+     * Loads all usernames from the database.
+     */
+    @PostConstruct
+    public void rebuild() {
+        userRepository.findAllUsernames().forEach(this::add);
+    }
+
+    /**
+     * Adds a username to the index.
+     *
+     * @param username the username to add
+     */
+    public void add(String username) {
+        if (usernames.add(username)) {
+            for (String gram : allGrams(username)) {
+                postings.compute(gram, (g, posting) -> {
+                    if (posting == null) {
+                        posting = new Posting();
+                    }
+                    if (posting.names.add(username)) {
+                        posting.size.incrementAndGet();
+                    }
+                    return posting;
+                });
+            }
+        }
+    }
+
+    /**
+     * Removes a username from the index.
+     *
+     * @param username the username to remove
+     */
+    public void remove(String username) {
+        if (usernames.remove(username)) {
+            for (String gram : allGrams(username)) {
+                postings.computeIfPresent(gram, (g, posting) -> {
+                    if (posting.names.remove(username)) {
+                        posting.size.decrementAndGet();
+                    }
+                    return posting.size.get() == 0 ? null : posting;
+                });
+            }
+        }
+    }
+
+    /**
+     * Replaces a username in the index after the user was renamed.
+     *
+     * @param oldUsername the previous username
+     * @param newUsername the new username
+     */
+    public void rename(String oldUsername, String newUsername) {
+        remove(oldUsername);
+        add(newUsername);
+    }
+
+    /**
+     * Finds usernames containing the query, ignoring case, in alphabetical order.
+     *
+     * @param query the string to search for within usernames
+     * @param limit the maximum number of usernames to return
+     * @return the first matching usernames
+     */
+    public List<String> search(String query, int limit) {
+        List<String> result = new ArrayList<>(Math.min(limit, 64));
+        for (String username : candidates(query.toLowerCase(Locale.ROOT))) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (containsIgnoreCase(username, query)) {
+                result.add(username);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Picks the smallest posting list among the trigrams of the query.
+     * Queries shorter than a trigram are grams themselves and use their own posting list.
+     */
+    private NavigableSet<String> candidates(String query) {
+        if (query.isEmpty()) {
+            return usernames;
+        }
+        Posting smallest = null;
+        for (String gram : grams(query, Math.min(query.length(), GRAM_LENGTH))) {
+            Posting posting = postings.get(gram);
+            if (posting == null) {
+                return Collections.emptyNavigableSet();
+            }
+            if (smallest == null || posting.size.get() < smallest.size.get()) {
+                smallest = posting;
+            }
+        }
+        return smallest.names;
+    }
+
+    /**
+     * Returns the distinct grams of a username of every length up to the trigram length.
+     */
+    private static List<String> allGrams(String value) {
+        List<String> grams = new ArrayList<>();
+        for (int length = 1; length <= GRAM_LENGTH; length++) {
+            grams.addAll(grams(value, length));
+        }
+        return grams;
+    }
+
+    private static List<String> grams(String value, int length) {
+        String lower = value.toLowerCase(Locale.ROOT);
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i + length <= lower.length(); i++) {
+            String gram = lower.substring(i, i + length);
+            if (!grams.contains(gram)) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+
+    private static boolean containsIgnoreCase(String value, String query) {
+        for (int i = 0; i + query.length() <= value.length(); i++) {
+            if (value.regionMatches(true, i, query, 0, query.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
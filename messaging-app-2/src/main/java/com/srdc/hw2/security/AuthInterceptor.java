@@ -0,0 +1,70 @@
+package com.srdc.hw2.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * AuthInterceptor authenticates each API request exactly once.
+ * The token in the Authorization header must belong to an active session; its verified claims are
+ * exposed to the controllers as an {@link AuthPrincipal} request attribute. The dispatch that completes an
+ * asynchronous request, such as a send waiting for its group commit, reuses the principal of the original dispatch.
+ * The time spent authenticating is recorded separately from the request latency.
+ */
+@Component
+public class AuthInterceptor implements HandlerInterceptor {
+
+    /**
+     * Name of the request attribute holding the authenticated {@link AuthPrincipal}.
+     */
+    public static final String PRINCIPAL = "com.srdc.hw2.security.principal";
+
+    @Autowired
+    SessionRegistry sessionRegistry;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private Timer authenticationTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        authenticationTimer = Timer.builder("messaging.auth.authenticate")
+                .description("Time spent checking the session and the claims of a request token")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Verifies the request token and stores the principal, or rejects the request with 401.
+     *
+     * @param request  the current request
+     * @param response the current response
+     * @param handler  the chosen handler
+     * @return true if the request is authenticated, false otherwise
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (CorsUtils.isPreFlightRequest(request) || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
+        String token = request.getHeader(HttpHeaders.AUTHORIZATION);
+        AuthPrincipal principal = authenticationTimer.record(() -> sessionRegistry.isActive(token) ? AuthService.authenticate(token) : null);
+        if (principal == null) {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            return false;
+        }
+
+        request.setAttribute(PRINCIPAL, principal);
+        return true;
+    }
+}
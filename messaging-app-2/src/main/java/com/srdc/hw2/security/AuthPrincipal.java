@@ -0,0 +1,10 @@
+package com.srdc.hw2.security;
+
+/**
+ * The authenticated caller of a request, built from the verified claims of its JWT token.
+ *
+ * @param username  the username the token was issued to
+ * @param admin     whether the user is an admin
+ * @param expiresAt the expiration time of the token in epoch milliseconds
+ */
+public record AuthPrincipal(String username, boolean admin, long expiresAt) {}
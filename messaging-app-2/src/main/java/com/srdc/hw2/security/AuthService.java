@@ -1,5 +1,7 @@
 package com.srdc.hw2.security;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -12,6 +14,8 @@ import java.util.Date;
 public class AuthService {
     private static final Key key = Keys.secretKeyFor(SignatureAlgorithm.HS256); // Generate a random secret key
     private static final long EXPIRATION_TIME = 86400000; // 1 day in milliseconds
+    private static final JwtParser parser = Jwts.parserBuilder().setSigningKey(key).build(); // Parsers are immutable and thread-safe
+    private static final ClaimsCache cache = new ClaimsCache(10000); // Verified claims of recently used tokens
 
     /**
      * Generates a JWT token for a user.
@@ -31,6 +35,68 @@ public class AuthService {
                 .compact();
     }
 
+    /**
+     * Authenticates a JWT token, serving recently verified tokens from the claims cache.
+     *
+     * @param token the JWT token
+     * @return the principal of the token if it is valid, null otherwise
+     */
+    public static AuthPrincipal authenticate(String token) {
+        if (token == null) {
+            return null;
+        }
+        AuthPrincipal principal = cache.get(token);
+        if (principal == null) {
+            principal = verify(token);
+            if (principal != null) {
+                cache.put(token, principal);
+            }
+        }
+        return principal;
+    }
+
+    /**
+     * Verifies the signature and expiration of a JWT token without consulting the claims cache.
+     *
+     * @param token the JWT token
+     * @return the principal of the token if it is valid, null otherwise
+     */
+    public static AuthPrincipal verify(String token) {
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            return new AuthPrincipal(claims.getSubject(), Boolean.TRUE.equals(claims.get("isAdmin", Boolean.class)), claims.getExpiration().getTime());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of authentications served from the claims cache.
+     *
+     * @return the number of cache hits
+     */
+    public static long cacheHits() {
+        return cache.hits();
+    }
+
+    /**
+     * Returns the number of authentications that verified the token because it was not cached.
+     *
+     * @return the number of cache misses
+     */
+    public static long cacheMisses() {
+        return cache.misses();
+    }
+
+    /**
+     * Returns the number of tokens in the claims cache.
+     *
+     * @return the cache size
+     */
+    public static int cacheSize() {
+        return cache.size();
+    }
+
     /**
      * Checks if a user is an admin based on the JWT token.
      *
@@ -38,16 +104,8 @@ public class AuthService {
      * @return true if the user is an admin, false otherwise
      */
     public static boolean isAdmin(String token) {
-        try {
-            return (Boolean) Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody()
-                    .get("isAdmin");
-        } catch (Exception e) {
-            return false;
-        }
+        AuthPrincipal principal = authenticate(token);
+        return principal != null && principal.admin();
     }
 
     /**
@@ -57,15 +115,7 @@ public class AuthService {
      * @return the username if present, null otherwise
      */
     public static String getUsername(String token) {
-        try {
-            return Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody()
-                    .getSubject();
-        } catch (Exception e) {
-            return null;
-        }
+        AuthPrincipal principal = authenticate(token);
+        return principal != null ? principal.username() : null;
     }
 }
@@ -0,0 +1,136 @@
+package com.srdc.hw2.security;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache of verified token claims with approximate LRU eviction.
+ * Lookups and inserts go to a ConcurrentHashMap without a shared lock; an entry records the time it was last used.
+ * When the cache grows past its size, one thread drops the expired entries and then the least recently used ones
+ * down to nine tenths of the size, while other threads carry on without waiting for it. Entries are also dropped
+ * when found expired. Hits and misses are counted for the metrics.
+ */
+class ClaimsCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evicting = new ReentrantLock();
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * A cached principal and the time in milliseconds it was last returned.
+     */
+    private static final class Entry {
+        final AuthPrincipal principal;
+        volatile long lastUsed;
+
+        Entry(AuthPrincipal principal, long lastUsed) {
+            this.principal = principal;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    /**
+     * Creates a cache holding about the given number of tokens.
+     *
+     * @param maxSize the number of cached tokens above which entries are evicted
+     */
+    ClaimsCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cached principal of a token if it has not expired yet.
+     *
+     * @param token the JWT token
+     * @return the cached principal, or null if absent or expired
+     */
+    AuthPrincipal get(String token) {
+        Entry entry = entries.get(token);
+        long now = System.currentTimeMillis();
+        if (entry != null && entry.principal.expiresAt() <= now) {
+            entries.remove(token, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        // Only write the shared field when the clock moved, so concurrent hits mostly read it
+        if (entry.lastUsed != now) {
+            entry.lastUsed = now;
+        }
+        hits.increment();
+        return entry.principal;
+    }
+
+    /**
+     * Caches the principal of a verified token.
+     *
+     * @param token     the JWT token
+     * @param principal the principal built from its claims
+     */
+    void put(String token, AuthPrincipal principal) {
+        entries.put(token, new Entry(principal, System.currentTimeMillis()));
+        if (entries.size() > maxSize && evicting.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evicting.unlock();
+            }
+        }
+    }
+
+    /**
+     * Drops the expired entries, then the least recently used ones until nine tenths of the size are left.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.principal.expiresAt() <= now);
+        int excess = entries.size() - maxSize * 9 / 10;
+        if (excess <= 0) {
+            return;
+        }
+        // The times are copied first, as concurrent hits keep updating them
+        record Candidate(String token, Entry entry, long lastUsed) {}
+        List<Candidate> candidates = new ArrayList<>(entries.size());
+        entries.forEach((token, entry) -> candidates.add(new Candidate(token, entry, entry.lastUsed)));
+        candidates.sort(Comparator.comparingLong(Candidate::lastUsed));
+        for (Candidate candidate : candidates.subList(0, Math.min(excess, candidates.size()))) {
+            entries.remove(candidate.token(), candidate.entry());
+        }
+    }
+
+    /**
+     * Returns the number of lookups served from the cache.
+     *
+     * @return the number of hits
+     */
+    long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that had to verify the token.
+     *
+     * @return the number of misses
+     */
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of cached tokens.
+     *
+     * @return the number of cached tokens
+     */
+    int size() {
+        return entries.size();
+    }
+}
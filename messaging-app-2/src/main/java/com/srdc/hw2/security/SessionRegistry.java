@@ -0,0 +1,114 @@
+package com.srdc.hw2.security;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * SessionRegistry keeps track of the tokens of logged-in users.
+ * Lookups are lock-free hash lookups, tokens are indexed per user so that all sessions of a user
+ * can be revoked at once, and expired tokens are evicted periodically by a background sweeper.
+ * Registering a token and revoking a user's tokens both run inside a compute on the user's entry of the index,
+ * so a token registered concurrently with a revocation is either revoked by it or indexed for the next one.
+ */
+@Component
+public class SessionRegistry {
+
+    /**
+     * An active session: the owner of a token and the time its JWT expires.
+     *
+     * @param username  the username the token was issued to
+     * @param expiresAt the expiration time of the token in epoch milliseconds
+     */
+    record Session(String username, long expiresAt) {}
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> tokensByUser = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a newly issued token.
+     *
+     * @param token     the JWT token
+     * @param username  the username the token was issued to
+     * @param expiresAt the expiration time of the token in epoch milliseconds
+     */
+    public void register(String token, String username, long expiresAt) {
+        tokensByUser.compute(username, (user, tokens) -> {
+            if (tokens == null) {
+                tokens = ConcurrentHashMap.newKeySet();
+            }
+            tokens.add(token);
+            sessions.put(token, new Session(username, expiresAt));
+            return tokens;
+        });
+    }
+
+    /**
+     * Checks if a token belongs to an active, unexpired session.
+     *
+     * @param token the JWT token to check
+     * @return true if the session is active, false otherwise
+     */
+    public boolean isActive(String token) {
+        if (token == null) {
+            return false;
+        }
+        Session session = sessions.get(token);
+        return session != null && session.expiresAt() > System.currentTimeMillis();
+    }
+
+    /**
+     * Removes a single token, e.g. on logout.
+     *
+     * @param token the JWT token to remove
+     */
+    public void remove(String token) {
+        Session session = sessions.remove(token);
+        if (session != null) {
+            unindex(session.username(), token);
+        }
+    }
+
+    /**
+     * Removes all tokens issued to a user.
+     *
+     * @param username the username whose sessions should be removed
+     */
+    public void removeUser(String username) {
+        tokensByUser.computeIfPresent(username, (user, tokens) -> {
+            tokens.forEach(sessions::remove);
+            return null;
+        });
+    }
+
+    /**
+     * Returns the number of registered sessions, including expired ones not yet swept.
+     *
+     * @return the number of registered sessions
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Evicts sessions whose tokens have expired.
+     */
+    @Scheduled(fixedDelayString = "${security.session.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        sessions.forEach((token, session) -> {
+            if (session.expiresAt() <= now && sessions.remove(token, session)) {
+                unindex(session.username(), token);
+            }
+        });
+    }
+
+    private void unindex(String username, String token) {
+        tokensByUser.computeIfPresent(username, (user, tokens) -> {
+            tokens.remove(token);
+            return tokens.isEmpty() ? null : tokens;
+        });
+    }
+}
@@ -0,0 +1,282 @@
+package com.srdc.hw2.user;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+
+/**
+ * UserCache serves user lookups by username from memory.
+ * Users are kept in a bounded LRU map for at most the configured time to live, and callers always receive a copy
+ * they may modify. A Bloom filter over all usernames answers lookups of unknown usernames without a query.
+ * Usernames are registered by {@link UserCacheListener} before a user is inserted or renamed, so the filter never
+ * hides a stored user; writers evict cached users once their change or removal is committed. A user loaded while it is being
+ * changed is not cached. Users inserted without JPA, such as bulk loads over JDBC, are not seen by the listener; the
+ * filter must be rebuilt with {@link #rebuild()} after such a load, or their lookups fail until the next restart.
+ * The cache is local to this instance, like the session registry and the username index.
+ */
+@Component
+public class UserCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserCache.class);
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Value("${messaging.user-cache.max-size:10000}")
+    int maxSize;
+
+    @Value("${messaging.user-cache.ttl-ms:60000}")
+    long ttlMs;
+
+    @Value("${messaging.user-cache.expected-users:1000000}")
+    long expectedUsers;
+
+    @Value("${messaging.user-cache.false-positive-rate:0.01}")
+    double falsePositiveRate;
+
+    /**
+     * A cached user and the time in nanoseconds after which it must be loaded again.
+     */
+    private record Entry(User user, long expiresAt) {}
+
+    private Map<String, Entry> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder filtered = new LongAdder();
+    // Incremented by every eviction, so that a load that overlapped one does not cache what it read
+    private long evictions;
+    private volatile UsernameFilter filter;
+    // The usernames registered while the filter is rebuilt, added to the new filter before it replaces the old one
+    private List<String> registeredDuringRebuild;
+
+    /**
+     * Creates the cache and builds the Bloom filter.
+     */
+    @PostConstruct
+    public void init() {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        rebuild();
+    }
+
+    /**
+     * Builds the Bloom filter from the users table, sized for twice the current users if that is more than expected,
+     * and empties the cache. Lookups keep using the previous filter until the new one is complete, and usernames
+     * registered meanwhile are added to both.
+     */
+    public void rebuild() {
+        lock.lock();
+        try {
+            registeredDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        List<String> usernames = userRepository.findAllUsernames();
+        UsernameFilter usernameFilter = new UsernameFilter(Math.max(expectedUsers, 2L * usernames.size()), falsePositiveRate);
+        usernames.forEach(usernameFilter::add);
+        lock.lock();
+        try {
+            registeredDuringRebuild.forEach(usernameFilter::add);
+            registeredDuringRebuild = null;
+            filter = usernameFilter;
+            evictions++;
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+        logger.info("Built the username filter of {} users in {} KB", usernames.size(), usernameFilter.bitCount() / 8 / 1024);
+    }
+
+    /**
+     * Finds a user by username.
+     *
+     * @param username the username
+     * @return a copy of the user, or null if there is no such user
+     */
+    public User find(String username) {
+        if (username == null) {
+            return null;
+        }
+        if (!filter.mightContain(username)) {
+            filtered.increment();
+            return null;
+        }
+
+        long seen;
+        lock.lock();
+        try {
+            Entry entry = entries.get(username);
+            if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+                hits.increment();
+                return new User(entry.user());
+            }
+            entries.remove(username);
+            seen = evictions;
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        User user = userRepository.findByUsername(username);
+        if (user == null) {
+            return null;
+        }
+        lock.lock();
+        try {
+            if (evictions == seen) {
+                entries.put(username, new Entry(new User(user), System.nanoTime() + ttlMs * 1_000_000));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return user;
+    }
+
+    /**
+     * Checks if a user exists.
+     *
+     * @param username the username
+     * @return true if there is a user with the username
+     */
+    public boolean exists(String username) {
+        return find(username) != null;
+    }
+
+    /**
+     * Checks if a username is known to the Bloom filter, which may be wrong only by answering true.
+     *
+     * @param username the username
+     * @return false if there is certainly no user with the username
+     */
+    public boolean mightExist(String username) {
+        boolean known = filter.mightContain(username);
+        if (!known) {
+            filtered.increment();
+        }
+        return known;
+    }
+
+    /**
+     * Registers a username that is about to be stored, by a new user or by renaming a user.
+     * Must be called before the user is stored, so that no lookup misses the user once it is visible.
+     *
+     * @param username the username
+     */
+    public void register(String username) {
+        lock.lock();
+        try {
+            filter.add(username);
+            if (registeredDuringRebuild != null) {
+                registeredDuringRebuild.add(username);
+            }
+            evictions++;
+            entries.remove(username);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops a user that was changed or removed from the cache once the current transaction commits, or right away
+     * outside of a transaction. A lookup before the commit still sees the user and may cache it.
+     *
+     * @param username the username
+     */
+    public void evictAfterCommit(String username) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(username);
+                }
+            });
+        } else {
+            evict(username);
+        }
+    }
+
+    /**
+     * Drops a user that was changed or removed from the cache.
+     *
+     * @param username the username
+     */
+    public void evict(String username) {
+        lock.lock();
+        try {
+            evictions++;
+            entries.remove(username);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of lookups served from the cache.
+     *
+     * @return the number of hits
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups of possibly known usernames that queried the database.
+     *
+     * @return the number of misses
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of lookups the Bloom filter answered without a query.
+     *
+     * @return the number of unknown usernames ruled out
+     */
+    public long filtered() {
+        return filtered.sum();
+    }
+
+    /**
+     * Returns the share of lookups answered without a query, by the cache or the Bloom filter.
+     *
+     * @return the hit ratio between 0 and 1, or 0 before the first lookup
+     */
+    public double hitRatio() {
+        long answered = hits.sum() + filtered.sum();
+        long total = answered + misses.sum();
+        return total == 0 ? 0 : (double) answered / total;
+    }
+
+    /**
+     * Returns the number of cached users.
+     *
+     * @return the number of cached users
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
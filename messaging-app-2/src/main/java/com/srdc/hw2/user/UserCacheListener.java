@@ -0,0 +1,29 @@
+package com.srdc.hw2.user;
+
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import com.srdc.hw2.model.User;
+
+/**
+ * Registers the username of every user about to be inserted or updated with the user cache, whichever code stores
+ * it, so that the cache's Bloom filter knows the username before the user can be read.
+ * The cache is looked up on use, as listeners are created while the repositories it needs are still being set up.
+ */
+public class UserCacheListener {
+
+    @Autowired
+    ObjectProvider<UserCache> userCache;
+
+    /**
+     * Registers the username of a user that is about to be written.
+     *
+     * @param user the user
+     */
+    @PrePersist
+    @PreUpdate
+    public void register(User user) {
+        userCache.getObject().register(user.getUsername());
+    }
+}
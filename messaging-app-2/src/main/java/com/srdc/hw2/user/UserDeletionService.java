@@ -0,0 +1,215 @@
+package com.srdc.hw2.user;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.srdc.hw2.archive.MessageArchiveService;
+import com.srdc.hw2.conversation.ConversationService;
+import com.srdc.hw2.mailbox.MailboxCounterService;
+import com.srdc.hw2.model.UserTombstone;
+import com.srdc.hw2.repository.MessageRepository;
+import com.srdc.hw2.repository.MessageTermRepository;
+import com.srdc.hw2.repository.UserRepository;
+import com.srdc.hw2.repository.UserTombstoneRepository;
+
+/**
+ * UserDeletionService removes users without rewriting their messages in the request.
+ * Removing a user deletes its row and leaves a tombstone; a background job then replaces the username with the
+ * removed-user placeholder in messages and index postings, one bounded chunk per short transaction, so that no
+ * transaction holds many row locks and concurrent sends are not blocked. Segments of other users' archives holding
+ * its messages are rewritten the same way, a few segments per transaction. An instance claims a tombstone for a lease
+ * renewed with every chunk, so each removed user is rewritten by one instance at a time.
+ */
+@Service
+public class UserDeletionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDeletionService.class);
+
+    /**
+     * The number of archive segments rewritten per transaction; a segment holds up to an archive chunk of messages.
+     */
+    private static final int ARCHIVE_CHUNK_SIZE = 10;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    UserTombstoneRepository userTombstoneRepository;
+
+    @Autowired
+    MessageRepository messageRepository;
+
+    @Autowired
+    MessageTermRepository messageTermRepository;
+
+    @Autowired
+    MailboxCounterService mailboxCounterService;
+
+    @Autowired
+    ConversationService conversationService;
+
+    @Autowired
+    MessageArchiveService messageArchiveService;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Value("${messaging.user-deletion.chunk-size:1000}")
+    int chunkSize;
+
+    @Value("${messaging.user-deletion.chunk-pause-ms:10}")
+    long chunkPause;
+
+    @Value("${messaging.user-deletion.lease-ms:60000}")
+    long leaseMs;
+
+    private final String owner = UUID.randomUUID().toString();
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Removes a user and leaves a tombstone for the background rewrite of its messages.
+     *
+     * @param username the username of the user to remove
+     */
+    @Transactional
+    public void remove(String username) {
+        userRepository.deleteByUsername(username);
+        mailboxCounterService.remove(username);
+        conversationService.remove(username);
+        messageArchiveService.remove(username);
+        userTombstoneRepository.save(new UserTombstone(username, new Timestamp(System.currentTimeMillis())));
+    }
+
+    /**
+     * Checks if the messages of a removed user with the given username are still being rewritten.
+     * Such a username cannot be given to a new user, who would otherwise inherit those messages.
+     *
+     * @param username the username to check
+     * @return true if a rewrite is pending, false otherwise
+     */
+    public boolean isPending(String username) {
+        return userTombstoneRepository.existsById(username);
+    }
+
+    /**
+     * Rewrites the messages of all removed users that no other instance is rewriting, oldest removal first.
+     */
+    @Scheduled(fixedDelayString = "${messaging.user-deletion.interval-ms:1000}", initialDelayString = "${messaging.user-deletion.interval-ms:1000}")
+    public void rewritePending() {
+        for (UserTombstone tombstone : userTombstoneRepository.findAllOldestFirst()) {
+            if (!transactionTemplate.execute(status -> claim(tombstone.getUsername()))) {
+                continue;
+            }
+            try {
+                rewrite(tombstone.getUsername());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Rewriting the messages of removed user {} failed, retrying later", tombstone.getUsername(), e);
+            }
+        }
+    }
+
+    /**
+     * Claims the tombstone of a removed user for this instance or renews the claim, in the current transaction.
+     */
+    private boolean claim(String username) {
+        long now = System.currentTimeMillis();
+        return userTombstoneRepository.claim(username, owner, new Timestamp(now), new Timestamp(now + leaseMs)) == 1;
+    }
+
+    /**
+     * Renews the claim on the tombstone of a removed user, in the current transaction.
+     *
+     * @throws IllegalStateException if another instance took the claim over
+     */
+    private void renewClaim(String username) {
+        if (!claim(username)) {
+            throw new IllegalStateException("The claim on removed user " + username + " expired and was taken over");
+        }
+    }
+
+    /**
+     * Rewrites the messages and postings of a removed user chunk by chunk, then deletes its tombstone.
+     */
+    private void rewrite(String username) throws InterruptedException {
+        long rows = rewriteChunks(username, messageRepository::findIdsByUser, this::anonymizeMessages)
+                + rewriteChunks(username, messageTermRepository::findIdsByUser, messageTermRepository::anonymize)
+                + rewriteArchive(username);
+        transactionTemplate.executeWithoutResult(status -> userTombstoneRepository.deleteClaimed(username, owner));
+        logger.info("Rewrote {} rows of removed user {}", rows, username);
+    }
+
+    /**
+     * Rewrites a chunk of messages and advances the mailbox versions of the other users taking part in them,
+     * whose listings now show the placeholder.
+     */
+    private int anonymizeMessages(String username, Collection<Long> ids) {
+        int updated = messageRepository.anonymize(username, ids);
+        mailboxCounterService.touch(messageRepository.findParticipants(ids));
+        return updated;
+    }
+
+    /**
+     * Rewrites the archive segments holding messages of a removed user, each chunk of segments in its own
+     * transaction that also renews the claim, until none are left.
+     */
+    private long rewriteArchive(String username) throws InterruptedException {
+        long segments = 0;
+        int updated;
+        do {
+            updated = transactionTemplate.execute(status -> {
+                renewClaim(username);
+                return messageArchiveService.anonymize(username, ARCHIVE_CHUNK_SIZE);
+            });
+            segments += updated;
+            if (updated == ARCHIVE_CHUNK_SIZE && chunkPause > 0) {
+                Thread.sleep(chunkPause);
+            }
+        } while (updated == ARCHIVE_CHUNK_SIZE);
+        return segments;
+    }
+
+    /**
+     * Repeatedly looks up a chunk of row ids through the user's sender and receiver indexes and rewrites those
+     * rows by primary key, each chunk in its own transaction that also renews the claim, until no rows are left.
+     */
+    private long rewriteChunks(String username, BiFunction<String, Pageable, List<Long>> findIds,
+                               BiFunction<String, Collection<Long>, Integer> anonymize) throws InterruptedException {
+        Pageable chunk = PageRequest.of(0, chunkSize);
+        long rows = 0;
+        int updated;
+        do {
+            updated = transactionTemplate.execute(status -> {
+                renewClaim(username);
+                List<Long> ids = findIds.apply(username, chunk);
+                return ids.isEmpty() ? 0 : anonymize.apply(username, ids);
+            });
+            rows += updated;
+            if (updated == chunkSize && chunkPause > 0) {
+                Thread.sleep(chunkPause);
+            }
+        } while (updated == chunkSize);
+        return rows;
+    }
+}
@@ -0,0 +1,339 @@
+package com.srdc.hw2.user;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.srdc.hw2.dto.UserImportError;
+import com.srdc.hw2.dto.UserImportReport;
+import com.srdc.hw2.mailbox.MailboxCounterService;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+import com.srdc.hw2.repository.UserTombstoneRepository;
+import com.srdc.hw2.search.UsernameIndex;
+
+/**
+ * UserImportService creates users from a CSV or NDJSON upload while it is read.
+ * Rows are validated as they arrive and collected into batches; the usernames of a batch are checked against
+ * existing and removed users with one query each, and the accepted users are inserted with JDBC batching in one
+ * transaction per batch, together with their mailbox counters, as for users created one at a time.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LENGTH = 255;
+    private static final List<String> COLUMNS = List.of("username", "password", "name", "surname", "birthdate", "gender", "email", "location", "admin");
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    UserTombstoneRepository userTombstoneRepository;
+
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    @Autowired
+    MailboxCounterService mailboxCounterService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Value("${messaging.user-import.batch-size:1000}")
+    int batchSize;
+
+    @Value("${messaging.user-import.max-errors:1000}")
+    int maxErrors;
+
+    private TransactionTemplate transactionTemplate;
+    private ObjectReader userReader;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        userReader = objectMapper.readerFor(User.class);
+    }
+
+    /**
+     * Checks if an import format is supported.
+     *
+     * @param format the format ("ndjson" or "csv")
+     * @return true if the format can be read
+     */
+    public static boolean isFormat(String format) {
+        return "ndjson".equals(format) || "csv".equals(format);
+    }
+
+    /**
+     * Creates the users of an upload. NDJSON rows are user objects as accepted by the create user endpoint;
+     * CSV uploads start with a header naming some of the columns username, password, name, surname, birthdate
+     * (yyyy-mm-dd), gender, email, location and admin (true or false), in any order. Blank lines are skipped.
+     *
+     * @param in     the upload
+     * @param format the format ("ndjson" or "csv")
+     * @return the number of users created and the rejected rows
+     * @throws IOException              if reading the upload fails
+     * @throws IllegalArgumentException if the CSV header is missing or names an unknown column
+     */
+    public UserImportReport importUsers(InputStream in, String format) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        Report report = new Report();
+        List<Row> batch = new ArrayList<>(batchSize);
+        // Usernames seen earlier in the upload; a batch query cannot catch a duplicate that is in another batch
+        Set<String> seen = new HashSet<>();
+
+        long line = 0;
+        String[] header = null;
+        if ("csv".equals(format)) {
+            header = header(reader.readLine());
+            line++;
+        }
+        for (String text = reader.readLine(); text != null; text = reader.readLine()) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            User user;
+            try {
+                user = header != null ? fromCsv(header, text) : userReader.readValue(text);
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                String reason = e instanceof JsonProcessingException json ? json.getOriginalMessage() : e.getMessage();
+                report.reject(line, null, "row cannot be read: " + reason);
+                continue;
+            }
+            String invalid = validate(user);
+            if (invalid != null) {
+                report.reject(line, user.getUsername(), invalid);
+            } else if (!seen.add(user.getUsername())) {
+                report.reject(line, user.getUsername(), "username appears earlier in the import");
+            } else {
+                batch.add(new Row(line, user));
+                if (batch.size() == batchSize) {
+                    store(batch, report);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            store(batch, report);
+        }
+        // Rows rejected by the batch checks are reported after those rejected while reading
+        report.errors.sort(Comparator.comparingLong(UserImportError::line));
+        return new UserImportReport(report.imported, report.rejected, report.errors);
+    }
+
+    /**
+     * Rejects the rows of a batch whose usernames are taken and inserts the others, falling back to one
+     * transaction per user if the batch fails, e.g. because a username was taken since it was checked.
+     */
+    private void store(List<Row> batch, Report report) {
+        List<String> usernames = new ArrayList<>(batch.size());
+        batch.forEach(row -> usernames.add(row.user().getUsername()));
+        Set<String> taken = userRepository.findExistingUsernames(usernames);
+        Set<String> pending = userTombstoneRepository.findPendingUsernames(usernames);
+
+        List<Row> accepted = new ArrayList<>(batch.size());
+        for (Row row : batch) {
+            String username = row.user().getUsername();
+            if (taken.contains(username)) {
+                report.reject(row.line(), username, "username is taken");
+            } else if (pending.contains(username)) {
+                report.reject(row.line(), username, "username belongs to a removed user whose messages are being rewritten");
+            } else {
+                accepted.add(row);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        List<User> users = new ArrayList<>(accepted.size());
+        accepted.forEach(row -> users.add(row.user()));
+        try {
+            insert(users);
+            users.forEach(user -> usernameIndex.add(user.getUsername()));
+            report.imported += users.size();
+        } catch (RuntimeException batchFailure) {
+            logger.warn("Import of {} users failed, retrying them one by one", users.size(), batchFailure);
+            for (Row row : accepted) {
+                // The rolled back batch assigned ids, so store a fresh copy
+                User user = copy(row.user());
+                try {
+                    insert(List.of(user));
+                    usernameIndex.add(user.getUsername());
+                    report.imported++;
+                } catch (DataIntegrityViolationException e) {
+                    report.reject(row.line(), user.getUsername(), "username is taken");
+                } catch (RuntimeException e) {
+                    logger.error("Could not import {}", user, e);
+                    report.reject(row.line(), user.getUsername(), "user could not be stored");
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts users and creates their mailbox counters in one transaction, sending the users in JDBC batches as
+     * large as an import batch.
+     */
+    private void insert(List<User> users) {
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            userRepository.saveAll(users);
+            mailboxCounterService.createAll(users.stream().map(User::getUsername).toList());
+        });
+    }
+
+    /**
+     * Reads the column names of a CSV upload.
+     */
+    private static String[] header(String text) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("CSV header is missing");
+        }
+        String[] header = parseCsv(text).toArray(String[]::new);
+        for (int i = 0; i < header.length; i++) {
+            header[i] = header[i].trim().toLowerCase(Locale.ROOT);
+            if (!COLUMNS.contains(header[i])) {
+                throw new IllegalArgumentException("Unknown CSV column: " + header[i]);
+            }
+        }
+        return header;
+    }
+
+    /**
+     * Builds a user from a CSV record; empty fields are left unset.
+     */
+    private static User fromCsv(String[] header, String text) {
+        List<String> fields = parseCsv(text);
+        if (fields.size() != header.length) {
+            throw new IllegalArgumentException("expected " + header.length + " fields but found " + fields.size());
+        }
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            if (!fields.get(i).isEmpty()) {
+                values.put(header[i], fields.get(i));
+            }
+        }
+        String birthdate = values.get("birthdate");
+        String admin = values.get("admin");
+        if (admin != null && !"true".equalsIgnoreCase(admin) && !"false".equalsIgnoreCase(admin)) {
+            throw new IllegalArgumentException("admin must be true or false");
+        }
+        return new User(values.get("username"), values.get("password"), values.get("name"), values.get("surname"),
+                birthdate != null ? Date.valueOf(birthdate) : null, values.get("gender"), values.get("email"),
+                values.get("location"), Boolean.parseBoolean(admin));
+    }
+
+    /**
+     * Splits a CSV record into its fields. Fields may be quoted as RFC 4180 describes, but a record must fit on one line.
+     */
+    private static List<String> parseCsv(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Returns why a user cannot be created, or null if it can.
+     */
+    private static String validate(User user) {
+        if (user.getUsername() == null || user.getUsername().isBlank()) {
+            return "username is required";
+        }
+        if (user.getPassword() == null || user.getPassword().isEmpty()) {
+            return "password is required";
+        }
+        String[][] fields = {{"username", user.getUsername()}, {"password", user.getPassword()}, {"name", user.getName()},
+                {"surname", user.getSurname()}, {"gender", user.getGender()}, {"email", user.getEmail()}, {"location", user.getLocation()}};
+        for (String[] field : fields) {
+            if (field[1] != null && field[1].length() > MAX_LENGTH) {
+                return field[0] + " is longer than " + MAX_LENGTH + " characters";
+            }
+        }
+        return null;
+    }
+
+    private static User copy(User user) {
+        return new User(user.getUsername(), user.getPassword(), user.getName(), user.getSurname(), user.getBirthdate(),
+                user.getGender(), user.getEmail(), user.getLocation(), user.isAdmin());
+    }
+
+    private record Row(long line, User user) {}
+
+    /**
+     * Counts the outcome of an import, keeping the first rejected rows.
+     */
+    private class Report {
+
+        long imported;
+        long rejected;
+        final List<UserImportError> errors = new ArrayList<>();
+
+        void reject(long line, String username, String reason) {
+            rejected++;
+            if (errors.size() < maxErrors) {
+                errors.add(new UserImportError(line, username, reason));
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.srdc.hw2.user;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over usernames: a username that was never added is reported as absent with a probability of
+ * 1 minus the false positive rate, without looking it up anywhere. Names cannot be removed, so removed and renamed
+ * users are still reported as possibly present and checked against the database.
+ * Bits are set with compare-and-set, so names are added and tested without locking.
+ */
+class UsernameFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Creates a filter sized for a number of usernames at a false positive rate.
+     *
+     * @param expectedNames     the number of usernames the filter should hold
+     * @param falsePositiveRate the probability that a name that was not added is reported as present, at that size
+     */
+    UsernameFilter(long expectedNames, double falsePositiveRate) {
+        long n = Math.max(expectedNames, 1);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray(Math.toIntExact((m + 63) / 64));
+        this.bitCount = bits.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    /**
+     * Adds a username.
+     *
+     * @param username the username
+     */
+    void add(String username) {
+        long hash = hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.weakCompareAndSetVolatile(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    /**
+     * Checks if a username may have been added.
+     *
+     * @param username the username
+     * @return false if the username was certainly not added
+     */
+    boolean mightContain(String username) {
+        long hash = hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the size of the filter.
+     *
+     * @return the number of bits
+     */
+    long bitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Hashes the characters of a username with 64-bit FNV-1a, finished with the MurmurHash3 mix so that both
+     * halves of the result are well distributed.
+     */
+    private static long hash(String username) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < username.length(); i++) {
+            hash ^= username.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,7 @@
+-- Postings carry the time their message was sent, so a keyset content search can walk the postings of one term
+-- newest first from the cursor and stop after a page, instead of aggregating every posting of the mailbox.
+
+ALTER TABLE message_terms ADD COLUMN IF NOT EXISTS timestamp timestamp(6);
+
+UPDATE message_terms SET timestamp = (SELECT m.timestamp FROM messages m WHERE m.id = message_terms.message_id)
+WHERE timestamp IS NULL;
@@ -0,0 +1,6 @@
+-- Removed users are rewritten by one instance at a time: the instance claims a tombstone for a lease that it renews
+-- with every chunk, and other instances skip it until the lease has expired.
+
+ALTER TABLE user_tombstones ADD COLUMN IF NOT EXISTS claimed_by varchar(64);
+
+ALTER TABLE user_tombstones ADD COLUMN IF NOT EXISTS claimed_until timestamp(6);
@@ -0,0 +1,15 @@
+-- The users taking part in the messages of each archive segment, so the segments holding a user's conversation
+-- with a partner, or the messages of a removed user, are found without decoding the owner's whole archive.
+-- Rows are deleted with their segment.
+
+CREATE TABLE IF NOT EXISTS message_archive_participants (
+    participant varchar(255) NOT NULL,
+    username varchar(255) NOT NULL,
+    month_start date NOT NULL,
+    first_id bigint NOT NULL,
+    PRIMARY KEY (participant, username, month_start, first_id),
+    FOREIGN KEY (username, month_start, first_id) REFERENCES message_archive (username, month_start, first_id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_message_archive_participants_segment
+    ON message_archive_participants (username, month_start, first_id);
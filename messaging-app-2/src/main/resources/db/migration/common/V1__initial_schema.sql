@@ -0,0 +1,28 @@
+-- Schema of the first release, previously created by Hibernate. Existing databases are baselined at this version.
+
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE IF NOT EXISTS messages_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS users (
+    birthdate date,
+    is_admin boolean,
+    id bigint NOT NULL,
+    email varchar(255),
+    gender varchar(255),
+    location varchar(255),
+    name varchar(255),
+    password varchar(255),
+    surname varchar(255),
+    username varchar(255) UNIQUE,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS messages (
+    id bigint NOT NULL,
+    timestamp timestamp(6),
+    content varchar(255),
+    receiver varchar(255),
+    sender varchar(255),
+    PRIMARY KEY (id)
+);
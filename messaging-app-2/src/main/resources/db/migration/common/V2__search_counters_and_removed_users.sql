@@ -0,0 +1,36 @@
+-- Full-text postings, read flags, mailbox counters and removed users.
+-- Written to also apply to databases where Hibernate already created some of these objects.
+
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS is_read boolean DEFAULT FALSE NOT NULL;
+
+CREATE SEQUENCE IF NOT EXISTS message_terms_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS message_terms (
+    frequency integer,
+    id bigint NOT NULL,
+    message_id bigint,
+    term varchar(64),
+    receiver varchar(255),
+    sender varchar(255),
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_message_terms_receiver_term ON message_terms (receiver, term);
+
+CREATE INDEX IF NOT EXISTS idx_message_terms_sender_term ON message_terms (sender, term);
+
+CREATE INDEX IF NOT EXISTS idx_message_terms_message_id ON message_terms (message_id);
+
+CREATE TABLE IF NOT EXISTS mailbox_counters (
+    inbox bigint,
+    outbox bigint,
+    unread bigint,
+    username varchar(255) NOT NULL,
+    PRIMARY KEY (username)
+);
+
+CREATE TABLE IF NOT EXISTS user_tombstones (
+    removed_at timestamp(6),
+    username varchar(255) NOT NULL,
+    PRIMARY KEY (username)
+);
@@ -0,0 +1,20 @@
+-- Conversations between two users. Each message stores its participants as an ordered pair, so the messages
+-- exchanged by two users in either direction are one range of the participants index (added by V4.1).
+
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS participant_low varchar(255);
+
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS participant_high varchar(255);
+
+-- One row per user and conversation partner with the last message exchanged, so a user's conversations are
+-- listed from one range of the index below instead of from the whole mailbox.
+
+CREATE TABLE IF NOT EXISTS conversations (
+    username varchar(255) NOT NULL,
+    partner varchar(255) NOT NULL,
+    last_message_id bigint,
+    last_timestamp timestamp(6),
+    PRIMARY KEY (username, partner)
+);
+
+CREATE INDEX IF NOT EXISTS idx_conversations_username_last
+    ON conversations (username, last_timestamp DESC, last_message_id DESC);
@@ -0,0 +1,18 @@
+-- Conversation lists of the existing messages: the last message of every pair of participants,
+-- stored once for each of them.
+
+INSERT INTO conversations (username, partner, last_message_id, last_timestamp)
+SELECT p.participant_low, p.participant_high, m.id, m.timestamp
+FROM (SELECT DISTINCT participant_low, participant_high FROM messages WHERE participant_low IS NOT NULL) p
+JOIN messages m ON m.id = (
+    SELECT l.id FROM messages l
+    WHERE l.participant_low = p.participant_low AND l.participant_high = p.participant_high
+    ORDER BY l.timestamp DESC, l.id DESC
+    LIMIT 1)
+WHERE NOT EXISTS (SELECT 1 FROM conversations c WHERE c.username = p.participant_low AND c.partner = p.participant_high);
+
+INSERT INTO conversations (username, partner, last_message_id, last_timestamp)
+SELECT c.partner, c.username, c.last_message_id, c.last_timestamp
+FROM conversations c
+WHERE c.username <> c.partner
+  AND NOT EXISTS (SELECT 1 FROM conversations r WHERE r.username = c.partner AND r.partner = c.username);
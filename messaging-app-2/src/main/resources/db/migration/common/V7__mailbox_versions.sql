@@ -0,0 +1,10 @@
+-- Mailbox versions. Every change to a user's mailbox increments its version, and each message records the
+-- version it was given in its receiver's and its sender's mailbox, so a client holding a version can be
+-- answered from the counter alone when nothing changed and sent exactly the newer messages otherwise.
+-- The messages are read by version through the indexes of V7.1.
+
+ALTER TABLE mailbox_counters ADD COLUMN IF NOT EXISTS version bigint DEFAULT 0 NOT NULL;
+
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS receiver_version bigint;
+
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS sender_version bigint;
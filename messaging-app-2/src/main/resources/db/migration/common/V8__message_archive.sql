@@ -0,0 +1,15 @@
+-- Cold storage for old messages. The archiver moves messages older than the hot window out of the messages
+-- table, month by month, into compressed segments: each segment holds the messages a user sent or received in one
+-- month and is keyed by its owner, the month and the id of its first message, so a month is read with one range
+-- of the primary key. The archiver finds the oldest messages through the timestamp index of V8.1.
+
+CREATE TABLE IF NOT EXISTS message_archive (
+    username varchar(255) NOT NULL,
+    month_start date NOT NULL,
+    first_id bigint NOT NULL,
+    message_count integer NOT NULL,
+    data bytea NOT NULL,
+    PRIMARY KEY (username, month_start, first_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_message_archive_month ON message_archive (month_start);
@@ -0,0 +1,12 @@
+-- Progress of the full-text index backfill of messages stored before the index existed. Messages stored since are
+-- indexed when they are sent, so once the backfill has completed the messages table is not scanned again at startup.
+
+CREATE TABLE IF NOT EXISTS search_backfill (
+    id integer NOT NULL,
+    indexed_through bigint NOT NULL,
+    completed boolean NOT NULL,
+    PRIMARY KEY (id)
+);
+
+INSERT INTO search_backfill (id, indexed_through, completed) SELECT 1, 0, FALSE
+WHERE NOT EXISTS (SELECT 1 FROM search_backfill WHERE id = 1);
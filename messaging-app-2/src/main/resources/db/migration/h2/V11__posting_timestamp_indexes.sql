@@ -0,0 +1,9 @@
+-- Mailbox content searches read the postings of a term newest first; the new indexes also serve lookups by term alone.
+
+CREATE INDEX IF NOT EXISTS idx_message_terms_receiver_term_timestamp ON message_terms (receiver, term, timestamp DESC, message_id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_message_terms_sender_term_timestamp ON message_terms (sender, term, timestamp DESC, message_id DESC);
+
+DROP INDEX IF EXISTS idx_message_terms_receiver_term;
+
+DROP INDEX IF EXISTS idx_message_terms_sender_term;
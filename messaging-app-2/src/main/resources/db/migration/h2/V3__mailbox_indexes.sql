@@ -0,0 +1,6 @@
+-- Mailbox listings filter on one side of the conversation and order by time, newest first.
+-- H2 has no expression indexes, so the lowercase lookup indexes of the PostgreSQL migration have no counterpart here.
+
+CREATE INDEX IF NOT EXISTS idx_messages_receiver_timestamp ON messages (receiver, timestamp DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_messages_sender_timestamp ON messages (sender, timestamp DESC, id DESC);
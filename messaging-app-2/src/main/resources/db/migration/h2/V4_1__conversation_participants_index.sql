@@ -0,0 +1,4 @@
+-- The messages exchanged by two users in either direction, newest first.
+
+CREATE INDEX IF NOT EXISTS idx_messages_participants_timestamp
+    ON messages (participant_low, participant_high, timestamp DESC, id DESC);
@@ -0,0 +1,4 @@
+-- Participants of the existing messages. H2 compares strings like Java's String.compareTo, as the application does.
+
+UPDATE messages SET participant_low = LEAST(sender, receiver), participant_high = GREATEST(sender, receiver)
+WHERE participant_low IS NULL AND sender IS NOT NULL AND receiver IS NOT NULL;
@@ -0,0 +1,10 @@
+-- Mailbox content searches read the postings of a term newest first; the new indexes also serve lookups by term alone,
+-- so the old ones are dropped.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_message_terms_receiver_term_timestamp ON message_terms (receiver, term, timestamp DESC, message_id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_message_terms_sender_term_timestamp ON message_terms (sender, term, timestamp DESC, message_id DESC);
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_message_terms_receiver_term;
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_message_terms_sender_term;
@@ -0,0 +1,26 @@
+-- Mailbox listings filter on one side of the conversation and order by time, newest first; the field searches
+-- match that side case-insensitively, served by the lowercase indexes.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_messages_receiver_timestamp ON messages (receiver, timestamp DESC, id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_messages_sender_timestamp ON messages (sender, timestamp DESC, id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_messages_receiver_lower ON messages (LOWER(receiver), timestamp DESC, id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_messages_sender_lower ON messages (LOWER(sender), timestamp DESC, id DESC);
+
+-- The user search matches lowercase substrings.
+-- Trigram indexes on the lowercase values serve LIKE '%value%', a plain index on the lowercase value serves equality.
+-- The pg_trgm extension is installed by a database owner before migrating (see Database Setup in the README).
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_username_lower_trgm ON users USING gin (LOWER(username) gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_name_lower_trgm ON users USING gin (LOWER(name) gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_surname_lower_trgm ON users USING gin (LOWER(surname) gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_email_lower_trgm ON users USING gin (LOWER(email) gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_location_lower_trgm ON users USING gin (LOWER(location) gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_gender_lower ON users (LOWER(gender));
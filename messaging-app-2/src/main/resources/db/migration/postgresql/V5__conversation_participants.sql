@@ -0,0 +1,6 @@
+-- Participants of the existing messages. The application orders them by code point, which is the order of the
+-- C collation, not of the database's default collation.
+
+UPDATE messages SET participant_low = LEAST(sender COLLATE "C", receiver COLLATE "C"),
+                    participant_high = GREATEST(sender COLLATE "C", receiver COLLATE "C")
+WHERE participant_low IS NULL AND sender IS NOT NULL AND receiver IS NOT NULL;
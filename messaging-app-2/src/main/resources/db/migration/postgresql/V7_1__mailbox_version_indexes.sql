@@ -0,0 +1,5 @@
+-- The messages a user received or sent after a version of the user's mailbox.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_messages_receiver_version ON messages (receiver, receiver_version);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_messages_sender_version ON messages (sender, sender_version);
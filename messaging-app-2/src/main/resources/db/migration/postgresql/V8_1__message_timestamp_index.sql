@@ -0,0 +1,3 @@
+-- The oldest messages, which the archiver moves to cold storage.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_messages_timestamp ON messages (timestamp, id);
@@ -2,6 +2,8 @@ const apiUrl = "http://localhost:8080/api"; // Base URL for the API.
 let authToken = ""; // Authentication token for the user.
 let isAdmin = false; // Boolean to check if the user is an admin.
 const pageSize = 10; // Number of items per page.
+let messageStream = null; // Controller used to close the server-sent event stream of incoming messages.
+let lastEventId = null; // Mailbox version of the last message received over the stream, used to resume after reconnecting.
 
 /**
  * Handles the login process for the user.
@@ -32,6 +34,7 @@ function login() {
 
                 showMenu(decodedToken.isAdmin);
                 getInbox();
+                subscribeToMessages();
             } else {
                 alert("Login failed");
             }
@@ -45,6 +48,7 @@ function login() {
  * Sends a POST request to the logout endpoint and clears the stored auth token.
  */
 function logout() {
+    unsubscribeFromMessages();
     const xhr = new XMLHttpRequest();
     xhr.open("POST", `${apiUrl}/user/logout`, true);
     xhr.setRequestHeader("Authorization", authToken);
@@ -74,11 +78,98 @@ window.onload = function() {
         isAdmin = decodedToken.isAdmin;
         showMenu(isAdmin);
         getInbox();
+        subscribeToMessages();
     } else {
         document.querySelector(".login-form").style.display = "block";
     }
 };
 
+/**
+ * Opens a server-sent event stream of incoming messages.
+ * New messages refresh the first inbox page while it is displayed. The stream reconnects after errors and
+ * resumes from the last received message.
+ */
+function subscribeToMessages() {
+    unsubscribeFromMessages();
+    const controller = new AbortController();
+    messageStream = controller;
+
+    const headers = { "Authorization": authToken };
+    if (lastEventId !== null) {
+        headers["Last-Event-ID"] = lastEventId;
+    }
+
+    fetch(`${apiUrl}/message/stream`, { headers, signal: controller.signal })
+        .then(async response => {
+            if (response.status === 401) {
+                messageStream = null; // The session is gone; do not reconnect.
+                return;
+            }
+            if (!response.ok) {
+                throw new Error(`Stream failed with status ${response.status}`);
+            }
+            const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+            let buffer = "";
+            while (true) {
+                const { value, done } = await reader.read();
+                if (done) {
+                    break;
+                }
+                buffer += value;
+                const events = buffer.split("\n\n");
+                buffer = events.pop();
+                events.forEach(handleStreamEvent);
+            }
+        })
+        .catch(() => {})
+        .finally(() => {
+            if (messageStream === controller && authToken) {
+                setTimeout(() => {
+                    if (messageStream === controller && authToken) {
+                        subscribeToMessages();
+                    }
+                }, 3000);
+            }
+        });
+}
+
+/**
+ * Closes the stream of incoming messages.
+ */
+function unsubscribeFromMessages() {
+    if (messageStream) {
+        messageStream.abort();
+        messageStream = null;
+    }
+}
+
+/**
+ * Handles a single server-sent event of the message stream.
+ * @param {string} event - The raw event text.
+ */
+function handleStreamEvent(event) {
+    let id = null;
+    let data = null;
+    event.split("\n").forEach(line => {
+        if (line.startsWith("id:")) {
+            id = line.substring(3).trim();
+        } else if (line.startsWith("data:")) {
+            data = line.substring(5);
+        }
+    });
+    if (data === null) {
+        return;
+    }
+    lastEventId = id;
+
+    const inboxVisible = document.getElementById("inbox-header").style.display === "block";
+    const onFirstPage = ["", "0"].includes(document.getElementById("page-select").value);
+    const unfiltered = !document.getElementById("inbox-filter-value").value;
+    if (inboxVisible && onFirstPage && unfiltered) {
+        getInbox();
+    }
+}
+
 /**
  * Displays the menu based on the user's admin status.
  * @param {boolean} isAdmin - Indicates if the user is an admin.
@@ -2,8 +2,10 @@ package com.srdc.hw2;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
 @SpringBootTest
+@ActiveProfiles("test")
 class Hw2ApplicationTests {
 
 	@Test
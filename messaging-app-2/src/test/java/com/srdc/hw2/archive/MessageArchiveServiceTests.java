@@ -0,0 +1,118 @@
+package com.srdc.hw2.archive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import com.srdc.hw2.conversation.ConversationService;
+import com.srdc.hw2.dto.ArchiveMonth;
+import com.srdc.hw2.dto.ConversationSummary;
+import com.srdc.hw2.dto.MessageCursor;
+import com.srdc.hw2.dto.MessageView;
+import com.srdc.hw2.export.MailboxExportService;
+import com.srdc.hw2.ingest.MessageIngestionService;
+import com.srdc.hw2.mailbox.MailboxCounterService;
+import com.srdc.hw2.model.MailboxCounter;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.repository.MessageRepository;
+import com.srdc.hw2.user.UserDeletionService;
+
+@SpringBootTest(properties = "messaging.archive.chunk-size=2")
+@ActiveProfiles("test")
+class MessageArchiveServiceTests {
+
+	@Autowired
+	MessageArchiveService messageArchiveService;
+
+	@Autowired
+	MessageIngestionService messageIngestionService;
+
+	@Autowired
+	MailboxCounterService mailboxCounterService;
+
+	@Autowired
+	ConversationService conversationService;
+
+	@Autowired
+	MessageRepository messageRepository;
+
+	@Autowired
+	MailboxExportService mailboxExportService;
+
+	@Autowired
+	UserDeletionService userDeletionService;
+
+	@Test
+	void oldMessagesMoveToMonthlySegmentsAndStayReadable() throws Exception {
+		mailboxCounterService.get("uma");
+		mailboxCounterService.get("vic");
+		List<Message> old = messageIngestionService.write(List.of(
+				message("vic", "uma", "Hello, \"Uma\"", "1999-01-05 10:00:00"),
+				message("uma", "vic", "hello back", "1999-01-06 10:00:00"),
+				message("walt", "uma", "see you", "1999-02-10 00:00:00")));
+		Message recent = messageIngestionService.write(List.of(message("vic", "uma", "recent", null))).get(0);
+
+		assertTrue(messageArchiveService.archiveBefore(LocalDate.of(2000, 1, 1)) >= 3);
+
+		old.forEach(message -> assertTrue(messageRepository.findById(message.getId()).isEmpty()));
+		assertTrue(messageRepository.findById(recent.getId()).isPresent());
+		MailboxCounter uma = mailboxCounterService.get("uma");
+		assertEquals(1, uma.getInbox());
+		assertEquals(0, uma.getOutbox());
+		assertEquals(1, uma.getUnread());
+		List<ConversationSummary> conversations = conversationService.findConversations("uma", MessageCursor.FIRST, 10);
+		assertEquals(List.of("vic", "walt"), conversations.stream().map(ConversationSummary::partner).toList());
+		assertEquals("see you", conversations.get(1).lastMessage().content());
+		List<MessageView> conversation = conversationService.findBefore("uma", "vic", MessageCursor.FIRST, 10);
+		assertEquals(List.of(recent.getId(), old.get(1).getId(), old.get(0).getId()), conversation.stream().map(MessageView::id).toList());
+		assertEquals(List.of(old.get(0).getId()), conversationService.findBefore("uma", "vic", MessageCursor.of(conversation.get(1)), 10)
+				.stream().map(MessageView::id).toList());
+		assertEquals(3, mailboxExportService.export("uma", "in", "ndjson", new ByteArrayOutputStream()));
+		assertEquals(4, mailboxExportService.export("uma", "both", "csv", new ByteArrayOutputStream()));
+
+		assertEquals(List.of(new ArchiveMonth(Date.valueOf("1999-02-01"), 1), new ArchiveMonth(Date.valueOf("1999-01-01"), 2)),
+				messageArchiveService.findMonths("uma"));
+		List<MessageView> inbox = messageArchiveService.find("uma", YearMonth.of(1999, 1), true, null, null, PageRequest.of(0, 10)).getContent();
+		assertEquals(List.of(old.get(0).getId()), inbox.stream().map(MessageView::id).toList());
+		assertEquals("Hello, \"Uma\"", inbox.get(0).content());
+		assertEquals(Timestamp.valueOf("1999-01-05 10:00:00"), inbox.get(0).timestamp());
+		assertEquals(1, messageArchiveService.find("vic", YearMonth.of(1999, 1), false, "content", "HELLO", PageRequest.of(0, 10)).getTotalElements());
+		assertEquals(0, messageArchiveService.find("vic", YearMonth.of(1999, 1), false, "content", "bye", PageRequest.of(0, 10)).getTotalElements());
+	}
+
+	@Test
+	void removedUsersAreReplacedInOtherUsersArchives() throws Exception {
+		messageIngestionService.write(List.of(
+				message("xena", "yves", "before", "1998-03-05 10:00:00"),
+				message("yves", "xena", "reply", "1998-03-06 10:00:00"),
+				message("zack", "yves", "other", "1998-04-01 10:00:00")));
+		messageArchiveService.archiveBefore(LocalDate.of(2000, 1, 1));
+		long version = mailboxCounterService.get("yves").getVersion();
+
+		userDeletionService.remove("xena");
+		userDeletionService.rewritePending();
+
+		List<MessageView> inbox = messageArchiveService.find("yves", YearMonth.of(1998, 3), true, null, null, PageRequest.of(0, 10)).getContent();
+		assertEquals(List.of("~ removed user ~"), inbox.stream().map(MessageView::sender).toList());
+		List<MessageView> outbox = messageArchiveService.find("yves", YearMonth.of(1998, 3), false, null, null, PageRequest.of(0, 10)).getContent();
+		assertEquals(List.of("~ removed user ~"), outbox.stream().map(MessageView::receiver).toList());
+		assertEquals("zack", messageArchiveService.find("yves", YearMonth.of(1998, 4), true, null, null, PageRequest.of(0, 10)).getContent().get(0).sender());
+		assertEquals(List.of(), messageArchiveService.findMonths("xena"));
+		assertTrue(mailboxCounterService.get("yves").getVersion() > version);
+	}
+
+	private static Message message(String sender, String receiver, String content, String time) {
+		return new Message(sender, receiver, content, time == null ? new Timestamp(System.currentTimeMillis()) : Timestamp.valueOf(time));
+	}
+
+}
@@ -0,0 +1,117 @@
+package com.srdc.hw2.benchmark;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import com.srdc.hw2.security.AuthPrincipal;
+import com.srdc.hw2.security.AuthService;
+
+/**
+ * Measures the authentication hot paths: issuing a token at login and resolving it on each request.
+ * Also compares the per-request cost of an admin endpoint before and after the claims cache.
+ * Before, an admin request built a new parser and verified its token once per isAdmin/getUsername call;
+ * now the AuthInterceptor authenticates it once and repeated tokens are served from the cache.
+ * The signing key of AuthService is private, so the old code path runs against a token signed with a key of its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthBenchmark {
+
+	private String token;
+	private Key oldKey;
+	private String oldToken;
+
+	/**
+	 * Issues the tokens used by every request.
+	 */
+	@Setup
+	public void setUp() {
+		token = AuthService.login("admin", true);
+		oldKey = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+		long now = System.currentTimeMillis();
+		oldToken = Jwts.builder()
+				.setSubject("admin")
+				.claim("isAdmin", true)
+				.setIssuedAt(new Date(now))
+				.setExpiration(new Date(now + 86400000))
+				.signWith(oldKey)
+				.compact();
+	}
+
+	/**
+	 * Issues a signed token, as done by every login.
+	 *
+	 * @return the token
+	 */
+	@Benchmark
+	public String login() {
+		return AuthService.login("admin", true);
+	}
+
+	/**
+	 * Resolves the username of a cached token.
+	 *
+	 * @return the username
+	 */
+	@Benchmark
+	public String getUsername() {
+		return AuthService.getUsername(token);
+	}
+
+	/**
+	 * Checks the admin flag of a cached token.
+	 *
+	 * @return whether the token belongs to an admin
+	 */
+	@Benchmark
+	public boolean isAdmin() {
+		return AuthService.isAdmin(token);
+	}
+
+	/**
+	 * An admin request before: a parser is built and the token verified for isAdmin, and again for getUsername,
+	 * as the previous AuthService did.
+	 *
+	 * @param blackhole sink for the claims read
+	 */
+	@Benchmark
+	public void adminRequestBefore(Blackhole blackhole) {
+		blackhole.consume(Jwts.parserBuilder().setSigningKey(oldKey).build().parseClaimsJws(oldToken).getBody().get("isAdmin"));
+		blackhole.consume(Jwts.parserBuilder().setSigningKey(oldKey).build().parseClaimsJws(oldToken).getBody().getSubject());
+	}
+
+	/**
+	 * An admin request after: a single cached authentication.
+	 *
+	 * @return the authenticated principal
+	 */
+	@Benchmark
+	public AuthPrincipal adminRequestAfter() {
+		return AuthService.authenticate(token);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(AuthBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,94 @@
+package com.srdc.hw2.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import com.srdc.hw2.Hw2Application;
+import com.srdc.hw2.controller.MessageController;
+import com.srdc.hw2.dto.BatchMessageRequest;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+import com.srdc.hw2.security.AuthPrincipal;
+
+/**
+ * Compares a 1,000-recipient broadcast sent as 1,000 single sends with the same broadcast sent as one batch.
+ * Both go through MessageController on an embedded H2 database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BatchSendBenchmark {
+
+	private static final int RECIPIENTS = 1000;
+	private static final String CONTENT = "Scheduled maintenance tonight from 22:00 to 23:00";
+
+	private ConfigurableApplicationContext context;
+	private MessageController messageController;
+	private AuthPrincipal sender;
+	private List<String> receivers;
+
+	/**
+	 * Starts the application and creates the sender and the receivers.
+	 */
+	@Setup
+	public void setUp() {
+		context = new SpringApplicationBuilder(Hw2Application.class)
+				.web(WebApplicationType.NONE)
+				.profiles("test")
+				.run();
+		messageController = context.getBean(MessageController.class);
+
+		List<User> users = new ArrayList<>();
+		receivers = new ArrayList<>();
+		for (int i = 0; i < RECIPIENTS; i++) {
+			receivers.add("receiver" + i);
+			users.add(new User("receiver" + i, "secret", "Receiver", String.valueOf(i), null, null, null, null, false));
+		}
+		users.add(new User("broadcaster", "secret", "Broad", "Caster", null, null, null, null, false));
+		context.getBean(UserRepository.class).saveAll(users);
+		sender = new AuthPrincipal("broadcaster", false, Long.MAX_VALUE);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public void singleSends(Blackhole blackhole) {
+		for (String receiver : receivers) {
+			blackhole.consume(messageController.sendMessage(sender, new Message(null, receiver, CONTENT, null), "durable").join());
+		}
+	}
+
+	@Benchmark
+	public void batchSend(Blackhole blackhole) {
+		blackhole.consume(messageController.sendBatchMessage(sender, new BatchMessageRequest(receivers, CONTENT)));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(BatchSendBenchmark.class.getSimpleName()).build()).run();
+	}
+}
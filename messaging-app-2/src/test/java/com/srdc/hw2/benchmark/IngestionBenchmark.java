@@ -0,0 +1,103 @@
+package com.srdc.hw2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import com.srdc.hw2.Hw2Application;
+import com.srdc.hw2.controller.MessageController;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+import com.srdc.hw2.security.AuthPrincipal;
+
+/**
+ * Load test of sustained message ingestion: 32 concurrent senders call MessageController as fast as they can.
+ * "sync" stores every message in its own transaction, "durable" and "accepted" go through the write-behind queue
+ * and wait for the group commit or only for the message to be queued. Accepted sends retry while the queue is
+ * full, backing off for a millisecond, so all modes report the rate at which messages are actually stored, in messages per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(32)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class IngestionBenchmark {
+
+	private static final int USERS = 100;
+
+	@Param({"sync", "durable", "accepted"})
+	String mode;
+
+	private ConfigurableApplicationContext context;
+	private MessageController messageController;
+	private AuthPrincipal sender;
+	private String ack;
+
+	/**
+	 * Starts the application with write-behind ingestion enabled unless the mode is synchronous.
+	 */
+	@Setup
+	public void setUp() {
+		context = new SpringApplicationBuilder(Hw2Application.class)
+				.web(WebApplicationType.NONE)
+				.profiles("test")
+				.properties("messaging.ingest.enabled=" + !"sync".equals(mode))
+				.run();
+		messageController = context.getBean(MessageController.class);
+		ack = "accepted".equals(mode) ? "accepted" : "durable";
+
+		UserRepository userRepository = context.getBean(UserRepository.class);
+		for (int i = 0; i < USERS; i++) {
+			userRepository.save(new User("user" + i, "secret", "User", String.valueOf(i), null, null, null, null, false));
+		}
+		sender = new AuthPrincipal("user0", false, Long.MAX_VALUE);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	/**
+	 * Sends one message to a random user.
+	 *
+	 * @return the response of the controller
+	 */
+	@Benchmark
+	public ResponseEntity<Message> send() {
+		String receiver = "user" + (int) (Math.random() * USERS);
+		while (true) {
+			ResponseEntity<Message> response = messageController.sendMessage(sender, new Message(null, receiver, "Load test message to " + receiver, null), ack).join();
+			if (response.getStatusCode() != HttpStatus.SERVICE_UNAVAILABLE) {
+				return response;
+			}
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(IngestionBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,113 @@
+package com.srdc.hw2.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import com.srdc.hw2.Hw2Application;
+import com.srdc.hw2.dto.MessageCursor;
+import com.srdc.hw2.dto.MessageView;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.repository.MessageRepository;
+
+/**
+ * Compares the first and the 10,000th inbox page with offset and keyset pagination.
+ * Messages are spread over 100 mailboxes, so with the default 10M messages the benchmarked inbox holds 100k
+ * messages and page 10,000 is its last page. The data is kept in an H2 file database under target/benchmark
+ * and only seeded on the first run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MessagePaginationBenchmark {
+
+	private static final int MAILBOXES = 100;
+	private static final int PAGE_SIZE = 10;
+	private static final int DEEP_PAGE = 9999;
+	private static final String RECEIVER = "user0";
+	private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "timestamp", "id");
+
+	@Param({"10000000"})
+	int messages;
+
+	private ConfigurableApplicationContext context;
+	private MessageRepository messageRepository;
+	private MessageCursor deepCursor;
+
+	/**
+	 * Starts the application on the benchmark database and seeds it if empty.
+	 */
+	@Setup
+	public void setUp() {
+		context = new SpringApplicationBuilder(Hw2Application.class)
+				.web(WebApplicationType.NONE)
+				.profiles("test")
+				.properties("spring.datasource.url=jdbc:h2:file:./target/benchmark/messages-" + messages + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_ON_EXIT=FALSE",
+						"messaging.search.backfill-on-startup=false")
+				.run();
+		messageRepository = context.getBean(MessageRepository.class);
+
+		JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+		if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages", Long.class) == 0) {
+			jdbcTemplate.update("INSERT INTO messages (id, sender, receiver, content, timestamp) " +
+					"SELECT n, 'sender' || MOD(n, 1000), 'user' || MOD(n, " + MAILBOXES + "), 'message ' || n, " +
+					"DATEADD('SECOND', n, TIMESTAMP '2024-01-01 00:00:00') FROM (SELECT \"X\" AS n FROM SYSTEM_RANGE(1, ?))", messages);
+		}
+
+		List<MessageView> before = messageRepository.findInboxBefore(RECEIVER, MessageCursor.FIRST.timestamp(), MessageCursor.FIRST.id(),
+				PageRequest.of(DEEP_PAGE * PAGE_SIZE - 1, 1, NEWEST_FIRST));
+		deepCursor = before.isEmpty() ? MessageCursor.FIRST : MessageCursor.of(before.get(0));
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public Page<Message> offsetFirstPage() {
+		return messageRepository.findByReceiver(RECEIVER, PageRequest.of(0, PAGE_SIZE, NEWEST_FIRST));
+	}
+
+	@Benchmark
+	public Page<Message> offsetDeepPage() {
+		return messageRepository.findByReceiver(RECEIVER, PageRequest.of(DEEP_PAGE, PAGE_SIZE, NEWEST_FIRST));
+	}
+
+	@Benchmark
+	public List<MessageView> keysetFirstPage() {
+		return messageRepository.findInboxBefore(RECEIVER, MessageCursor.FIRST.timestamp(), MessageCursor.FIRST.id(), PageRequest.of(0, PAGE_SIZE + 1));
+	}
+
+	@Benchmark
+	public List<MessageView> keysetDeepPage() {
+		return messageRepository.findInboxBefore(RECEIVER, deepCursor.timestamp(), deepCursor.id(), PageRequest.of(0, PAGE_SIZE + 1));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(MessagePaginationBenchmark.class.getSimpleName()).build()).run();
+	}
+}
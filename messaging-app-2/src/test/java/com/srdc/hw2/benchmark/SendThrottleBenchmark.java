@@ -0,0 +1,85 @@
+package com.srdc.hw2.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import com.srdc.hw2.ratelimit.TokenBuckets;
+
+/**
+ * Cost of the per-user send rate limit, in nanoseconds per send, as 4 threads send as one user or spread over many.
+ * "allowed" is the fast path with a limit high enough never to refuse; "refused" drains the buckets so every
+ * attempt is refused; "lookup" is only the map lookup of the user's bucket, the floor the limit is measured against.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SendThrottleBenchmark {
+
+	@Param({"1", "100000"})
+	int users;
+
+	private String[] usernames;
+	private TokenBuckets allowing;
+	private TokenBuckets refusing;
+	private Map<String, Object> map;
+
+	/**
+	 * Creates the buckets of all users, so the measurement does not include their creation.
+	 */
+	@Setup
+	public void setUp() {
+		usernames = new String[users];
+		allowing = new TokenBuckets(1e9, 1_000_000);
+		refusing = new TokenBuckets(1e-3, 1);
+		map = new ConcurrentHashMap<>();
+		for (int i = 0; i < users; i++) {
+			usernames[i] = "user" + i;
+			allowing.tryAcquire(usernames[i]);
+			refusing.tryAcquire(usernames[i]);
+			map.put(usernames[i], usernames[i]);
+		}
+	}
+
+	private String username() {
+		return users == 1 ? usernames[0] : usernames[ThreadLocalRandom.current().nextInt(users)];
+	}
+
+	@Benchmark
+	public long allowed() {
+		return allowing.tryAcquire(username());
+	}
+
+	@Benchmark
+	public long refused() {
+		return refusing.tryAcquire(username());
+	}
+
+	@Benchmark
+	public Object lookup() {
+		return map.get(username());
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(SendThrottleBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,154 @@
+package com.srdc.hw2.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import com.srdc.hw2.dto.MessageView;
+import com.srdc.hw2.dto.PageResponse;
+import com.srdc.hw2.dto.UserView;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.model.User;
+
+/**
+ * Measures the Jackson serialization of the pages returned by the message and user listings,
+ * with an ObjectMapper configured like the one Spring Boot gives the MVC message converters.
+ * Entity pages in Spring's Page wrapper are compared with the compact envelope of views the listings now return,
+ * with and without gzip. Run with -prof gc for the allocation per page; the bytes on the wire are printed at the
+ * end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+	@Param({"10", "100"})
+	int size;
+
+	private ObjectMapper objectMapper;
+	private Page<Message> messages;
+	private Page<User> users;
+	private PageResponse<MessageView> messageViews;
+	private PageResponse<UserView> userViews;
+
+	/**
+	 * Builds one page of messages and one page of users of the configured size.
+	 */
+	@Setup
+	public void setUp() {
+		objectMapper = Jackson2ObjectMapperBuilder.json()
+				.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+				.build();
+		List<Message> messageList = new ArrayList<>(size);
+		List<User> userList = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			messageList.add(new Message("sender" + i, "receiver", "Message number " + i + " of the benchmark page", new Timestamp(System.currentTimeMillis())));
+			userList.add(new User("user" + i, "secret", "User", String.valueOf(i), Date.valueOf("1990-01-01"), "female", "user" + i + "@example.com", "Ankara", false));
+		}
+		messages = new PageImpl<>(messageList, PageRequest.of(0, size), 10_000);
+		users = new PageImpl<>(userList, PageRequest.of(0, size), 10_000);
+		messageViews = PageResponse.of(messages.map(MessageView::of));
+		userViews = PageResponse.of(users.map(UserView::of));
+	}
+
+	/**
+	 * Prints the size of each page as written to the response, plain and gzipped.
+	 */
+	@TearDown
+	public void printWireSizes() throws IOException {
+		System.out.printf("%nBytes per page of %d: messages %d (gzip %d), message views %d (gzip %d), users %d (gzip %d), user views %d (gzip %d)%n",
+				size, messagePage().length, gzip(messagePage()).length, messageViewPage().length, gzip(messageViewPage()).length,
+				userPage().length, gzip(userPage()).length, userViewPage().length, gzip(userViewPage()).length);
+	}
+
+	/**
+	 * Serializes a page of messages.
+	 *
+	 * @return the JSON bytes
+	 */
+	@Benchmark
+	public byte[] messagePage() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(messages);
+	}
+
+	/**
+	 * Serializes a page of users.
+	 *
+	 * @return the JSON bytes
+	 */
+	@Benchmark
+	public byte[] userPage() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(users);
+	}
+
+	/**
+	 * Serializes a page of message views in the compact envelope.
+	 *
+	 * @return the JSON bytes
+	 */
+	@Benchmark
+	public byte[] messageViewPage() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(messageViews);
+	}
+
+	/**
+	 * Serializes a page of user views in the compact envelope.
+	 *
+	 * @return the JSON bytes
+	 */
+	@Benchmark
+	public byte[] userViewPage() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(userViews);
+	}
+
+	/**
+	 * Serializes and gzips a page of message views, as written to a client accepting gzip.
+	 *
+	 * @return the compressed bytes
+	 */
+	@Benchmark
+	public byte[] messageViewPageGzip() throws IOException {
+		return gzip(objectMapper.writeValueAsBytes(messageViews));
+	}
+
+	private static byte[] gzip(byte[] json) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 4);
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(json);
+		}
+		return bytes.toByteArray();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(SerializationBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,78 @@
+package com.srdc.hw2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import com.srdc.hw2.security.SessionRegistry;
+
+/**
+ * Measures token lookup latency of the SessionRegistry for growing numbers of active sessions.
+ * The lookup cost should stay flat from 1k to 1M sessions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SessionRegistryBenchmark {
+
+	@Param({"1000", "10000", "100000", "1000000"})
+	int sessions;
+
+	private SessionRegistry registry;
+	private String[] tokens;
+	private int next;
+
+	/**
+	 * Fills the registry with the configured number of sessions spread over 1000 users.
+	 */
+	@Setup
+	public void setUp() {
+		registry = new SessionRegistry();
+		tokens = new String[sessions];
+		long expiresAt = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+		for (int i = 0; i < sessions; i++) {
+			tokens[i] = "token-" + i;
+			registry.register(tokens[i], "user-" + (i % 1000), expiresAt);
+		}
+	}
+
+	/**
+	 * Looks up an active token.
+	 *
+	 * @return whether the token is active
+	 */
+	@Benchmark
+	public boolean activeTokenLookup() {
+		String token = tokens[next];
+		next = next + 1 == tokens.length ? 0 : next + 1;
+		return registry.isActive(token);
+	}
+
+	/**
+	 * Looks up a token that was never registered.
+	 *
+	 * @return whether the token is active
+	 */
+	@Benchmark
+	public boolean unknownTokenLookup() {
+		return registry.isActive("unknown-token");
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(SessionRegistryBenchmark.class.getSimpleName()).build()).run();
+	}
+}
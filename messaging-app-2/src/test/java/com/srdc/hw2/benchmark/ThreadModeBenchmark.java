@@ -0,0 +1,124 @@
+package com.srdc.hw2.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import com.srdc.hw2.Hw2Application;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.MessageRepository;
+import com.srdc.hw2.repository.UserRepository;
+
+/**
+ * Compares the platform-thread and the virtual-thread serving modes under a burst of concurrent clients.
+ * Each invocation opens one connection per client and has all of them fetch an inbox page from
+ * GET /api/message at once; the score is the time until every client got its response.
+ * Client and server share the process, so 10k clients need about 20k file descriptors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ThreadModeBenchmark {
+
+	@Param({"platform", "virtual"})
+	String threads;
+
+	@Param({"10000"})
+	int clients;
+
+	private ConfigurableApplicationContext context;
+	private HttpClient client;
+	private ExecutorService executor;
+	private HttpRequest inbox;
+
+	/**
+	 * Starts the application on a random port in the selected mode and logs in a user with a filled inbox.
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		SpringApplicationBuilder builder = new SpringApplicationBuilder(Hw2Application.class)
+				.properties("server.port=0", "server.tomcat.max-connections=" + (clients + 100), "server.tomcat.accept-count=" + clients);
+		context = ("virtual".equals(threads) ? builder.profiles("test", "virtual-threads") : builder.profiles("test")).run();
+		int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+		context.getBean(UserRepository.class).save(new User("reader", "secret", "Inbox", "Reader", null, null, null, null, false));
+		List<Message> messages = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			messages.add(new Message("writer", "reader", "message " + i, new Timestamp(System.currentTimeMillis())));
+		}
+		context.getBean(MessageRepository.class).saveAll(messages);
+
+		client = HttpClient.newHttpClient();
+		executor = Executors.newVirtualThreadPerTaskExecutor();
+		String token = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/user/login"))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"reader\",\"password\":\"secret\"}"))
+				.build(), HttpResponse.BodyHandlers.ofString()).body();
+		inbox = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/message?inout=in&page=0&size=10"))
+				.header("Authorization", token)
+				.build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.close();
+		client.close();
+		context.close();
+	}
+
+	/**
+	 * Sends one inbox request per client concurrently and waits for all responses.
+	 *
+	 * @return the number of successful responses
+	 */
+	@Benchmark
+	public int burst() throws Exception {
+		List<Future<Integer>> responses = new ArrayList<>(clients);
+		for (int i = 0; i < clients; i++) {
+			responses.add(executor.submit(() -> client.send(inbox, HttpResponse.BodyHandlers.discarding()).statusCode()));
+		}
+		int ok = 0;
+		for (Future<Integer> response : responses) {
+			if (response.get() == 200) {
+				ok++;
+			}
+		}
+		if (ok != clients) {
+			throw new IllegalStateException((clients - ok) + " of " + clients + " requests failed");
+		}
+		return ok;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ThreadModeBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,109 @@
+package com.srdc.hw2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import com.srdc.hw2.Hw2Application;
+import com.srdc.hw2.controller.MessageController;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+import com.srdc.hw2.security.AuthPrincipal;
+import com.srdc.hw2.user.UserDeletionService;
+
+/**
+ * Measures the latency distribution of concurrent sends while a user with 1M messages is being removed.
+ * With "deleting" the heavy user is removed before the first iteration and the background job rewrites its
+ * messages during the run; the baseline runs the same sends with no removal in progress.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserDeletionBenchmark {
+
+	private static final int USERS = 100;
+
+	@Param({"1000000"})
+	int messages;
+
+	@Param({"false", "true"})
+	boolean deleting;
+
+	private ConfigurableApplicationContext context;
+	private MessageController messageController;
+	private JdbcTemplate jdbcTemplate;
+	private AuthPrincipal sender;
+
+	/**
+	 * Starts the application, gives the heavy user its messages and removes it if requested.
+	 */
+	@Setup
+	public void setUp() {
+		context = new SpringApplicationBuilder(Hw2Application.class)
+				.web(WebApplicationType.NONE)
+				.profiles("test")
+				.properties("messaging.user-deletion.interval-ms=100")
+				.run();
+		messageController = context.getBean(MessageController.class);
+		jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+		UserRepository userRepository = context.getBean(UserRepository.class);
+		userRepository.save(new User("heavy", "secret", "Heavy", "User", null, null, null, null, false));
+		for (int i = 0; i < USERS; i++) {
+			userRepository.save(new User("user" + i, "secret", "User", String.valueOf(i), null, null, null, null, false));
+		}
+		jdbcTemplate.update("INSERT INTO messages (id, sender, receiver, content, timestamp, is_read) " +
+				"SELECT 1000000000 + n, 'user' || MOD(n, " + USERS + "), 'heavy', 'message ' || n, CURRENT_TIMESTAMP, FALSE " +
+				"FROM (SELECT \"X\" AS n FROM SYSTEM_RANGE(1, ?))", messages);
+		sender = new AuthPrincipal("user0", false, Long.MAX_VALUE);
+
+		if (deleting) {
+			context.getBean(UserDeletionService.class).remove("heavy");
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		Long left = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages WHERE receiver = 'heavy'", Long.class);
+		System.out.println("Messages of the heavy user not rewritten yet: " + left);
+		context.close();
+	}
+
+	/**
+	 * Sends one message to a random user.
+	 *
+	 * @return the response of the controller
+	 */
+	@Benchmark
+	public ResponseEntity<Message> send() {
+		String receiver = "user" + (int) (Math.random() * USERS);
+		return messageController.sendMessage(sender, new Message(null, receiver, "Hello " + receiver, null), "durable").join();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(UserDeletionBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,73 @@
+package com.srdc.hw2.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import com.srdc.hw2.search.UsernameIndex;
+
+/**
+ * Measures typeahead search latency of the UsernameIndex with up to 1M indexed usernames.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UsernameIndexBenchmark {
+
+	private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+	@Param({"10000", "1000000"})
+	int users;
+
+	@Param({"a", "jo", "mar", "xq7z"})
+	String query;
+
+	private UsernameIndex index;
+
+	/**
+	 * Indexes random usernames of 6 to 12 characters.
+	 */
+	@Setup
+	public void setUp() {
+		index = new UsernameIndex();
+		Random random = new Random(42);
+		for (int i = 0; i < users; i++) {
+			StringBuilder username = new StringBuilder();
+			int length = 6 + random.nextInt(7);
+			for (int j = 0; j < length; j++) {
+				username.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			}
+			index.add(username.toString());
+		}
+	}
+
+	/**
+	 * Searches for the top 10 usernames containing the query.
+	 *
+	 * @return the matching usernames
+	 */
+	@Benchmark
+	public List<String> search() {
+		return index.search(query, 10);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(UsernameIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+}
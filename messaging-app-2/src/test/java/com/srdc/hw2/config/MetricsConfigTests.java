@@ -0,0 +1,91 @@
+package com.srdc.hw2.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability
+@ActiveProfiles("test")
+class MetricsConfigTests {
+
+	@LocalServerPort
+	int port;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	@Test
+	void hotPathMetricsAreScraped() throws Exception {
+		String token = login();
+		for (int i = 0; i < 2; i++) {
+			HttpResponse<String> summary = client.send(HttpRequest.newBuilder(uri("/api/message/summary"))
+					.header("Authorization", token).build(), HttpResponse.BodyHandlers.ofString());
+			assertEquals(200, summary.statusCode());
+		}
+
+		String scrape = client.send(HttpRequest.newBuilder(uri("/actuator/prometheus")).build(), HttpResponse.BodyHandlers.ofString()).body();
+
+		assertScraped(scrape, "http_server_requests_seconds_bucket{", "uri=\"/api/message/summary\"");
+		assertScraped(scrape, "spring_data_repository_invocations_seconds_count{", "method=\"findByUsername\"");
+		assertScraped(scrape, "hikaricp_connections_acquire_seconds_bucket{", "");
+		assertScraped(scrape, "messaging_sessions_active", "");
+		assertScraped(scrape, "messaging_auth_cache_total{", "result=\"hit\"");
+		assertScraped(scrape, "messaging_auth_authenticate_seconds_count", "");
+		assertScraped(scrape, "messaging_user_cache_total{", "result=\"miss\"");
+		assertScraped(scrape, "messaging_user_cache_hit_ratio", "");
+		assertScraped(scrape, "messaging_json_write_seconds_count{", "type=\"MailboxCounter\"");
+	}
+
+	@Test
+	void sendsAreAuthenticatedOnce() throws Exception {
+		String token = login();
+		long authenticated = meterRegistry.get("messaging.auth.authenticate").timer().count();
+
+		HttpResponse<String> sent = client.send(HttpRequest.newBuilder(uri("/api/message"))
+				.header("Authorization", token)
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString("{\"receiver\":\"scraped\",\"content\":\"Hello\"}"))
+				.build(), HttpResponse.BodyHandlers.ofString());
+
+		assertEquals(201, sent.statusCode());
+		assertEquals(authenticated + 1, meterRegistry.get("messaging.auth.authenticate").timer().count());
+	}
+
+	private String login() throws Exception {
+		if (!userRepository.existsByUsername("scraped")) {
+			userRepository.save(new User("scraped", "secret", "Scraped", "User", null, null, null, null, false));
+		}
+		return client.send(HttpRequest.newBuilder(uri("/api/user/login"))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"scraped\",\"password\":\"secret\"}"))
+				.build(), HttpResponse.BodyHandlers.ofString()).body();
+	}
+
+	private static void assertScraped(String scrape, String metric, String tag) {
+		assertTrue(scrape.lines().anyMatch(line -> line.startsWith(metric) && line.contains(tag)), metric + " " + tag + " is not scraped");
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://localhost:" + port + path);
+	}
+
+}
@@ -0,0 +1,56 @@
+package com.srdc.hw2.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import com.srdc.hw2.dto.BatchMessageRequest;
+import com.srdc.hw2.dto.BatchMessageResponse;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+import com.srdc.hw2.security.AuthPrincipal;
+
+@SpringBootTest(properties = "messaging.batch.max-receivers=3")
+@ActiveProfiles("test")
+class BatchMessageTests {
+
+	private static final AuthPrincipal SENDER = new AuthPrincipal("batch-sender", false, Long.MAX_VALUE);
+
+	@Autowired
+	MessageController messageController;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Test
+	void knownReceiversGetTheMessageAndUnknownOnesAreReported() {
+		for (String username : List.of("batch-bob", "batch-carol")) {
+			userRepository.save(new User(username, "secret", null, null, null, null, null, null, false));
+		}
+
+		ResponseEntity<BatchMessageResponse> response = send(List.of("batch-bob", "batch-nobody", "batch-carol", "batch-bob"));
+
+		assertEquals(HttpStatus.CREATED, response.getStatusCode());
+		assertEquals(List.of("batch-bob", "batch-carol"), response.getBody().sent().stream().map(Message::getReceiver).toList());
+		assertEquals(List.of("batch-nobody"), response.getBody().unknownReceivers());
+	}
+
+	@Test
+	void batchesWithoutKnownReceiversOrWithTooManyAreRefused() {
+		assertEquals(HttpStatus.NOT_FOUND, send(List.of("batch-nobody", "batch-nobody-else")).getStatusCode());
+		assertEquals(HttpStatus.BAD_REQUEST, send(IntStream.range(0, 4).mapToObj(i -> "batch-user" + i).toList()).getStatusCode());
+		assertEquals(HttpStatus.BAD_REQUEST, send(List.of()).getStatusCode());
+	}
+
+	private ResponseEntity<BatchMessageResponse> send(List<String> receivers) {
+		return messageController.sendBatchMessage(SENDER, new BatchMessageRequest(receivers, "Hello"));
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.srdc.hw2.conversation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+import com.srdc.hw2.dto.ConversationSummary;
+import com.srdc.hw2.dto.MessageCursor;
+import com.srdc.hw2.dto.MessageView;
+import com.srdc.hw2.ingest.MessageIngestionService;
+import com.srdc.hw2.model.Message;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class ConversationServiceTests {
+
+	@Autowired
+	MessageIngestionService messageIngestionService;
+
+	@Autowired
+	ConversationService conversationService;
+
+	@Test
+	void conversationsInterleaveBothDirectionsAndListTheLastMessage() {
+		Message first = messageIngestionService.write(List.of(message("olga", "Pete", 1000))).get(0);
+		Message reply = messageIngestionService.write(List.of(message("Pete", "olga", 2000))).get(0);
+		Message other = messageIngestionService.write(List.of(message("olga", "quin", 3000))).get(0);
+
+		assertEquals(List.of(reply.getId(), first.getId()), ids(conversationService.findBefore("olga", "Pete", MessageCursor.FIRST, 10)));
+		MessageCursor since = conversationService.findPosition("Pete", "olga", first.getId()).orElseThrow();
+		assertEquals(List.of(reply.getId()), ids(conversationService.findSince("Pete", "olga", since, 10)));
+		assertTrue(conversationService.findPosition("quin", "olga", first.getId()).isEmpty());
+
+		List<ConversationSummary> olga = conversationService.findConversations("olga", MessageCursor.FIRST, 10);
+		assertEquals(List.of("quin", "Pete"), olga.stream().map(ConversationSummary::partner).toList());
+		assertEquals(List.of(other.getId(), reply.getId()), olga.stream().map(summary -> summary.lastMessage().id()).toList());
+		assertEquals(List.of("Pete"), conversationService.findConversations("olga", MessageCursor.of(other), 10).stream().map(ConversationSummary::partner).toList());
+
+		conversationService.remove("olga");
+		assertEquals(List.of(), conversationService.findConversations("Pete", MessageCursor.FIRST, 10));
+	}
+
+	private static Message message(String sender, String receiver, long time) {
+		return new Message(sender, receiver, "hello " + receiver, new Timestamp(time));
+	}
+
+	private static List<Long> ids(List<MessageView> messages) {
+		return messages.stream().map(MessageView::id).toList();
+	}
+
+}
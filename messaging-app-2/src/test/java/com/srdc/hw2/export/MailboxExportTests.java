@@ -0,0 +1,123 @@
+package com.srdc.hw2.export;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Exports a large mailbox from a database file, so the seeded messages are not held in the heap.
+ * While the lines of a second export are written, the heap in use after a full collection is sampled, and it may
+ * not grow by more than a few megabytes, well below what keeping the exported messages would take. The database
+ * page cache is kept small so it does not hide such growth, and queries run lazily so that H2 hands out rows as it
+ * reads them, as a PostgreSQL cursor does, instead of building the whole result first.
+ * The size is set with -Dexport.messages and the file is kept, so a constant-memory run of five million messages
+ * seeds it with the default heap first and then exports it again with a small one:
+ * mvn test -Dtest=MailboxExportTests -Dexport.messages=5000000
+ * mvn test -Dtest=MailboxExportTests -Dexport.messages=5000000 -DargLine=-Xmx64m
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:file:./target/export-test/messages-${export.messages:50000};MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_ON_EXIT=FALSE;CACHE_SIZE=1024;LAZY_QUERY_EXECUTION=TRUE",
+		"messaging.search.backfill-on-startup=false"
+})
+@ActiveProfiles("test")
+class MailboxExportTests {
+
+	private static final long MESSAGES = Long.getLong("export.messages", 50_000);
+	private static final long CHUNK = 50_000;
+	private static final long MAX_HEAP_GROWTH = 4 * 1024 * 1024;
+
+	@Autowired
+	MailboxExportService mailboxExportService;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Test
+	void largeMailboxIsStreamedLineByLine() throws Exception {
+		long seeded = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages WHERE receiver = 'exporter'", Long.class);
+		for (long from = seeded + 1; from <= MESSAGES; from += CHUNK) {
+			jdbcTemplate.update("INSERT INTO messages (id, sender, receiver, content, timestamp, is_read) " +
+					"SELECT n, 'sender' || MOD(n, 100), 'exporter', 'message number ' || n, " +
+					"DATEADD('SECOND', n, TIMESTAMP '2024-01-01 00:00:00'), FALSE FROM (SELECT \"X\" AS n FROM SYSTEM_RANGE(?, ?))",
+					from, Math.min(from + CHUNK - 1, MESSAGES));
+		}
+
+		// The first export fills the caches of the query and the serializer
+		mailboxExportService.export("exporter", "in", "ndjson", new LineCounter(MESSAGES));
+		long before = usedHeap();
+		LineCounter out = new LineCounter(MESSAGES / 10);
+		long written = mailboxExportService.export("exporter", "in", "ndjson", out);
+
+		assertEquals(MESSAGES, written);
+		assertEquals(MESSAGES, out.lines);
+		assertTrue(out.maxHeap - before < MAX_HEAP_GROWTH, "The heap grew by " + (out.maxHeap - before) / 1024 + " KB during the export");
+	}
+
+	@Test
+	void csvFieldsAreQuotedWhenNeeded() throws Exception {
+		jdbcTemplate.update("DELETE FROM messages WHERE receiver = 'quoted'");
+		jdbcTemplate.update("INSERT INTO messages (id, sender, receiver, content, timestamp, is_read) " +
+				"VALUES (-1, 'sender', 'quoted', 'one, \"two\"', TIMESTAMP '2024-01-01 00:00:00', TRUE)");
+
+		ByteArrayOutputStream csv = new ByteArrayOutputStream();
+		assertEquals(1, mailboxExportService.export("quoted", "both", "csv", csv));
+		String[] lines = csv.toString(StandardCharsets.UTF_8).split("\n");
+		assertEquals("id,sender,receiver,content,timestamp,read", lines[0]);
+		assertTrue(lines[1].startsWith("-1,sender,quoted,\"one, \"\"two\"\"\","), lines[1]);
+
+		ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+		mailboxExportService.export("quoted", "in", "ndjson", ndjson);
+		String line = ndjson.toString(StandardCharsets.UTF_8);
+		assertTrue(line.startsWith("{\"id\":-1,") && line.endsWith("}\n"), line);
+	}
+
+	/**
+	 * Counts the lines written without keeping them, and samples the heap in use every number of lines.
+	 */
+	private static class LineCounter extends OutputStream {
+
+		private final long interval;
+		long lines;
+		long maxHeap;
+
+		LineCounter(long interval) {
+			this.interval = Math.max(1, interval);
+		}
+
+		@Override
+		public void write(int b) {
+			if (b == '\n' && ++lines % interval == 0) {
+				sampleHeap();
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			for (int i = off; i < off + len; i++) {
+				write(b[i]);
+			}
+		}
+
+		private void sampleHeap() {
+			maxHeap = Math.max(maxHeap, usedHeap());
+		}
+	}
+
+	/**
+	 * Returns the heap in use after a full collection.
+	 */
+	private static long usedHeap() {
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.srdc.hw2.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.repository.MessageRepository;
+
+@SpringBootTest(properties = {"messaging.ingest.enabled=true", "messaging.ingest.batch-size=50", "messaging.ingest.max-delay-ms=200"})
+@ActiveProfiles("test")
+class MessageIngestionServiceTests {
+
+	@Autowired
+	MessageIngestionService messageIngestionService;
+
+	@Autowired
+	MessageRepository messageRepository;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Test
+	void queuedMessagesAreStoredInGroupCommits() {
+		List<CompletableFuture<Message>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			CompletableFuture<Message> committed = messageIngestionService.submit(new Message("dave", "erin", "message " + i, new Timestamp(System.currentTimeMillis())));
+			assertNotNull(committed);
+			futures.add(committed);
+		}
+
+		futures.forEach(committed -> assertTrue(committed.join().getId() > 0));
+		assertEquals(100, messageRepository.findReceivedBetween("erin", 0L, Long.MAX_VALUE, PageRequest.of(0, 1000)).size());
+
+		DistributionSummary batchSizes = meterRegistry.get("messaging.ingest.batch.size").summary();
+		assertEquals(100, (long) batchSizes.totalAmount());
+		assertTrue(batchSizes.count() < 100);
+		assertEquals(0, messageIngestionService.queueDepth());
+	}
+
+}
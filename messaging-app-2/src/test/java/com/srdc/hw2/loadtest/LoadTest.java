@@ -0,0 +1,296 @@
+package com.srdc.hw2.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import com.srdc.hw2.Hw2Application;
+import com.srdc.hw2.mailbox.MailboxCounterService;
+import com.srdc.hw2.search.MessageSearchService;
+import com.srdc.hw2.user.UserCache;
+
+/**
+ * Self-contained HTTP load test. Boots the application with the "loadtest" profile on an in-memory database,
+ * seeds it with the configured numbers of users and messages, and has concurrent clients drive a weighted mix of
+ * logins, inbox and outbox reads, content searches and sends over HTTP. After a warmup phase it reports the
+ * throughput and the p50/p99/p999 latency of each operation, and writes them as JSON to loadtest.result-file.
+ * Client choices come from a fixed seed, so repeated runs send the same requests.
+ * Settings are Spring properties and can be passed as arguments, e.g. --loadtest.clients=256.
+ */
+public class LoadTest {
+
+	private static final String PASSWORD = "secret";
+	private static final int TOPICS = 100;
+	private static final int ID_ALLOCATION_SIZE = 50;
+	private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	/**
+	 * The measurements of one operation.
+	 *
+	 * @param latencies the latency of each successful request, in nanoseconds
+	 * @param errors    the number of requests that failed or returned an error status
+	 */
+	private record Stats(Histogram latencies, AtomicLong errors) {}
+
+	/**
+	 * The report line of one operation.
+	 *
+	 * @param operation  the operation name
+	 * @param requests   the number of successful requests
+	 * @param errors     the number of failed requests
+	 * @param throughput the successful requests per second
+	 * @param p50        the median latency in milliseconds
+	 * @param p99        the 99th percentile latency in milliseconds
+	 * @param p999       the 99.9th percentile latency in milliseconds
+	 * @param max        the maximum latency in milliseconds
+	 */
+	record Result(String operation, long requests, long errors, double throughput, double p50, double p99, double p999, double max) {}
+
+	private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+	private final String baseUrl;
+	private final int users;
+	private final int messages;
+	private final int clients;
+	private final long warmupNanos;
+	private final long durationNanos;
+	private final long seed;
+	private final Map<String, Integer> mix = new LinkedHashMap<>();
+	private final Map<String, Stats> stats = new LinkedHashMap<>();
+	private final String resultFile;
+
+	private volatile boolean measuring;
+	private volatile boolean stopped;
+
+	LoadTest(Environment environment, int port) {
+		baseUrl = "http://localhost:" + port + "/api";
+		users = environment.getProperty("loadtest.users", Integer.class, 1000);
+		messages = environment.getProperty("loadtest.messages", Integer.class, 100000);
+		clients = environment.getProperty("loadtest.clients", Integer.class, 64);
+		warmupNanos = TimeUnit.SECONDS.toNanos(environment.getProperty("loadtest.warmup-seconds", Integer.class, 10));
+		durationNanos = TimeUnit.SECONDS.toNanos(environment.getProperty("loadtest.duration-seconds", Integer.class, 60));
+		seed = environment.getProperty("loadtest.seed", Long.class, 42L);
+		resultFile = environment.getProperty("loadtest.result-file", "target/loadtest-result.json");
+		for (String entry : environment.getProperty("loadtest.mix", "login:5,inbox:35,outbox:15,search:15,send:30").split(",")) {
+			String[] parts = entry.trim().split(":");
+			mix.put(parts[0], Integer.parseInt(parts[1]));
+			stats.put(parts[0], new Stats(new ConcurrentHistogram(MAX_LATENCY_NANOS, 3), new AtomicLong()));
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		// Devtools would restart the application, and the load test with it, in a new class loader
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(Hw2Application.class)
+				.profiles("loadtest")
+				.run(args);
+		try {
+			LoadTest loadTest = new LoadTest(context.getEnvironment(), ((WebServerApplicationContext) context).getWebServer().getPort());
+			loadTest.seed(context);
+			loadTest.writeReport(loadTest.run());
+		} finally {
+			context.close();
+		}
+	}
+
+	/**
+	 * Fills the database with users and messages, indexes the messages and creates the mailbox counters,
+	 * so the measured requests do not pay for lazy initialization. The users are inserted over JDBC, so the user
+	 * cache's username filter is rebuilt to know them.
+	 */
+	void seed(ConfigurableApplicationContext context) {
+		long start = System.nanoTime();
+		JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+		jdbcTemplate.update("INSERT INTO users (id, username, password, name, surname, is_admin) " +
+				"SELECT n, 'user' || (n - 1), ?, 'User', 'Number ' || (n - 1), FALSE FROM (SELECT \"X\" AS n FROM SYSTEM_RANGE(1, ?))", PASSWORD, users);
+		jdbcTemplate.update("INSERT INTO messages (id, sender, receiver, content, timestamp, is_read) " +
+				"SELECT n, 'user' || MOD(n, ?), 'user' || MOD(n * 7919, ?), 'Message ' || n || ' about topic' || MOD(n, " + TOPICS + "), " +
+				"DATEADD('SECOND', n, TIMESTAMP '2024-01-01 00:00:00'), FALSE FROM (SELECT \"X\" AS n FROM SYSTEM_RANGE(1, ?))", users, users, messages);
+		// Pooled sequences hand out the block of ids ending at the value fetched, so skip one allocation
+		jdbcTemplate.execute("ALTER SEQUENCE users_seq RESTART WITH " + (users + ID_ALLOCATION_SIZE));
+		jdbcTemplate.execute("ALTER SEQUENCE messages_seq RESTART WITH " + (messages + ID_ALLOCATION_SIZE));
+		context.getBean(UserCache.class).rebuild();
+		context.getBean(MessageSearchService.class).indexUnindexedMessages();
+		MailboxCounterService mailboxCounterService = context.getBean(MailboxCounterService.class);
+		for (int i = 0; i < users; i++) {
+			mailboxCounterService.get("user" + i);
+		}
+		System.out.printf("Seeded %d users and %d messages in %d s%n", users, messages, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+	}
+
+	/**
+	 * Runs the clients through the warmup and measurement phases.
+	 *
+	 * @return the results of each operation
+	 */
+	List<Result> run() throws Exception {
+		List<Future<?>> running = new ArrayList<>();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < clients; i++) {
+				int index = i;
+				running.add(executor.submit(() -> {
+					client(index);
+					return null;
+				}));
+			}
+			TimeUnit.NANOSECONDS.sleep(warmupNanos);
+			measuring = true;
+			TimeUnit.NANOSECONDS.sleep(durationNanos);
+			measuring = false;
+			stopped = true;
+			for (Future<?> future : running) {
+				future.get();
+			}
+		}
+
+		double seconds = durationNanos / 1e9;
+		List<Result> results = new ArrayList<>();
+		Histogram total = new Histogram(MAX_LATENCY_NANOS, 3);
+		long totalErrors = 0;
+		for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+			Histogram latencies = entry.getValue().latencies();
+			total.add(latencies);
+			totalErrors += entry.getValue().errors().get();
+			results.add(result(entry.getKey(), latencies, entry.getValue().errors().get(), seconds));
+		}
+		results.add(result("total", total, totalErrors, seconds));
+		return results;
+	}
+
+	/**
+	 * Logs in as the client's user and sends requests of the configured mix until the run is stopped.
+	 */
+	private void client(int index) throws Exception {
+		Random random = new Random(seed + index);
+		String username = "user" + (index % users);
+		String token = login(username);
+		int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+
+		while (!stopped) {
+			String operation = pick(random.nextInt(totalWeight));
+			HttpRequest request = switch (operation) {
+				case "login" -> loginRequest(username);
+				case "inbox" -> get(token, "/message?inout=in&page=" + random.nextInt(3) + "&size=10");
+				case "outbox" -> get(token, "/message?inout=out&page=" + random.nextInt(3) + "&size=10");
+				case "search" -> get(token, "/message?inout=in&size=10&field=content&value=topic" + random.nextInt(TOPICS));
+				case "send" -> HttpRequest.newBuilder(URI.create(baseUrl + "/message"))
+						.header("Authorization", token)
+						.header("Content-Type", "application/json")
+						.POST(HttpRequest.BodyPublishers.ofString("{\"receiver\":\"user" + random.nextInt(users) +
+								"\",\"content\":\"Load test message about topic" + random.nextInt(TOPICS) + "\"}"))
+						.build();
+				default -> throw new IllegalArgumentException("Unknown operation " + operation);
+			};
+
+			boolean measured = measuring;
+			long start = System.nanoTime();
+			HttpResponse<String> response;
+			try {
+				response = client.send(request, HttpResponse.BodyHandlers.ofString());
+			} catch (IOException e) {
+				response = null;
+			}
+			long latency = System.nanoTime() - start;
+
+			if (!measured || !measuring) {
+				continue;
+			}
+			Stats operationStats = stats.get(operation);
+			if (response == null || response.statusCode() >= 400) {
+				operationStats.errors().incrementAndGet();
+			} else {
+				operationStats.latencies().recordValue(Math.min(latency, MAX_LATENCY_NANOS));
+				if ("login".equals(operation)) {
+					token = response.body();
+				}
+			}
+		}
+	}
+
+	private String pick(int value) {
+		for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+			value -= entry.getValue();
+			if (value < 0) {
+				return entry.getKey();
+			}
+		}
+		throw new IllegalStateException("Empty operation mix");
+	}
+
+	private String login(String username) throws Exception {
+		HttpResponse<String> response = client.send(loginRequest(username), HttpResponse.BodyHandlers.ofString());
+		if (response.statusCode() != 200) {
+			throw new IllegalStateException("Login of " + username + " failed with status " + response.statusCode());
+		}
+		return response.body();
+	}
+
+	private HttpRequest loginRequest(String username) {
+		return HttpRequest.newBuilder(URI.create(baseUrl + "/user/login"))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}"))
+				.build();
+	}
+
+	private HttpRequest get(String token, String path) {
+		return HttpRequest.newBuilder(URI.create(baseUrl + path)).header("Authorization", token).build();
+	}
+
+	private static Result result(String operation, Histogram latencies, long errors, double seconds) {
+		return new Result(operation, latencies.getTotalCount(), errors, latencies.getTotalCount() / seconds,
+				millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(99)),
+				millis(latencies.getValueAtPercentile(99.9)), millis(latencies.getMaxValue()));
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+
+	/**
+	 * Prints the results as a table and writes them as JSON, together with the settings of the run.
+	 */
+	void writeReport(List<Result> results) throws IOException {
+		System.out.printf("%n%d clients, %d users, %d messages, %d s measured after %d s warmup%n", clients, users, messages,
+				TimeUnit.NANOSECONDS.toSeconds(durationNanos), TimeUnit.NANOSECONDS.toSeconds(warmupNanos));
+		System.out.printf("%-10s %10s %8s %10s %10s %10s %10s %10s%n", "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+		for (Result result : results) {
+			System.out.printf("%-10s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", result.operation(), result.requests(), result.errors(),
+					result.throughput(), result.p50(), result.p99(), result.p999(), result.max());
+		}
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("clients", clients);
+		report.put("users", users);
+		report.put("messages", messages);
+		report.put("warmupSeconds", TimeUnit.NANOSECONDS.toSeconds(warmupNanos));
+		report.put("durationSeconds", TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+		report.put("mix", mix);
+		report.put("seed", seed);
+		report.put("results", results);
+		File file = new File(resultFile);
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+		new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file, report);
+		System.out.println("Results written to " + file.getAbsolutePath());
+	}
+}
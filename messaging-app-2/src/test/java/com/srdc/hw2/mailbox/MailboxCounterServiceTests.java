@@ -0,0 +1,91 @@
+package com.srdc.hw2.mailbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import com.srdc.hw2.ingest.MessageIngestionService;
+import com.srdc.hw2.model.MailboxCounter;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.repository.MessageRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class MailboxCounterServiceTests {
+
+	@Autowired
+	MessageRepository messageRepository;
+
+	@Autowired
+	MessageIngestionService messageIngestionService;
+
+	@Autowired
+	MailboxCounterService mailboxCounterService;
+
+	@Test
+	void countersStartFromStoredMessagesAndFollowSendsAndReads() {
+		Message old = messageRepository.save(message("frank", "gina"));
+
+		messageIngestionService.write(List.of(message("frank", "gina"), message("frank", "hank")));
+		messageRepository.markRead(old.getId(), "gina");
+		mailboxCounterService.recordRead("gina");
+
+		assertCounter(0, 3, 0, mailboxCounterService.get("frank"));
+		assertCounter(2, 0, 1, mailboxCounterService.get("gina"));
+		assertCounter(1, 0, 1, mailboxCounterService.get("hank"));
+	}
+
+	@Test
+	void readsBeforeTheCounterExistsAreCountedOnce() {
+		Message read = messageRepository.save(message("ida", "jack"));
+		messageRepository.save(message("ida", "jack"));
+		messageRepository.markRead(read.getId(), "jack");
+		mailboxCounterService.recordRead("jack");
+
+		assertCounter(2, 0, 1, mailboxCounterService.get("jack"));
+	}
+
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	void usersSendingToEachOtherConcurrentlyDoNotDeadlock() throws Exception {
+		mailboxCounterService.get("mutual-a");
+		mailboxCounterService.get("mutual-b");
+
+		// Each send locks the counters of both users, half of them in the opposite direction
+		List<Future<?>> sends = new ArrayList<>();
+		try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+			for (int i = 0; i < 200; i++) {
+				Message message = i % 2 == 0 ? message("mutual-a", "mutual-b") : message("mutual-b", "mutual-a");
+				sends.add(executor.submit(() -> messageIngestionService.write(List.of(message))));
+			}
+			for (Future<?> send : sends) {
+				send.get();
+			}
+		}
+
+		assertCounter(100, 100, 100, mailboxCounterService.get("mutual-a"));
+		assertCounter(100, 100, 100, mailboxCounterService.get("mutual-b"));
+	}
+
+	private static Message message(String sender, String receiver) {
+		return new Message(sender, receiver, "hello " + receiver, new Timestamp(System.currentTimeMillis()));
+	}
+
+	private static void assertCounter(long inbox, long outbox, long unread, MailboxCounter counter) {
+		assertEquals(inbox, counter.getInbox(), "inbox");
+		assertEquals(outbox, counter.getOutbox(), "outbox");
+		assertEquals(unread, counter.getUnread(), "unread");
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.srdc.hw2.mailbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import com.srdc.hw2.dto.MailboxSync;
+import com.srdc.hw2.ingest.MessageIngestionService;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class MailboxSyncTests {
+
+	@LocalServerPort
+	int port;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	MessageIngestionService messageIngestionService;
+
+	@Autowired
+	MailboxCounterService mailboxCounterService;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	@Test
+	void syncReturnsOnlyTheMessagesAddedSinceAVersion() {
+		long start = mailboxCounterService.get("rita").getVersion();
+		mailboxCounterService.get("sam");
+
+		Message first = messageIngestionService.write(List.of(message("sam", "rita"))).get(0);
+		Message second = messageIngestionService.write(List.of(message("rita", "sam"), message("sam", "rita"))).get(1);
+
+		MailboxSync all = mailboxCounterService.sync("rita", start, 10);
+		assertEquals(3, all.messages().size());
+		assertEquals(first.getId(), all.messages().get(0).getId());
+		assertEquals(false, all.more());
+
+		MailboxSync paged = mailboxCounterService.sync("rita", start, 2);
+		assertTrue(paged.more());
+		MailboxSync rest = mailboxCounterService.sync("rita", paged.version(), 2);
+		assertEquals(List.of(second.getId()), rest.messages().stream().map(Message::getId).toList());
+		assertEquals(all.version(), rest.version());
+
+		assertEquals(List.of(), mailboxCounterService.sync("rita", all.version(), 10).messages());
+	}
+
+	@Test
+	void messagesToOneselfAreReturnedOnce() {
+		long start = mailboxCounterService.get("uri").getVersion();
+
+		Message note = messageIngestionService.write(List.of(message("uri", "uri"))).get(0);
+
+		MailboxSync sync = mailboxCounterService.sync("uri", start, 10);
+		assertEquals(List.of(note.getId()), sync.messages().stream().map(Message::getId).toList());
+		assertEquals(false, sync.more());
+	}
+
+	@Test
+	void unchangedMailboxIsAnsweredWithNotModified() throws Exception {
+		if (!userRepository.existsByUsername("tess")) {
+			userRepository.save(new User("tess", "secret", "Tess", "User", null, null, null, null, false));
+		}
+		String token = client.send(HttpRequest.newBuilder(uri("/api/user/login"))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"tess\",\"password\":\"secret\"}"))
+				.build(), HttpResponse.BodyHandlers.ofString()).body();
+
+		HttpResponse<String> first = get("/api/message/summary", token, null);
+		String etag = first.headers().firstValue("ETag").orElse(null);
+		assertEquals(200, first.statusCode());
+		assertNotNull(etag);
+		assertEquals(304, get("/api/message/summary", token, etag).statusCode());
+		assertEquals(304, get("/api/message?inout=in", token, etag).statusCode());
+
+		messageIngestionService.write(List.of(message("sam", "tess")));
+		HttpResponse<String> changed = get("/api/message?inout=in", token, etag);
+		assertEquals(200, changed.statusCode());
+		assertTrue(!etag.equals(changed.headers().firstValue("ETag").orElse(null)));
+	}
+
+	private HttpResponse<String> get(String path, String token, String etag) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(uri(path)).header("Authorization", token);
+		if (etag != null) {
+			request.header("If-None-Match", etag);
+		}
+		return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private static Message message(String sender, String receiver) {
+		return new Message(sender, receiver, "hello " + receiver, new Timestamp(System.currentTimeMillis()));
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://localhost:" + port + path);
+	}
+
+}
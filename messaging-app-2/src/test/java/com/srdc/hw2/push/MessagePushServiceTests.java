@@ -0,0 +1,152 @@
+package com.srdc.hw2.push;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.srdc.hw2.mailbox.MailboxCounterService;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.MessageRepository;
+import com.srdc.hw2.repository.UserRepository;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class MessagePushServiceTests {
+
+	@LocalServerPort
+	int port;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	MessageRepository messageRepository;
+
+	@Autowired
+	MailboxCounterService mailboxCounterService;
+
+	@Autowired
+	MessagePushService messagePushService;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	@BeforeEach
+	void createUsers() {
+		for (String username : new String[] {"pusher", "listener"}) {
+			if (!userRepository.existsByUsername(username)) {
+				userRepository.save(new User(username, "secret", username, username, null, null, null, null, false));
+			}
+		}
+	}
+
+	@Test
+	void sentMessagesArePushedAndReplayedAfterReconnect() throws Exception {
+		String sender = login("pusher");
+		String receiver = login("listener");
+		send(sender, "earlier");
+
+		HttpResponse<InputStream> stream = client.send(HttpRequest.newBuilder(uri("/api/message/stream"))
+				.header("Authorization", receiver).build(), HttpResponse.BodyHandlers.ofInputStream());
+		assertEquals(200, stream.statusCode());
+		BufferedReader events = new BufferedReader(new InputStreamReader(stream.body(), StandardCharsets.UTF_8));
+
+		send(sender, "first");
+		String firstId = readEvent(events, "first");
+		stream.body().close();
+
+		send(sender, "second");
+		HttpResponse<InputStream> resumed = client.send(HttpRequest.newBuilder(uri("/api/message/stream"))
+				.header("Authorization", receiver).header("Last-Event-ID", firstId).build(), HttpResponse.BodyHandlers.ofInputStream());
+		readEvent(new BufferedReader(new InputStreamReader(resumed.body(), StandardCharsets.UTF_8)), "second");
+		resumed.body().close();
+	}
+
+	@Test
+	@Timeout(30)
+	void messagesPublishedOutOfOrderAreAllPushedInOrder() throws Exception {
+		String receiver = login("listener");
+		HttpResponse<InputStream> stream = client.send(HttpRequest.newBuilder(uri("/api/message/stream"))
+				.header("Authorization", receiver).build(), HttpResponse.BodyHandlers.ofInputStream());
+		BufferedReader events = new BufferedReader(new InputStreamReader(stream.body(), StandardCharsets.UTF_8));
+		while (!events.readLine().endsWith("connected")) {
+			// Skips to the point where the stream is registered
+		}
+
+		// Stored as by two sends whose transactions then publish in the opposite order of their commits
+		List<Message> stored = new TransactionTemplate(transactionManager).execute(status -> {
+			List<Message> messages = List.of(message("early"), message("late"));
+			mailboxCounterService.recordSent(messages);
+			return messageRepository.saveAll(messages);
+		});
+		messagePushService.publish(stored.get(1));
+		messagePushService.publish(stored.get(0));
+
+		long early = Long.parseLong(readEvent(events, "early"));
+		long late = Long.parseLong(readEvent(events, "late"));
+		assertTrue(early < late);
+		stream.body().close();
+	}
+
+	private static Message message(String content) {
+		return new Message("pusher", "listener", content, new Timestamp(System.currentTimeMillis()));
+	}
+
+	private String login(String username) throws Exception {
+		return client.send(HttpRequest.newBuilder(uri("/api/user/login"))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\"secret\"}"))
+				.build(), HttpResponse.BodyHandlers.ofString()).body();
+	}
+
+	private void send(String token, String content) throws Exception {
+		HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/api/message"))
+				.header("Authorization", token)
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString("{\"receiver\":\"listener\",\"content\":\"" + content + "\"}"))
+				.build(), HttpResponse.BodyHandlers.ofString());
+		assertEquals(201, response.statusCode());
+	}
+
+	/**
+	 * Reads events until the next message event and checks its content, returning its id.
+	 */
+	private static String readEvent(BufferedReader events, String content) throws Exception {
+		String id = null;
+		for (String line = events.readLine(); line != null; line = events.readLine()) {
+			if (line.startsWith("id:")) {
+				id = line.substring(3);
+			} else if (line.startsWith("data:")) {
+				assertTrue(line.contains("\"content\":\"" + content + "\""), line);
+				return id;
+			}
+		}
+		throw new AssertionError("Stream ended before a message was received");
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://localhost:" + port + path);
+	}
+
+}
@@ -0,0 +1,165 @@
+package com.srdc.hw2.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import com.srdc.hw2.controller.MessageController;
+import com.srdc.hw2.dto.BatchMessageRequest;
+import com.srdc.hw2.ingest.MessageIngestionService;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+import com.srdc.hw2.security.AuthPrincipal;
+
+/**
+ * Saturates the instance by holding every connection of a two-connection pool, with the ingestion queue in front of it.
+ */
+@SpringBootTest(properties = {
+		"messaging.ingest.enabled=true",
+		"messaging.ingest.queue-capacity=10",
+		"messaging.load-shedding.max-pool-waiters=3",
+		"spring.datasource.hikari.maximum-pool-size=2",
+		"spring.datasource.hikari.connection-timeout=20000"})
+@ActiveProfiles("test")
+class LoadSheddingTests {
+
+	private static final AuthPrincipal SENDER = new AuthPrincipal("shed-sender", false, Long.MAX_VALUE);
+
+	@Autowired
+	MessageController messageController;
+
+	@Autowired
+	MessageIngestionService messageIngestionService;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@BeforeEach
+	void createReceiver() {
+		if (!userRepository.existsByUsername("shed-receiver")) {
+			userRepository.save(new User("shed-receiver", "secret", null, null, null, null, null, null, false));
+		}
+	}
+
+	@Test
+	void sendsAreShedWhileThreadsWaitForAConnection() throws Exception {
+		double shed = rejected("pool");
+		List<Connection> held = holdAllConnections();
+		List<Thread> waiters = new ArrayList<>();
+		try {
+			for (int i = 0; i < 3; i++) {
+				waiters.add(Thread.ofVirtual().start(() -> {
+					try (Connection connection = dataSource.getConnection()) {
+						// Released right away once the test lets go of the pool
+					} catch (SQLException e) {
+						// Timed out; the test has failed already
+					}
+				}));
+			}
+			awaitTrue(() -> pool().getThreadsAwaitingConnection() >= 3);
+
+			assertUnavailable(send());
+			assertUnavailable(sendBatch());
+			assertEquals(shed + 2, rejected("pool"));
+		} finally {
+			release(held);
+		}
+		for (Thread waiter : waiters) {
+			waiter.join();
+		}
+		assertEquals(HttpStatus.CREATED, send().getStatusCode());
+	}
+
+	@Test
+	void sendsAreShedWhileTheIngestionQueueIsNearlyFull() throws Exception {
+		double shed = rejected("queue");
+		List<Connection> held = holdAllConnections();
+		try {
+			// The writer takes the first batch and waits for a connection, the following messages stay queued
+			for (int i = 0; i < 100 && messageIngestionService.queueDepth() < 9; i++) {
+				messageIngestionService.submit(new Message("shed-sender", "shed-receiver", "queued " + i, new Timestamp(System.currentTimeMillis())));
+				Thread.sleep(10);
+			}
+			assertTrue(messageIngestionService.queueDepth() >= 9);
+
+			assertUnavailable(send());
+			assertUnavailable(sendBatch());
+			assertEquals(shed + 2, rejected("queue"));
+		} finally {
+			release(held);
+		}
+		awaitTrue(() -> messageIngestionService.queueDepth() == 0);
+		assertEquals(HttpStatus.CREATED, send().getStatusCode());
+	}
+
+	private ResponseEntity<?> send() {
+		return messageController.sendMessage(SENDER, new Message(null, "shed-receiver", "Hello", null), "durable").join();
+	}
+
+	private ResponseEntity<?> sendBatch() {
+		return messageController.sendBatchMessage(SENDER, new BatchMessageRequest(List.of("shed-receiver"), "Hello"));
+	}
+
+	private static void assertUnavailable(ResponseEntity<?> response) {
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+		assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+	}
+
+	private double rejected(String reason) {
+		return meterRegistry.get("messaging.send.rejected").tag("reason", reason).counter().count();
+	}
+
+	private List<Connection> holdAllConnections() throws SQLException {
+		List<Connection> held = new ArrayList<>();
+		while (held.size() < 2) {
+			held.add(dataSource.getConnection());
+		}
+		return held;
+	}
+
+	private static void release(List<Connection> held) throws SQLException {
+		for (Connection connection : held) {
+			connection.close();
+		}
+	}
+
+	private HikariPoolMXBean pool() throws SQLException {
+		return dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+	}
+
+	private interface Condition {
+		boolean holds() throws Exception;
+	}
+
+	private static void awaitTrue(Condition condition) throws Exception {
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while (!condition.holds()) {
+			assertTrue(System.nanoTime() < deadline, "Timed out waiting for the condition");
+			Thread.sleep(10);
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.srdc.hw2.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import com.srdc.hw2.controller.MessageController;
+import com.srdc.hw2.dto.BatchMessageRequest;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+import com.srdc.hw2.security.AuthPrincipal;
+
+@SpringBootTest(properties = {"messaging.rate-limit.enabled=true", "messaging.rate-limit.per-second=0.5", "messaging.rate-limit.burst=3"})
+@ActiveProfiles("test")
+class SendThrottleTests {
+
+	@Autowired
+	MessageController messageController;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Test
+	void sendsBeyondTheBurstAreRefusedWithRetryAfter() {
+		createReceiver("throttled-receiver");
+		AuthPrincipal flooder = new AuthPrincipal("throttled-sender", false, Long.MAX_VALUE);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(HttpStatus.CREATED, send(flooder).getStatusCode());
+		}
+		ResponseEntity<Message> refused = send(flooder);
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, refused.getStatusCode());
+		// One token is added every two seconds
+		long retryAfter = Long.parseLong(refused.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+		assertTrue(retryAfter >= 1 && retryAfter <= 2);
+
+		// Other users have their own buckets
+		assertEquals(HttpStatus.CREATED, send(new AuthPrincipal("other-sender", false, Long.MAX_VALUE)).getStatusCode());
+	}
+
+	@Test
+	void batchSendsTakeATokenPerReceiver() {
+		createReceiver("throttled-receiver");
+		createReceiver("throttled-receiver-2");
+		AuthPrincipal flooder = new AuthPrincipal("batch-flooder", false, Long.MAX_VALUE);
+		BatchMessageRequest batch = new BatchMessageRequest(List.of("throttled-receiver", "throttled-receiver-2"), "Hello");
+
+		assertEquals(HttpStatus.CREATED, messageController.sendBatchMessage(flooder, batch).getStatusCode());
+		// One token is left, the batch needs two
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, messageController.sendBatchMessage(flooder, batch).getStatusCode());
+		assertEquals(HttpStatus.CREATED, send(flooder).getStatusCode());
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, send(flooder).getStatusCode());
+	}
+
+	@Test
+	void requestsBeyondTheBurstAreGrantedFromAFullBucketAndRepaid() {
+		AtomicLong now = new AtomicLong(-5_000_000_000L);
+		TokenBuckets buckets = new TokenBuckets(10, 2, now::get);
+
+		assertEquals(0, buckets.tryAcquire("user", 5));
+		// Three tokens short, plus the one asked for
+		assertEquals(400_000_000L, buckets.tryAcquire("user"));
+		assertEquals(500_000_000L, buckets.tryAcquire("user", 2));
+
+		// Another large request waits for the bucket to be full again
+		now.addAndGet(400_000_000L);
+		assertEquals(100_000_000L, buckets.tryAcquire("user", 5));
+		now.addAndGet(100_000_000L);
+		assertEquals(0, buckets.tryAcquire("user", 5));
+	}
+
+	@Test
+	void bucketsRefillAndIdleBucketsAreEvicted() {
+		AtomicLong now = new AtomicLong(-5_000_000_000L);
+		TokenBuckets buckets = new TokenBuckets(10, 2, now::get);
+
+		assertEquals(0, buckets.tryAcquire("user"));
+		assertEquals(0, buckets.tryAcquire("user"));
+		assertEquals(100_000_000L, buckets.tryAcquire("user"));
+
+		now.addAndGet(100_000_000L);
+		assertEquals(0, buckets.tryAcquire("user"));
+		assertEquals(0, buckets.evictIdle());
+
+		// Full again after two intervals without a send
+		now.addAndGet(200_000_000L);
+		assertEquals(1, buckets.evictIdle());
+		assertEquals(0, buckets.size());
+	}
+
+	private void createReceiver(String username) {
+		if (!userRepository.existsByUsername(username)) {
+			userRepository.save(new User(username, "secret", null, null, null, null, null, null, false));
+		}
+	}
+
+	private ResponseEntity<Message> send(AuthPrincipal sender) {
+		return messageController.sendMessage(sender, new Message(null, "throttled-receiver", "Hello", null), "durable").join();
+	}
+}
@@ -0,0 +1,121 @@
+package com.srdc.hw2.replica;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import com.srdc.hw2.controller.UserController;
+import com.srdc.hw2.dto.UserView;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+import com.srdc.hw2.security.AuthInterceptor;
+import com.srdc.hw2.security.AuthPrincipal;
+
+/**
+ * Runs the application against two embedded databases: the usual test database as the primary and a second one as
+ * its replica. Nothing replicates between them, so a read shows which database served it. The replica is read
+ * through a user that may only select, so a write routed to it would fail.
+ */
+@SpringBootTest(properties = {
+		"messaging.replica.enabled=true",
+		"messaging.replica.urls=jdbc:h2:mem:replica-test;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+		"messaging.replica.username=reader",
+		"messaging.replica.password=reader",
+		"messaging.replica.read-your-writes-ms=500"})
+@ActiveProfiles("test")
+class ReplicaRoutingTests {
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	UserController userController;
+
+	@Autowired
+	ReadYourWritesInterceptor readYourWritesInterceptor;
+
+	@BeforeAll
+	static void createReplica() {
+		JdbcDataSource replica = new JdbcDataSource();
+		// Kept open by the delay, as the reader may not set it
+		replica.setURL("jdbc:h2:mem:replica-test;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+		replica.setUser("sa");
+		Flyway.configure().dataSource(replica).locations("classpath:db/migration/common", "classpath:db/migration/h2").load().migrate();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(replica);
+		jdbcTemplate.execute("CREATE USER IF NOT EXISTS reader PASSWORD 'reader'");
+		jdbcTemplate.execute("GRANT SELECT ON SCHEMA public TO reader");
+		jdbcTemplate.update("INSERT INTO users (id, username, password, is_admin) VALUES (1, 'on-replica', 'secret', FALSE)");
+	}
+
+	/**
+	 * Unbinds the mock request the test framework binds to each test thread, so tests start outside of a request.
+	 */
+	@BeforeEach
+	@AfterEach
+	void leaveRequest() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void readOnlyRequestsAreServedByTheReplica() {
+		userRepository.save(new User("on-primary", "secret", null, null, null, null, null, null, false));
+
+		// Outside of a request, e.g. in the background jobs, everything is read from the primary
+		assertTrue(userRepository.existsByUsername("on-primary"));
+		assertFalse(userRepository.existsByUsername("on-replica"));
+
+		AuthPrincipal admin = enterRequest("GET", "replica-admin", true);
+		assertTrue(userRepository.existsByUsername("on-replica"));
+		assertFalse(userRepository.existsByUsername("on-primary"));
+		List<String> listed = userController.listUsers(admin, 0, 100, null, null).getBody().content().stream().map(UserView::username).toList();
+		assertTrue(listed.contains("on-replica"));
+		assertFalse(listed.contains("on-primary"));
+
+		// Writes in a request still go to the primary
+		userRepository.save(new User("saved-in-request", "secret", null, null, null, null, null, null, false));
+		RequestContextHolder.resetRequestAttributes();
+		assertTrue(userRepository.existsByUsername("saved-in-request"));
+	}
+
+	@Test
+	void recentWritersReadFromThePrimary() throws Exception {
+		userRepository.save(new User("written", "secret", null, null, null, null, null, null, false));
+
+		enterRequest("POST", "writer", false);
+		assertTrue(userRepository.existsByUsername("written"));
+
+		// Other users and later reads of the writer after the window are served by the replica
+		enterRequest("GET", "reader", false);
+		assertFalse(userRepository.existsByUsername("written"));
+		enterRequest("GET", "writer", false);
+		assertTrue(userRepository.existsByUsername("written"));
+		Thread.sleep(600);
+		assertFalse(userRepository.existsByUsername("written"));
+	}
+
+	/**
+	 * Binds a request of an authenticated user to the current thread, passing it through the read-your-writes interceptor.
+	 */
+	private AuthPrincipal enterRequest(String method, String username, boolean admin) {
+		AuthPrincipal principal = new AuthPrincipal(username, admin, Long.MAX_VALUE);
+		MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/user");
+		request.setAttribute(AuthInterceptor.PRINCIPAL, principal);
+		readYourWritesInterceptor.preHandle(request, new MockHttpServletResponse(), null);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+		return principal;
+	}
+}
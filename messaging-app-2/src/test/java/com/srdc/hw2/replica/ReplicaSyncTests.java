@@ -0,0 +1,115 @@
+package com.srdc.hw2.replica;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import com.srdc.hw2.controller.MessageController;
+import com.srdc.hw2.dto.MailboxSync;
+import com.srdc.hw2.mailbox.MailboxCounterService;
+import com.srdc.hw2.security.AuthInterceptor;
+import com.srdc.hw2.security.AuthPrincipal;
+
+/**
+ * Runs the application against two replicas that have applied different amounts of a mailbox's changes, as replicas
+ * lagging by different amounts do. Reads are spread over them round-robin.
+ */
+@SpringBootTest(properties = {
+		"messaging.replica.enabled=true",
+		"messaging.replica.urls=jdbc:h2:mem:sync-replica-0;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE,jdbc:h2:mem:sync-replica-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+		"messaging.replica.username=reader",
+		"messaging.replica.password=reader",
+		"messaging.replica.policy=round-robin"})
+@ActiveProfiles("test")
+class ReplicaSyncTests {
+
+	@Autowired
+	MailboxCounterService mailboxCounterService;
+
+	@Autowired
+	MessageController messageController;
+
+	/**
+	 * Gives the mailbox of "syncer" one message on the first replica and two on the second, each with its counter.
+	 */
+	@BeforeAll
+	static void createReplicas() {
+		for (int messages = 1; messages <= 2; messages++) {
+			JdbcDataSource replica = new JdbcDataSource();
+			replica.setURL("jdbc:h2:mem:sync-replica-" + (messages - 1) + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+			replica.setUser("sa");
+			Flyway.configure().dataSource(replica).locations("classpath:db/migration/common", "classpath:db/migration/h2").load().migrate();
+			JdbcTemplate jdbcTemplate = new JdbcTemplate(replica);
+			jdbcTemplate.execute("CREATE USER IF NOT EXISTS reader PASSWORD 'reader'");
+			jdbcTemplate.execute("GRANT SELECT ON SCHEMA public TO reader");
+			for (int version = 1; version <= messages; version++) {
+				jdbcTemplate.update("INSERT INTO messages (id, sender, receiver, content, timestamp, is_read, receiver_version) " +
+						"VALUES (?, 'sender', 'syncer', 'message', CURRENT_TIMESTAMP, FALSE, ?)", version, version);
+			}
+			jdbcTemplate.update("INSERT INTO mailbox_counters (username, inbox, outbox, unread, version) VALUES ('syncer', ?, 0, ?, ?)",
+					messages, messages, messages);
+		}
+	}
+
+	@AfterEach
+	void leaveRequest() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void syncReadsTheCounterAndTheMessagesFromOneReplica() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/message/sync");
+		request.setAttribute(AuthInterceptor.PRINCIPAL, new AuthPrincipal("syncer", false, Long.MAX_VALUE));
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+		Set<Long> versions = new HashSet<>();
+		for (int i = 0; i < 4; i++) {
+			MailboxSync sync = mailboxCounterService.sync("syncer", 0, 10);
+			assertEquals(sync.version(), sync.messages().size());
+			versions.add(sync.version());
+		}
+		assertEquals(Set.of(1L, 2L), versions);
+	}
+
+	@Test
+	void listingsAreReadFromTheReplicaTheirETagComesFrom() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/message");
+		AuthPrincipal principal = new AuthPrincipal("syncer", false, Long.MAX_VALUE);
+		request.setAttribute(AuthInterceptor.PRINCIPAL, principal);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+		Set<String> etags = new HashSet<>();
+		for (int i = 0; i < 4; i++) {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			int messages = messageController.getMessages(principal, new ServletWebRequest(request, response), "in", 0, 10, null, null, null)
+					.getBody().content().size();
+			String etag = response.getHeader(HttpHeaders.ETAG);
+			assertEquals("-" + messages + "\"", etag.substring(etag.lastIndexOf('-')));
+			etags.add(etag);
+
+			response = new MockHttpServletResponse();
+			messages = messageController.getMessagesByCursor(principal, new ServletWebRequest(request, response), "in", null, 10, null, null)
+					.getBody().content().size();
+			etag = response.getHeader(HttpHeaders.ETAG);
+			assertEquals("-" + messages + "\"", etag.substring(etag.lastIndexOf('-')));
+			etags.add(etag);
+		}
+		assertEquals(2, etags.size());
+	}
+
+}
@@ -0,0 +1,284 @@
+package com.srdc.hw2.repository;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+import com.srdc.hw2.dto.MessageCursor;
+import com.srdc.hw2.search.MessageSearchService;
+
+/**
+ * Runs every repository query against a seeded schema created by the migrations and checks its plan:
+ * a query that reads a whole table fails the build unless it is listed as an expected full scan.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class QueryPlanTests {
+
+	private static final List<String> statements = new CopyOnWriteArrayList<>();
+	private static volatile Thread recording;
+
+	/**
+	 * Queries that read a whole table by design.
+	 */
+	private static final Set<String> FULL_SCANS = Set.of(
+			"UserRepository.findAll",
+			"UserRepository.findAllViews",
+			"UserRepository.findAllUsernames",
+			"UserTombstoneRepository.findAllOldestFirst",
+			"ConversationRepository.deleteOlderThan");
+
+	/**
+	 * Case-insensitive searches written for the lowercase and trigram expression indexes of the PostgreSQL
+	 * migrations. H2 has no expression indexes, so they scan here and their plans are not checked by this test.
+	 */
+	private static final Set<String> POSTGRESQL_ONLY = Set.of(
+			"UserRepository.findUsersByFieldAndValue",
+			"MessageRepository.findInboxMessagesByFieldAndValue",
+			"MessageRepository.findOutboxMessagesByFieldAndValue");
+
+	private static final Pageable PAGE = PageRequest.of(0, 10);
+	private static final Timestamp NOW = new Timestamp(System.currentTimeMillis());
+	private static final Timestamp OLD = Timestamp.valueOf("2000-01-01 00:00:00");
+	private static final Date MONTH = Date.valueOf("2000-01-01");
+
+	@TestConfiguration
+	static class StatementRecorder {
+
+		@Bean
+		HibernatePropertiesCustomizer statementInspector() {
+			return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, (StatementInspector) sql -> {
+				// Background jobs share the session factory, only keep the statements of the test
+				if (Thread.currentThread() == recording) {
+					statements.add(sql);
+				}
+				return sql;
+			});
+		}
+	}
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	MessageRepository messageRepository;
+
+	@Autowired
+	MessageTermRepository messageTermRepository;
+
+	@Autowired
+	MailboxCounterRepository mailboxCounterRepository;
+
+	@Autowired
+	UserTombstoneRepository userTombstoneRepository;
+
+	@Autowired
+	ConversationRepository conversationRepository;
+
+	@Autowired
+	ArchiveSegmentRepository archiveSegmentRepository;
+
+	@Autowired
+	ArchiveParticipantRepository archiveParticipantRepository;
+
+	@Autowired
+	MessageSearchService messageSearchService;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Test
+	void everyRepositoryQueryIsChecked() {
+		Set<String> checked = queries().keySet();
+		List<String> missing = new ArrayList<>();
+		for (Class<?> repository : List.of(UserRepository.class, MessageRepository.class, MessageTermRepository.class,
+				MailboxCounterRepository.class, UserTombstoneRepository.class, ConversationRepository.class,
+				ArchiveSegmentRepository.class, ArchiveParticipantRepository.class)) {
+			for (Method method : repository.getDeclaredMethods()) {
+				String name = repository.getSimpleName() + "." + method.getName();
+				if (!method.isSynthetic() && !checked.contains(name)) {
+					missing.add(name);
+				}
+			}
+		}
+		assertTrue(missing.isEmpty(), "Queries without a plan check: " + missing);
+	}
+
+	@Test
+	void repositoryQueriesUseIndexes() {
+		seed();
+		recording = Thread.currentThread();
+		List<String> failures = new ArrayList<>();
+		queries().forEach((name, query) -> {
+			statements.clear();
+			query.run();
+			assertTrue(!statements.isEmpty(), name + " ran no statement");
+			for (String sql : statements) {
+				String plan = explain(sql);
+				if (plan.toLowerCase(Locale.ROOT).contains(".tablescan") && !FULL_SCANS.contains(name) && !POSTGRESQL_ONLY.contains(name)) {
+					failures.add(name + " scans a table:\n" + plan);
+				}
+			}
+		});
+		assertTrue(failures.isEmpty(), String.join("\n\n", failures));
+	}
+
+	/**
+	 * Calls each repository query, and the queries built by the search service, with typical arguments.
+	 */
+	private Map<String, Runnable> queries() {
+		Map<String, Runnable> queries = new LinkedHashMap<>();
+		queries.put("UserRepository.findByUsername", () -> userRepository.findByUsername("user1"));
+		queries.put("UserRepository.deleteByUsername", () -> userRepository.deleteByUsername("user1"));
+		queries.put("UserRepository.existsByUsername", () -> userRepository.existsByUsername("user2"));
+		queries.put("UserRepository.findExistingUsernames", () -> userRepository.findExistingUsernames(List.of("user2", "user3")));
+		queries.put("UserRepository.findAllUsernames", () -> userRepository.findAllUsernames());
+		queries.put("UserRepository.findAll", () -> userRepository.findAll(PAGE));
+		queries.put("UserRepository.findAllViews", () -> userRepository.findAllViews(PAGE));
+		queries.put("UserRepository.findUsersByFieldAndValue", () -> userRepository.findUsersByFieldAndValue("name", "us", PAGE));
+
+		queries.put("MessageRepository.findByReceiver", () -> messageRepository.findByReceiver("user2", PAGE));
+		queries.put("MessageRepository.findBySender", () -> messageRepository.findBySender("user2", PAGE));
+		queries.put("MessageRepository.findInboxPage", () -> messageRepository.findInboxPage("user2", PAGE));
+		queries.put("MessageRepository.findOutboxPage", () -> messageRepository.findOutboxPage("user2", PAGE));
+		queries.put("MessageRepository.markRead", () -> messageRepository.markRead(1, "user2"));
+		queries.put("MessageRepository.existsInInbox", () -> messageRepository.existsInInbox(1, "user2"));
+		queries.put("MessageRepository.findIdsByUser", () -> messageRepository.findIdsByUser("user2", PAGE));
+		queries.put("MessageRepository.anonymize", () -> messageRepository.anonymize("user2", List.of(1L, 2L)));
+		queries.put("MessageRepository.findInboxMessagesByFieldAndValue", () -> messageRepository.findInboxMessagesByFieldAndValue("user2", "sender", "us", PAGE));
+		queries.put("MessageRepository.findOutboxMessagesByFieldAndValue", () -> messageRepository.findOutboxMessagesByFieldAndValue("user2", "receiver", "us", PAGE));
+		queries.put("MessageRepository.findUnindexedMessages", () -> messageRepository.findUnindexedMessages(0, PAGE));
+		queries.put("MessageRepository.findInboxBefore", () -> messageRepository.findInboxBefore("user2", NOW, Long.MAX_VALUE, PAGE));
+		queries.put("MessageRepository.findOutboxBefore", () -> messageRepository.findOutboxBefore("user2", NOW, Long.MAX_VALUE, PAGE));
+		queries.put("MessageRepository.findInboxBySenderBefore", () -> messageRepository.findInboxBySenderBefore("user2", "us", NOW, Long.MAX_VALUE, PAGE));
+		queries.put("MessageRepository.findOutboxByReceiverBefore", () -> messageRepository.findOutboxByReceiverBefore("user2", "us", NOW, Long.MAX_VALUE, PAGE));
+		queries.put("MessageRepository.findConversationBefore", () -> messageRepository.findConversationBefore("user2", "user3", NOW, Long.MAX_VALUE, PAGE));
+		queries.put("MessageRepository.findConversationSince", () -> messageRepository.findConversationSince("user2", "user3", NOW, 0, PAGE));
+		queries.put("MessageRepository.findParticipants", () -> messageRepository.findParticipants(List.of(-1L, -2L)));
+		queries.put("MessageRepository.findReceivedBetween", () -> messageRepository.findReceivedBetween("user2", 0, 10, PAGE));
+		queries.put("MessageRepository.findSentBetween", () -> messageRepository.findSentBetween("user2", 0, 10, PAGE));
+		queries.put("MessageRepository.streamInbox", () -> {
+			try (var messages = messageRepository.streamInbox("user2")) {
+				messages.count();
+			}
+		});
+		queries.put("MessageRepository.streamOutbox", () -> {
+			try (var messages = messageRepository.streamOutbox("user2")) {
+				messages.count();
+			}
+		});
+
+		queries.put("MessageTermRepository.findIdsByUser", () -> messageTermRepository.findIdsByUser("user2", PAGE));
+		queries.put("MessageRepository.findOldestBefore", () -> messageRepository.findOldestBefore(OLD, PAGE));
+		queries.put("MessageRepository.findViewsByIds", () -> messageRepository.findViewsByIds(List.of(-1L, -2L)));
+		queries.put("MessageRepository.deleteByIds", () -> messageRepository.deleteByIds(List.of(-1L, -2L)));
+
+		queries.put("MessageTermRepository.deleteByMessageIds", () -> messageTermRepository.deleteByMessageIds(List.of(-1L, -2L)));
+		queries.put("MessageTermRepository.anonymize", () -> messageTermRepository.anonymize("user2", List.of(1L, 2L)));
+		queries.put("MessageTermRepository.findBackfillPosition", () -> messageTermRepository.findBackfillPosition());
+		queries.put("MessageTermRepository.saveBackfillPosition", () -> messageTermRepository.saveBackfillPosition(0, false));
+
+		queries.put("MailboxCounterRepository.createFromMessages", () -> mailboxCounterRepository.createFromMessages("user2", 1));
+		queries.put("MailboxCounterRepository.add", () -> mailboxCounterRepository.add("user2", 1, 1));
+		queries.put("MailboxCounterRepository.removeUnread", () -> mailboxCounterRepository.removeUnread("user2"));
+		queries.put("MailboxCounterRepository.removeArchived", () -> mailboxCounterRepository.removeArchived("user2", 1, 1, 1));
+		queries.put("MailboxCounterRepository.touch", () -> mailboxCounterRepository.touch("user2"));
+		queries.put("MailboxCounterRepository.findVersions", () -> mailboxCounterRepository.findVersions(List.of("user2", "user3")));
+		queries.put("MailboxCounterRepository.deleteByUsername", () -> mailboxCounterRepository.deleteByUsername("user2"));
+
+		queries.put("UserTombstoneRepository.findAllOldestFirst", () -> userTombstoneRepository.findAllOldestFirst());
+		queries.put("UserTombstoneRepository.findPendingUsernames", () -> userTombstoneRepository.findPendingUsernames(List.of("user2", "user3")));
+		queries.put("UserTombstoneRepository.claim", () -> userTombstoneRepository.claim("removed", "owner", NOW, NOW));
+		queries.put("UserTombstoneRepository.deleteClaimed", () -> userTombstoneRepository.deleteClaimed("removed", "owner"));
+
+		queries.put("ConversationRepository.create", () -> conversationRepository.create("user2", "user4"));
+		queries.put("ConversationRepository.findExisting", () -> conversationRepository.findExisting(List.of("user2", "user3"), List.of("user2", "user3")));
+		queries.put("ConversationRepository.updateLastMessage", () -> conversationRepository.updateLastMessage("user2", "user3", 1, NOW));
+		queries.put("ConversationRepository.findBefore", () -> conversationRepository.findBefore("user2", NOW, Long.MAX_VALUE, PAGE));
+		queries.put("ConversationRepository.deleteByPartner", () -> conversationRepository.deleteByPartner("user2"));
+		queries.put("ConversationRepository.deleteByUsername", () -> conversationRepository.deleteByUsername("user2"));
+		queries.put("ConversationRepository.deleteOlderThan", () -> conversationRepository.deleteOlderThan(OLD));
+
+		queries.put("ArchiveSegmentRepository.findMonth", () -> archiveSegmentRepository.findMonth("user2", MONTH));
+		queries.put("ArchiveSegmentRepository.findMonths", () -> archiveSegmentRepository.findMonths("user2"));
+		queries.put("ArchiveSegmentRepository.deleteOlderThan", () -> archiveSegmentRepository.deleteOlderThan(MONTH));
+		queries.put("ArchiveSegmentRepository.deleteByUsername", () -> archiveSegmentRepository.deleteByUsername("user2"));
+
+		queries.put("ArchiveParticipantRepository.findSegments", () -> archiveParticipantRepository.findSegments("user2", PAGE));
+		queries.put("ArchiveParticipantRepository.findConversationSegments", () -> archiveParticipantRepository.findConversationSegments("user2", "user3", MONTH));
+		queries.put("ArchiveParticipantRepository.deleteFromSegment", () -> archiveParticipantRepository.deleteFromSegment("user2", "user3", MONTH, 1));
+
+		queries.put("MessageSearchService.searchInbox", () -> messageSearchService.searchInbox("user2", "message \"message 1\"", PAGE));
+		queries.put("MessageSearchService.searchOutbox", () -> messageSearchService.searchOutbox("user2", "message", PAGE));
+		queries.put("MessageSearchService.searchInboxBefore", () -> messageSearchService.searchInboxBefore("user2", "message 1", MessageCursor.FIRST, 10));
+		queries.put("MessageSearchService.searchOutboxBefore", () -> messageSearchService.searchOutboxBefore("user2", "message", MessageCursor.FIRST, 10));
+		return queries;
+	}
+
+	/**
+	 * Fills the tables with enough rows for the planner to prefer an index wherever one applies.
+	 */
+	private void seed() {
+		jdbcTemplate.update("INSERT INTO users (id, username, password, name, surname, is_admin) " +
+				"SELECT -n, 'user' || n, 'secret', 'User', 'U' || n, FALSE FROM (SELECT \"X\" AS n FROM SYSTEM_RANGE(1, 1000))");
+		jdbcTemplate.update("INSERT INTO messages (id, sender, receiver, content, timestamp, is_read) " +
+				"SELECT -n, 'user' || MOD(n, 1000), 'user' || MOD(n * 7, 1000), 'message ' || n, CURRENT_TIMESTAMP, FALSE " +
+				"FROM (SELECT \"X\" AS n FROM SYSTEM_RANGE(1, 10000))");
+		jdbcTemplate.update("UPDATE messages SET participant_low = LEAST(sender, receiver), participant_high = GREATEST(sender, receiver) WHERE id < 0");
+		jdbcTemplate.update("INSERT INTO conversations (username, partner, last_message_id, last_timestamp) " +
+				"SELECT DISTINCT sender, receiver, -1, CURRENT_TIMESTAMP FROM messages WHERE id < 0");
+		jdbcTemplate.update("INSERT INTO message_terms (id, message_id, sender, receiver, timestamp, term, frequency) " +
+				"SELECT id, id, sender, receiver, timestamp, 'message', 1 FROM messages WHERE id < 0");
+		jdbcTemplate.update("INSERT INTO mailbox_counters (username, inbox, outbox, unread) " +
+				"SELECT username, 0, 0, 0 FROM users WHERE id < 0");
+		jdbcTemplate.update("INSERT INTO user_tombstones (username, removed_at) VALUES ('removed', CURRENT_TIMESTAMP)");
+		jdbcTemplate.execute("ANALYZE");
+	}
+
+	/**
+	 * Returns the plan of a statement as chosen by the database, with its parameters left unbound.
+	 */
+	private String explain(String sql) {
+		return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+			try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+				for (int i = 1; i <= explain.getParameterMetaData().getParameterCount(); i++) {
+					explain.setNull(i, Types.NULL);
+				}
+				StringBuilder plan = new StringBuilder();
+				try (ResultSet rows = explain.executeQuery()) {
+					while (rows.next()) {
+						plan.append(rows.getString(1)).append('\n');
+					}
+				}
+				return plan.toString();
+			}
+		});
+	}
+
+}
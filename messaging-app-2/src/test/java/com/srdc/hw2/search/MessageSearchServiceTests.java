@@ -0,0 +1,99 @@
+package com.srdc.hw2.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Timestamp;
+import java.util.LinkedHashSet;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+import com.srdc.hw2.dto.MessageCursor;
+import com.srdc.hw2.model.Message;
+import com.srdc.hw2.repository.MessageRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class MessageSearchServiceTests {
+
+	@Autowired
+	MessageRepository messageRepository;
+
+	@Autowired
+	MessageSearchService messageSearchService;
+
+	@BeforeEach
+	void sendMessages() {
+		send("bob", "alice", "Lunch tomorrow? The new place near the office.");
+		send("carol", "alice", "Office party: lunch, lunch and more lunch!");
+		send("bob", "alice", "Did you see the report?");
+		send("alice", "bob", "Lunch sounds good");
+	}
+
+	@Test
+	void termQueriesMatchAllTermsRankedByFrequency() {
+		assertEquals(List.of("carol", "bob"), senders(messageSearchService.searchInbox("alice", "LUNCH office", PageRequest.of(0, 10))));
+		assertEquals(List.of("bob"), senders(messageSearchService.searchInbox("alice", "report", PageRequest.of(0, 10))));
+		assertEquals(0, messageSearchService.searchInbox("alice", "dinner", PageRequest.of(0, 10)).getTotalElements());
+	}
+
+	@Test
+	void phraseQueriesMatchVerbatim() {
+		assertEquals(List.of("bob"), senders(messageSearchService.searchInbox("alice", "\"near the office\"", PageRequest.of(0, 10))));
+		assertEquals(0, messageSearchService.searchInbox("alice", "\"office near\"", PageRequest.of(0, 10)).getTotalElements());
+	}
+
+	@Test
+	void searchIsScopedToTheMailbox() {
+		Page<Message> outbox = messageSearchService.searchOutbox("alice", "lunch", PageRequest.of(0, 1));
+
+		assertEquals(1, outbox.getTotalElements());
+		assertEquals("bob", outbox.getContent().get(0).getReceiver());
+	}
+
+	@Test
+	void keysetSearchPagesNewestFirst() {
+		List<Message> first = messageSearchService.searchInboxBefore("alice", "office LUNCH", MessageCursor.FIRST, 1);
+		assertEquals(List.of("carol"), first.stream().map(Message::getSender).toList());
+		List<Message> second = messageSearchService.searchInboxBefore("alice", "office LUNCH", MessageCursor.of(first.get(0)), 1);
+		assertEquals(List.of("bob"), second.stream().map(Message::getSender).toList());
+		assertEquals(List.of(), messageSearchService.searchInboxBefore("alice", "office LUNCH", MessageCursor.of(second.get(0)), 1));
+
+		assertEquals(List.of("bob"), messageSearchService.searchInboxBefore("alice", "lunch \"near the office\"", MessageCursor.FIRST, 10)
+				.stream().map(Message::getSender).toList());
+		assertEquals(1, messageSearchService.searchOutboxBefore("alice", "lunch", MessageCursor.FIRST, 10).size());
+	}
+
+	@Test
+	void keysetSearchWalksTheRarestTerm() {
+		assertEquals(List.of("report", "lunch"), messageSearchService.byFrequency("receiver", "alice", new LinkedHashSet<>(List.of("lunch", "report"))));
+		assertEquals(List.of("bob"), messageSearchService.searchInboxBefore("alice", "lunch tomorrow", MessageCursor.FIRST, 10)
+				.stream().map(Message::getSender).toList());
+	}
+
+	@Test
+	void completedBackfillIsNotRepeated() {
+		messageRepository.save(new Message("dave", "alice", "Unindexed lunch", new Timestamp(System.currentTimeMillis())));
+
+		// The backfill completed when the application started
+		messageSearchService.backfill();
+		assertEquals(0, messageSearchService.searchInbox("alice", "unindexed", PageRequest.of(0, 10)).getTotalElements());
+		messageSearchService.indexUnindexedMessages();
+		assertEquals(1, messageSearchService.searchInbox("alice", "unindexed", PageRequest.of(0, 10)).getTotalElements());
+	}
+
+	private void send(String sender, String receiver, String content) {
+		messageSearchService.index(messageRepository.save(new Message(sender, receiver, content, new Timestamp(System.currentTimeMillis()))));
+	}
+
+	private static List<String> senders(Page<Message> messages) {
+		return messages.map(Message::getSender).getContent();
+	}
+
+}
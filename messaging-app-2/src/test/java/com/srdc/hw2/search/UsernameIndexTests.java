@@ -0,0 +1,52 @@
+package com.srdc.hw2.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class UsernameIndexTests {
+
+	private final UsernameIndex index = new UsernameIndex();
+
+	@Test
+	void searchMatchesSubstringsIgnoringCase() {
+		List.of("alice", "Malik", "bob", "alina").forEach(index::add);
+
+		assertEquals(List.of("Malik", "alice", "alina"), index.search("ALI", 10));
+		assertEquals(List.of("alice"), index.search("iC", 10));
+		assertEquals(List.of(), index.search("xyz", 10));
+	}
+
+	@Test
+	void shortQueriesUseTheirOwnPostings() {
+		List.of("alice", "Malik", "bob", "alina").forEach(index::add);
+
+		assertEquals(List.of("Malik", "alice", "alina"), index.search("L", 10));
+		assertEquals(List.of("bob"), index.search("ob", 10));
+		assertEquals(List.of(), index.search("q", 10));
+		index.remove("bob");
+		assertEquals(List.of(), index.search("o", 10));
+	}
+
+	@Test
+	void searchIsCappedAtTheLimit() {
+		List.of("user1", "user2", "user3").forEach(index::add);
+
+		assertEquals(List.of("user1", "user2"), index.search("user", 2));
+	}
+
+	@Test
+	void renameAndRemoveUpdateTheIndex() {
+		index.add("alice");
+		index.add("bob");
+
+		index.rename("alice", "carol");
+		index.remove("bob");
+
+		assertEquals(List.of(), index.search("ali", 10));
+		assertEquals(List.of("carol"), index.search("aro", 10));
+		assertEquals(List.of(), index.search("bo", 10));
+	}
+
+}
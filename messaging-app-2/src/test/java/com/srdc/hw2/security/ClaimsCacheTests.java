@@ -0,0 +1,44 @@
+package com.srdc.hw2.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class ClaimsCacheTests {
+
+	@Test
+	void fullCacheEvictsTheLeastRecentlyUsedTokens() throws InterruptedException {
+		ClaimsCache cache = new ClaimsCache(10);
+		for (int i = 0; i < 10; i++) {
+			cache.put("t" + i, principal(60000));
+		}
+		Thread.sleep(5);
+		assertNotNull(cache.get("t0"));
+		Thread.sleep(5);
+
+		cache.put("t10", principal(60000));
+
+		assertEquals(9, cache.size());
+		assertNotNull(cache.get("t0"));
+		assertNotNull(cache.get("t10"));
+	}
+
+	@Test
+	void expiredTokensAreMissesAndDropped() {
+		ClaimsCache cache = new ClaimsCache(10);
+		cache.put("old", principal(-1));
+		cache.put("new", principal(60000));
+
+		assertNull(cache.get("old"));
+		assertNotNull(cache.get("new"));
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.hits());
+		assertEquals(1, cache.misses());
+	}
+
+	private static AuthPrincipal principal(long expiresIn) {
+		return new AuthPrincipal("alice", false, System.currentTimeMillis() + expiresIn);
+	}
+}
@@ -0,0 +1,73 @@
+package com.srdc.hw2.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class SessionRegistryTests {
+
+	private final SessionRegistry registry = new SessionRegistry();
+
+	@Test
+	void registeredTokenIsActiveUntilRemoved() {
+		registry.register("a", "alice", System.currentTimeMillis() + 60000);
+
+		assertTrue(registry.isActive("a"));
+		registry.remove("a");
+		assertFalse(registry.isActive("a"));
+	}
+
+	@Test
+	void removeUserRevokesAllOfItsTokens() {
+		long expiresAt = System.currentTimeMillis() + 60000;
+		registry.register("a1", "alice", expiresAt);
+		registry.register("a2", "alice", expiresAt);
+		registry.register("b1", "bob", expiresAt);
+
+		registry.removeUser("alice");
+
+		assertFalse(registry.isActive("a1"));
+		assertFalse(registry.isActive("a2"));
+		assertTrue(registry.isActive("b1"));
+		assertEquals(1, registry.size());
+	}
+
+	@Test
+	void tokensRegisteredDuringARevocationAreRevokedByTheNextOne() throws Exception {
+		long expiresAt = System.currentTimeMillis() + 60000;
+		AtomicBoolean done = new AtomicBoolean();
+		Thread revoker = new Thread(() -> {
+			while (!done.get()) {
+				registry.removeUser("alice");
+			}
+		});
+		revoker.start();
+		try {
+			for (int i = 0; i < 100_000; i++) {
+				registry.register("a" + i, "alice", expiresAt);
+			}
+		} finally {
+			done.set(true);
+			revoker.join();
+		}
+
+		registry.removeUser("alice");
+		assertEquals(0, registry.size());
+	}
+
+	@Test
+	void sweeperEvictsExpiredTokens() {
+		registry.register("old", "alice", System.currentTimeMillis() - 1);
+		registry.register("new", "alice", System.currentTimeMillis() + 60000);
+
+		assertFalse(registry.isActive("old"));
+		registry.evictExpired();
+
+		assertEquals(1, registry.size());
+		assertTrue(registry.isActive("new"));
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.srdc.hw2.user;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import com.srdc.hw2.controller.UserController;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+import com.srdc.hw2.security.AuthPrincipal;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserCacheTests {
+
+	@Autowired
+	UserCache userCache;
+
+	@Autowired
+	UserController userController;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	private final AuthPrincipal admin = new AuthPrincipal("cache-admin", true, Long.MAX_VALUE);
+
+	@Test
+	void lookupsAreServedFromTheCacheUntilTheUserChanges() {
+		// Stored without the controller: the entity listener still registers the username with the filter
+		userRepository.save(new User("cached", "old-secret", "Cached", "User", null, null, null, null, false));
+
+		long misses = userCache.misses();
+		long hits = userCache.hits();
+		assertEquals("Cached", userCache.find("cached").getName());
+		userCache.find("cached").setName("Changed by a caller");
+		assertEquals("Cached", userCache.find("cached").getName());
+		assertEquals(misses + 1, userCache.misses());
+		assertEquals(hits + 2, userCache.hits());
+
+		assertEquals(HttpStatus.OK, userController.updateUser(admin, "cached", "password", "new-secret").getStatusCode());
+		assertEquals(HttpStatus.UNAUTHORIZED, userController.login(new User("cached", "old-secret", null, null, null, null, null, null, false)).getStatusCode());
+		assertEquals(HttpStatus.OK, userController.login(new User("cached", "new-secret", null, null, null, null, null, null, false)).getStatusCode());
+
+		assertEquals(HttpStatus.OK, userController.updateUser(admin, "cached", "username", "recached").getStatusCode());
+		assertNull(userCache.find("cached"));
+		assertTrue(userCache.exists("recached"));
+		assertEquals(HttpStatus.NO_CONTENT, userController.removeUser(admin, "recached").getStatusCode());
+		assertFalse(userCache.exists("recached"));
+	}
+
+	@Test
+	void unknownUsernamesAreRuledOutWithoutAQuery() {
+		long misses = userCache.misses();
+		long filtered = userCache.filtered();
+		for (int i = 0; i < 1000; i++) {
+			userCache.exists("nobody-" + i);
+		}
+		// The filter holds at most a few thousand test users but is sized for a million at 1% false positives
+		assertTrue(userCache.filtered() - filtered >= 990);
+		assertEquals(1000, userCache.filtered() - filtered + userCache.misses() - misses);
+		assertTrue(userCache.hitRatio() > 0);
+	}
+
+	@Test
+	void usersInsertedOverJdbcAreFoundAfterARebuild() {
+		// A username the filter rules out, so the lookup before the rebuild cannot reach the database
+		String username = "bulk-loaded";
+		for (int i = 0; userCache.mightExist(username); i++) {
+			username = "bulk-loaded-" + i;
+		}
+		jdbcTemplate.update("INSERT INTO users (id, username, password, is_admin) VALUES (900000001, ?, 'secret', FALSE)", username);
+		assertFalse(userCache.exists(username));
+
+		userCache.rebuild();
+
+		assertTrue(userCache.exists(username));
+	}
+
+	@Test
+	void filterHasNoFalseNegativesAndFewFalsePositives() {
+		UsernameFilter filter = new UsernameFilter(10_000, 0.01);
+		for (int i = 0; i < 10_000; i++) {
+			filter.add("user" + i);
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 10_000; i++) {
+			assertTrue(filter.mightContain("user" + i));
+			if (filter.mightContain("other" + i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue(falsePositives < 200, falsePositives + " false positives in 10000");
+	}
+}
@@ -0,0 +1,76 @@
+package com.srdc.hw2.user;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.UserRepository;
+
+@SpringBootTest(properties = {"messaging.user-deletion.chunk-size=500", "messaging.user-deletion.interval-ms=3600000"})
+@ActiveProfiles("test")
+class UserDeletionServiceTests {
+
+	private static final int MESSAGES = 5000;
+
+	@Autowired
+	UserDeletionService userDeletionService;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Test
+	void removedUserIsTombstonedAndItsMessagesRewrittenInChunks() {
+		userRepository.save(new User("ivan", "secret", "Ivan", "Removed", null, null, null, null, false));
+		jdbcTemplate.update("INSERT INTO messages (id, sender, receiver, content, timestamp, is_read) " +
+				"SELECT 1000000000 + n, CASEWHEN(MOD(n, 2) = 0, 'ivan', 'judy'), CASEWHEN(MOD(n, 2) = 0, 'judy', 'ivan'), 'message', CURRENT_TIMESTAMP, FALSE " +
+				"FROM (SELECT \"X\" AS n FROM SYSTEM_RANGE(1, ?))", MESSAGES);
+		jdbcTemplate.update("INSERT INTO message_terms (id, message_id, sender, receiver, term, frequency) " +
+				"SELECT 1000000000 + n, 1000000000 + n, CASEWHEN(MOD(n, 2) = 0, 'ivan', 'judy'), CASEWHEN(MOD(n, 2) = 0, 'judy', 'ivan'), 'message', 1 " +
+				"FROM (SELECT \"X\" AS n FROM SYSTEM_RANGE(1, ?))", MESSAGES);
+
+		userDeletionService.remove("ivan");
+
+		assertFalse(userRepository.existsByUsername("ivan"));
+		assertTrue(userDeletionService.isPending("ivan"));
+		assertEquals(MESSAGES, count("messages"));
+
+		userDeletionService.rewritePending();
+
+		assertFalse(userDeletionService.isPending("ivan"));
+		assertEquals(0, count("messages"));
+		assertEquals(0, count("message_terms"));
+		assertEquals(MESSAGES, (long) jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM messages WHERE sender = '~ removed user ~' OR receiver = '~ removed user ~'", Long.class));
+	}
+
+	@Test
+	void removedUserClaimedByAnotherInstanceIsSkippedUntilTheClaimLapses() {
+		userRepository.save(new User("kate", "secret", "Kate", "Removed", null, null, null, null, false));
+		userDeletionService.remove("kate");
+		jdbcTemplate.update("UPDATE user_tombstones SET claimed_by = 'other', claimed_until = DATEADD('HOUR', 1, CURRENT_TIMESTAMP) WHERE username = 'kate'");
+
+		userDeletionService.rewritePending();
+
+		assertTrue(userDeletionService.isPending("kate"));
+
+		jdbcTemplate.update("UPDATE user_tombstones SET claimed_until = DATEADD('HOUR', -1, CURRENT_TIMESTAMP) WHERE username = 'kate'");
+
+		userDeletionService.rewritePending();
+
+		assertFalse(userDeletionService.isPending("kate"));
+	}
+
+	private long count(String table) {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE sender = 'ivan' OR receiver = 'ivan'", Long.class);
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.srdc.hw2.user;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import com.srdc.hw2.dto.UserImportError;
+import com.srdc.hw2.dto.UserImportReport;
+import com.srdc.hw2.model.User;
+import com.srdc.hw2.repository.MailboxCounterRepository;
+import com.srdc.hw2.repository.UserRepository;
+
+@SpringBootTest(properties = "messaging.user-import.batch-size=100")
+@ActiveProfiles("test")
+class UserImportServiceTests {
+
+	private static final int USERS = Integer.getInteger("import.users", 10_000);
+
+	@Autowired
+	UserImportService userImportService;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	MailboxCounterRepository mailboxCounterRepository;
+
+	@Test
+	void csvRowsAreValidatedAndReported() throws Exception {
+		userRepository.save(new User("kate", "secret", "Kate", "Existing", null, null, null, null, false));
+		String csv = """
+				username,password,name,birthdate,admin
+				liam,secret,"Liam, Jr.",2000-01-02,true
+				kate,secret,Kate,,false
+				liam,secret,Liam,,false
+				mona,,Mona,,false
+				nina,secret,Nina,not a date,false
+
+				omar,secret,"Omar ""O"" Jr",,
+				""";
+
+		UserImportReport report = userImportService.importUsers(stream(csv), "csv");
+
+		assertEquals(2, report.imported());
+		assertEquals(4, report.rejected());
+		assertEquals(List.of(3L, 4L, 5L, 6L), report.errors().stream().map(UserImportError::line).toList());
+		assertEquals("username is taken", report.errors().get(0).reason());
+		assertEquals("username appears earlier in the import", report.errors().get(1).reason());
+		assertEquals("password is required", report.errors().get(2).reason());
+		User liam = userRepository.findByUsername("liam");
+		assertEquals("Liam, Jr.", liam.getName());
+		assertEquals(Date.valueOf("2000-01-02"), liam.getBirthdate());
+		assertTrue(liam.isAdmin());
+		assertEquals("Omar \"O\" Jr", userRepository.findByUsername("omar").getName());
+	}
+
+	@Test
+	void largeNdjsonUploadIsImportedInBatches() throws Exception {
+		StringBuilder ndjson = new StringBuilder();
+		for (int i = 0; i < USERS; i++) {
+			ndjson.append("{\"username\":\"imported").append(i).append("\",\"password\":\"secret\",\"name\":\"User ").append(i).append("\"}\n");
+		}
+		ndjson.append("{\"username\":\"imported0\",\"password\":\"secret\"}\n");
+		ndjson.append("not json\n");
+
+		UserImportReport report = userImportService.importUsers(stream(ndjson.toString()), "ndjson");
+
+		assertEquals(USERS, report.imported());
+		assertEquals(2, report.rejected());
+		assertTrue(userRepository.existsByUsername("imported" + (USERS - 1)));
+		assertTrue(mailboxCounterRepository.existsById("imported" + (USERS - 1)));
+	}
+
+	private static ByteArrayInputStream stream(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+}